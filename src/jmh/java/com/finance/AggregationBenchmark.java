@@ -0,0 +1,56 @@
+package com.finance.model;
+
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Wallet.aggregate over 1k, 100k and 10M transactions, serial against fork-join on the common pool.
+ * The parallel runs only help with more than one core; on a single core they show the forking overhead.
+ * yearFromRollup answers the same whole-month query from the wallet's rollup cube instead of scanning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AggregationBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"serial", "parallel"})
+    public String mode;
+
+    private Wallet wallet;
+    private TransactionAggregator aggregator;
+    private LocalDate start;
+    private LocalDate end;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wallet = SyntheticWallets.create("bench", size);
+        aggregator = new TransactionAggregator("parallel".equals(mode) ? 0 : Integer.MAX_VALUE,
+                32_768, ForkJoinPool.commonPool());
+        // One year in the middle of the synthetic range
+        start = SyntheticWallets.ORIGIN.plusYears(1);
+        end = start.plusYears(1).minusDays(1);
+    }
+
+    @Benchmark
+    public AggregateReport allTransactions() {
+        return wallet.aggregate(aggregator, null, null, null);
+    }
+
+    @Benchmark
+    public AggregateReport yearAndCategories() {
+        return wallet.aggregate(aggregator, start, end, Set.of("Food", "Transport"));
+    }
+
+    @Benchmark
+    public AggregateReport yearFromRollup() {
+        return wallet.aggregate(start, end, Set.of("Food", "Transport"));
+    }
+}
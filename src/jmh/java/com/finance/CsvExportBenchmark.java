@@ -0,0 +1,48 @@
+package com.finance.export;
+
+import com.finance.model.SyntheticWallets;
+import com.finance.model.Wallet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * CSV export of a wallet with 1k, 100k or 10M transactions to a temp file, plain and gzipped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvExportBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private Wallet wallet;
+    private Path file;
+    private CsvExportOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        wallet = SyntheticWallets.create("bench", size);
+        file = Files.createTempFile("transactions", ".csv");
+        options = new CsvExportOptions();
+        options.setGzip(gzip);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CsvExportResult exportCsv() throws IOException {
+        return new CsvExporter().export(wallet, file, options);
+    }
+}
@@ -0,0 +1,69 @@
+package com.finance.repository;
+
+import com.finance.model.SyntheticWallets;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Full snapshot save and load of a single user with 1k, 100k or 10M transactions, in each snapshot format.
+ * fsync=false measures what the crash safety of a save costs: the same generation commit without
+ * forcing the snapshot, manifest and directory to disk.
+ * loadUsers only indexes the file, so the load benchmark also reads the wallet.
+ * The snapshot size is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DataStorageBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    @Param({"JSON", "BINARY"})
+    public SnapshotFormat format;
+
+    @Param({"true", "false"})
+    public boolean fsync;
+
+    private DataStorage dataStorage;
+    private List<User> users;
+    // Kept strongly reachable: saveUsers downgrades the user's own reference
+    private Wallet wallet;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path dataDir = Files.createTempDirectory("finance-bench");
+        dataStorage = new DataStorage(dataDir, false, format);
+        dataStorage.setFsyncEnabled(fsync);
+        wallet = SyntheticWallets.create("bench", size);
+        User user = new User("bench", "pw");
+        user.setWallet(wallet);
+        users = List.of(user);
+        dataStorage.saveUsers(users);
+        System.out.printf("%n%s snapshot of %d transactions: %,d bytes%n",
+                format, size, Files.size(dataStorage.getSnapshotPath()));
+    }
+
+    @Setup(Level.Invocation)
+    public void pinWallet() {
+        users.get(0).setWallet(wallet);
+    }
+
+    @Benchmark
+    public List<User> saveUsers() {
+        dataStorage.saveUsers(users);
+        return users;
+    }
+
+    @Benchmark
+    public Wallet loadUsers() {
+        return dataStorage.loadUsers().get(0).getWallet();
+    }
+}
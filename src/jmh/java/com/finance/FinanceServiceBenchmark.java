@@ -0,0 +1,65 @@
+package com.finance.service;
+
+import com.finance.model.SyntheticWallets;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * FinanceService queries on one session whose wallet has 1k, 100k or 10M transactions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FinanceServiceBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    private FinanceService financeService;
+    private Session session;
+    private LocalDate periodStart;
+    private LocalDate periodEnd;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository,
+                new DataStorage(Files.createTempDirectory("finance-bench"), false));
+        financeService = new FinanceService(authService);
+
+        User user = new User("bench", "pw");
+        user.setWallet(SyntheticWallets.create("bench", size));
+        userRepository.addUser(user);
+        session = authService.openSession("bench", "pw").get();
+
+        // One month in the middle of the synthetic range
+        periodStart = SyntheticWallets.ORIGIN.plusYears(2).withDayOfMonth(1);
+        periodEnd = periodStart.plusMonths(1).minusDays(1);
+    }
+
+    @Benchmark
+    public Map<String, Double> getExpensesByCategory() {
+        return financeService.getExpensesByCategory(session);
+    }
+
+    @Benchmark
+    public List<String> getBudgetAlerts() {
+        return financeService.getBudgetAlerts(session);
+    }
+
+    @Benchmark
+    public List<Transaction> getTransactionsByPeriod() {
+        return financeService.getTransactionsByPeriod(session, periodStart, periodEnd);
+    }
+}
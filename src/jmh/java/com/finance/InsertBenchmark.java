@@ -0,0 +1,64 @@
+package com.finance.service;
+
+import com.finance.model.IdGenerators;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Insert path cost per operation with each id generator. Run with {@code -prof gc}:
+ * gc.alloc.rate.norm is the bytes allocated per insert. The wallet is replaced before every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class InsertBenchmark {
+    @Param({"uuid", "time", "sequence"})
+    public String idGenerator;
+
+    private FinanceService financeService;
+    private Session session;
+    private User user;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Transaction.setIdGenerator(IdGenerators.fromName(idGenerator));
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository,
+                new DataStorage(Files.createTempDirectory("finance-bench"), false));
+        financeService = new FinanceService(authService);
+        user = new User("bench", "pw");
+        userRepository.addUser(user);
+        userRepository.addUser(new User("friend", "pw"));
+        session = authService.openSession("bench", "pw").get();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetWallet() {
+        user.setWallet(new Wallet());
+    }
+
+    @Benchmark
+    public Transaction newTransaction() {
+        return new Transaction(Transaction.Type.INCOME, "Salary", 1500.25, "Аванс", "bench");
+    }
+
+    @Benchmark
+    public boolean addIncome() {
+        return financeService.addIncome(session, "Salary", 1500.25, "Аванс");
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        return financeService.transfer(session, "friend", 10, "");
+    }
+}
@@ -0,0 +1,74 @@
+package com.finance.service;
+
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * 1000 transfers among 100 users with the journal on: posted one by one against one batch call,
+ * which takes each wallet lock once and writes a single journal group.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LedgerBenchmark {
+    private static final int USERS = 100;
+    private static final int TRANSFERS = 1000;
+
+    private final List<User> users = new ArrayList<>();
+    private final List<TransferRequest> requests = new ArrayList<>();
+    private DataStorage dataStorage;
+    private Ledger ledger;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        dataStorage = new DataStorage(Files.createTempDirectory("finance-bench"), true);
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("user" + i, "pw");
+            userRepository.addUser(user);
+            users.add(user);
+        }
+        ledger = new Ledger(userRepository, dataStorage, new BudgetAlertEngine());
+        for (int i = 0; i < TRANSFERS; i++) {
+            requests.add(new TransferRequest("user" + i % USERS, "user" + (i * 7 + 1) % USERS, 100 + i, null));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetWallets() {
+        for (User user : users) {
+            user.setWallet(new Wallet());
+            dataStorage.attach(user);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dataStorage.close();
+    }
+
+    @Benchmark
+    public int oneByOne() {
+        int posted = 0;
+        for (TransferRequest request : requests) {
+            if (ledger.transfer(request).isApplied()) posted++;
+        }
+        return posted;
+    }
+
+    @Benchmark
+    public List<TransferResult> batch() {
+        return ledger.transferBatch(requests);
+    }
+}
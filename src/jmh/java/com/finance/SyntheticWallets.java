@@ -0,0 +1,38 @@
+package com.finance.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+/**
+ * Deterministic wallets for the JMH suites: a fixed seed, seven categories,
+ * one income per three expenses, dates spread over five years from {@link #ORIGIN}.
+ */
+public final class SyntheticWallets {
+    public static final String[] CATEGORIES = {"Food", "Rent", "Salary", "Transport", "Fun", "Health", "Gifts"};
+    public static final LocalDate ORIGIN = LocalDate.of(2020, 1, 1);
+    public static final int DAYS = 5 * 365;
+
+    private SyntheticWallets() {}
+
+    public static Wallet create(String username, int transactions) {
+        Wallet wallet = new Wallet();
+        Random random = new Random(42);
+        LocalDateTime origin = ORIGIN.atStartOfDay();
+        for (int i = 0; i < transactions; i++) {
+            wallet.addTransaction(randomTransaction(random, origin, username));
+        }
+        for (String category : CATEGORIES) {
+            wallet.addBudget(new Budget(category, 1000 + random.nextInt(100_000), username));
+        }
+        return wallet;
+    }
+
+    public static Transaction randomTransaction(Random random, LocalDateTime origin, String username) {
+        Transaction.Type type = random.nextInt(4) == 0 ? Transaction.Type.INCOME : Transaction.Type.EXPENSE;
+        Transaction transaction = new Transaction(type, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                1 + random.nextInt(1_000_000) / 100.0, "Synthetic", username);
+        transaction.setDate(origin.plusMinutes(random.nextInt(DAYS * 24 * 60)));
+        return transaction;
+    }
+}
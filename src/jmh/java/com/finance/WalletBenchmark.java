@@ -0,0 +1,44 @@
+package com.finance.model;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Wallet write path and balance read on wallets of 1k, 100k and 10M transactions.
+ * The wallet is rebuilt before every iteration so addTransaction keeps measuring the chosen size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WalletBenchmark {
+    @Param({"1000", "100000", "10000000"})
+    public int size;
+
+    private Wallet wallet;
+    private Random random;
+    private LocalDateTime origin;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        wallet = null; // lets the previous 10M wallet be collected first
+        wallet = SyntheticWallets.create("bench", size);
+        random = new Random(7);
+        origin = SyntheticWallets.ORIGIN.atStartOfDay();
+    }
+
+    @Benchmark
+    public Wallet addTransaction() {
+        wallet.addTransaction(SyntheticWallets.randomTransaction(random, origin, "bench"));
+        return wallet;
+    }
+
+    @Benchmark
+    public double getBalance() {
+        return wallet.getBalance();
+    }
+}
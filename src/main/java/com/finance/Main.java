@@ -1,6 +1,12 @@
 package com.finance;
 
 import com.finance.cli.CLI;
+import com.finance.metrics.MetricsRegistry;
+import com.finance.repository.UserRepository;
+import com.finance.server.FinanceServer;
+import com.finance.service.AuthService;
+import com.finance.service.FinanceService;
+import java.net.InetSocketAddress;
 
 public class Main {
     public static void main(String[] args) {
@@ -9,6 +15,11 @@ public class Main {
         System.out.println("Application is starting...");
         
         try {
+            MetricsRegistry.global().registerMBean();
+            if (args.length > 0 && args[0].equals("server")) {
+                startServer(args.length > 1 ? Integer.parseInt(args[1]) : Integer.getInteger("finance.server.port", 8080));
+                return;
+            }
             CLI cli = new CLI();
             cli.start();
         } catch (Exception e) {
@@ -16,4 +27,22 @@ public class Main {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    // HTTP/JSON front-end instead of the console; runs until the process is stopped
+    private static void startServer(int port) throws Exception {
+        // The JDK server writes headers and body separately; without TCP_NODELAY every response waits
+        // ~40 ms for the client's delayed ACK. It reads the setting once, when the first server is created
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        AuthService authService = new AuthService(UserRepository.getInstance());
+        FinanceServer server = new FinanceServer(authService, new FinanceService(authService), new InetSocketAddress(port));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(2);
+            authService.close();
+        }));
+        server.start();
+        System.out.println("HTTP API listening on port " + server.getPort()
+                + (server.usesVirtualThreads() ? " (virtual threads)" : " (thread pool)"));
+    }
+}
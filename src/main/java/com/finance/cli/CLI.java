@@ -2,10 +2,25 @@ package com.finance.cli;
 
 import com.finance.service.AuthService;
 import com.finance.service.FinanceService;
+import com.finance.repository.RecoveryReport;
 import com.finance.repository.UserRepository;
-import com.finance.model.Transaction;
-import com.finance.model.Budget;
+import com.finance.metrics.MetricsRegistry;
+import com.finance.model.Money;
+import com.finance.model.Wallet;
+import com.finance.model.WalletStatistics;
+import com.finance.export.CsvExporter;
+import com.finance.export.CsvExportOptions;
+import com.finance.export.CsvExportResult;
+import com.finance.importer.CsvStatementReader;
+import com.finance.importer.ImportResult;
+import com.finance.importer.OfxStatementReader;
+import com.finance.importer.StatementReader;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -21,12 +36,19 @@ public class CLI {
         UserRepository userRepository = UserRepository.getInstance();
         this.authService = new AuthService(userRepository);
         this.financeService = new FinanceService(authService);
+        // Budget crossings are shown right after the operation that caused them
+        financeService.getBudgetAlertEngine().subscribe(alert -> {
+            if (authService.isLoggedIn() && authService.getCurrentUser().getUsername().equals(alert.getUsername())) {
+                System.out.println(alert.getMessage());
+            }
+        });
         this.scanner = new Scanner(System.in);
         this.running = true;
     }
 
     public void start() {
         System.out.println("=== Система управления личными финансами ===");
+        printRecoveryReport();
         
         while (running) {
             if (!authService.isLoggedIn()) {
@@ -36,9 +58,20 @@ public class CLI {
             }
         }
         
+        authService.close();
         scanner.close();
     }
 
+    private void printRecoveryReport() {
+        RecoveryReport report = authService.getRecoveryReport();
+        if (report == null || report.getSnapshot() == null) return;
+        System.out.printf("Данные загружены из %s за %d мс (пользователей: %d, записей журнала: %d)%n",
+                report.getSnapshot(), report.getTotalMillis(), report.getUsers(), report.getJournalRecords());
+        if (!report.getSkipped().isEmpty()) {
+            System.out.println("⚠️ Повреждённые снимки пропущены: " + String.join(", ", report.getSkipped()));
+        }
+    }
+
     private void showLoginMenu() {
         System.out.println("\n--- Авторизация ---");
         System.out.println("1. Войти");
@@ -78,9 +111,10 @@ public class CLI {
         System.out.println("3. Установить бюджет");
         System.out.println("4. Показать статистику");
         System.out.println("5. Показать оповещения");
-        System.out.println("6. Экспорт данных");
+        System.out.println("6. Импорт и экспорт данных");
         System.out.println("7. Выйти из системы");
         System.out.println("8. Выйти из приложения");
+        System.out.println("9. Диагностика");
         System.out.print("Выберите действие: ");
         
         String choice = scanner.nextLine();
@@ -110,6 +144,9 @@ public class CLI {
                 logout();
                 running = false;
                 break;
+            case "9":
+                showDiagnostics();
+                break;
             default:
                 System.out.println("❌ Неверный выбор. Попробуйте снова.");
         }
@@ -156,11 +193,19 @@ public class CLI {
         
         if (financeService.addExpense(category, amount, description)) {
             System.out.println("✅ Расход успешно добавлен!");
+            printBalanceWarning();
         } else {
             System.out.println("❌ Ошибка при добавлении расхода.");
         }
     }
 
+    private void printBalanceWarning() {
+        String warning = financeService.getBalanceWarning();
+        if (warning != null) {
+            System.out.println(warning);
+        }
+    }
+
     private void setBudget() {
         System.out.println("\n--- Установка бюджета ---");
         System.out.print("Введите категорию: ");
@@ -182,40 +227,39 @@ public class CLI {
     }
 
     private void showStatistics() {
+        WalletStatistics statistics = financeService.getStatistics();
         System.out.println("\n--- Статистика ---");
-        System.out.printf("💰 Общий баланс: %.2f%n", financeService.getBalance());
-        System.out.printf("📈 Общий доход: %.2f%n", financeService.getTotalIncome());
-        System.out.printf("📉 Общий расход: %.2f%n", financeService.getTotalExpenses());
+        System.out.println("💰 Общий баланс: " + Money.format(statistics.getBalanceMinor()));
+        System.out.println("📈 Общий доход: " + Money.format(statistics.getTotalIncomeMinor()));
+        System.out.println("📉 Общий расход: " + Money.format(statistics.getTotalExpensesMinor()));
         
         System.out.println("\n📊 Доходы по категориям:");
-        Map<String, Double> incomeByCategory = financeService.getIncomeByCategory();
+        Map<String, Long> incomeByCategory = statistics.getIncomeByCategory();
         if (incomeByCategory.isEmpty()) {
             System.out.println("  Нет данных о доходах");
         } else {
             incomeByCategory.forEach((category, amount) -> 
-                System.out.printf("  %s: %.2f%n", category, amount));
+                System.out.println("  " + category + ": " + Money.format(amount)));
         }
         
         System.out.println("\n📊 Расходы по категориям:");
-        Map<String, Double> expensesByCategory = financeService.getExpensesByCategory();
+        Map<String, Long> expensesByCategory = statistics.getExpensesByCategory();
         if (expensesByCategory.isEmpty()) {
             System.out.println("  Нет данных о расходах");
         } else {
             expensesByCategory.forEach((category, amount) -> 
-                System.out.printf("  %s: %.2f%n", category, amount));
+                System.out.println("  " + category + ": " + Money.format(amount)));
         }
         
         System.out.println("\n🎯 Бюджеты:");
-        List<Budget> budgets = financeService.getBudgets();
+        List<WalletStatistics.BudgetStatus> budgets = statistics.getBudgets();
         if (budgets.isEmpty()) {
             System.out.println("  Бюджеты не установлены");
         } else {
-            for (Budget budget : budgets) {
-                double spent = financeService.getExpensesForCategories(List.of(budget.getCategory()));
-                double remaining = budget.getLimit() - spent;
-                String status = remaining >= 0 ? "✅" : "❌";
-                System.out.printf("  %s %s: лимит %.2f, потрачено %.2f, осталось %.2f%n", 
-                    status, budget.getCategory(), budget.getLimit(), spent, remaining);
+            for (WalletStatistics.BudgetStatus budget : budgets) {
+                String status = budget.getRemainingMinor() >= 0 ? "✅" : "❌";
+                System.out.println("  " + status + " " + budget.getCategory() + ": лимит " + Money.format(budget.getLimitMinor())
+                    + ", потрачено " + Money.format(budget.getSpentMinor()) + ", осталось " + Money.format(budget.getRemainingMinor()));
             }
         }
     }
@@ -238,11 +282,43 @@ public class CLI {
         }
     }
 
+    // Counters, latencies and cache hit rates since start; the same data is exposed over JMX
+    private void showDiagnostics() {
+        MetricsRegistry metrics = MetricsRegistry.global();
+        System.out.println("\n--- Диагностика ---");
+        System.out.println("Счётчики:");
+        metrics.getCounters().forEach((name, value) -> System.out.printf("  %-32s %,d%n", name, value));
+
+        System.out.println("Задержки (мкс):");
+        System.out.printf("  %-32s %10s %10s %10s %10s %10s%n", "", "count", "p50", "p99", "p99.9", "max");
+        metrics.getLatencySnapshots().forEach((name, latency) -> {
+            if (latency.getCount() == 0) return;
+            System.out.printf("  %-32s %10d %10.1f %10.1f %10.1f %10.1f%n", name, latency.getCount(),
+                    latency.percentile(50) / 1e3, latency.percentile(99) / 1e3,
+                    latency.percentile(99.9) / 1e3, latency.getMax() / 1e3);
+        });
+
+        System.out.println("Кэши (доля попаданий):");
+        metrics.getCaches().forEach((name, cache) -> System.out.printf("  %-32s %6.1f%% (%d из %d)%n", name,
+                cache.getHitRate() * 100, cache.getHits(), cache.getHits() + cache.getMisses()));
+
+        Wallet wallet = authService.getCurrentUser().getWallet();
+        System.out.printf("Ваш кошелёк: %d транзакций, ~%s в куче%n",
+                wallet.getTransactions().size(), formatBytes(wallet.estimateHeapBytes()));
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " Б";
+        if (bytes < 1024 * 1024) return String.format("%.1f КБ", bytes / 1024.0);
+        return String.format("%.1f МБ", bytes / (1024.0 * 1024));
+    }
+
     private void exportData() {
-        System.out.println("\n--- Экспорт данных ---");
+        System.out.println("\n--- Импорт и экспорт данных ---");
         System.out.println("1. Экспорт в CSV");
         System.out.println("2. Экспорт в JSON");
-        System.out.print("Выберите формат: ");
+        System.out.println("3. Импорт банковской выписки (CSV/OFX)");
+        System.out.print("Выберите действие: ");
         
         String choice = scanner.nextLine();
         switch (choice) {
@@ -252,6 +328,9 @@ public class CLI {
             case "2":
                 exportToJSON();
                 break;
+            case "3":
+                importStatement();
+                break;
             default:
                 System.out.println("❌ Неверный выбор.");
         }
@@ -263,21 +342,68 @@ public class CLI {
             return;
         }
         
-        try (PrintWriter writer = new PrintWriter("transactions.csv")) {
-            writer.println("Тип,Категория,Сумма,Описание,Дата");
-            for (Transaction t : authService.getCurrentUser().getWallet().getTransactions()) {
-                writer.printf("%s,%s,%.2f,%s,%s%n",
-                    t.getType(), t.getCategory(), t.getAmount(), 
-                    t.getDescription(), t.getDate());
+        System.out.print("Имя файла (Enter - transactions.csv, .gz - со сжатием): ");
+        String fileName = scanner.nextLine().trim();
+        if (fileName.isEmpty()) {
+            fileName = "transactions.csv";
+        }
+
+        CsvExportOptions options = new CsvExportOptions();
+        options.setGzip(fileName.endsWith(".gz"));
+        options.setStart(readOptionalDate("Начало периода (ГГГГ-ММ-ДД, Enter - без ограничения): "));
+        options.setEnd(readOptionalDate("Конец периода (ГГГГ-ММ-ДД, Enter - без ограничения): "));
+        System.out.print("Категории через запятую (Enter - все): ");
+        String categories = scanner.nextLine().trim();
+        if (!categories.isEmpty()) {
+            Set<String> selected = new HashSet<>();
+            for (String category : categories.split(",")) {
+                selected.add(category.trim());
             }
-            System.out.println("✅ Данные экспортированы в transactions.csv");
+            options.setCategories(selected);
+        }
+
+        try {
+            CsvExportResult result = new CsvExporter().export(
+                authService.getCurrentUser().getWallet(), Paths.get(fileName), options);
+            System.out.println("✅ Данные экспортированы в " + fileName + ": " + result.getRows() + " строк за "
+                + result.getElapsedNanos() / 1_000_000 + " мс (" + Math.round(result.getRowsPerSecond()) + " строк/с, "
+                + Math.round(result.getMegabytesPerSecond()) + " МБ/с)");
         } catch (IOException e) {
-            System.out.println("❌ Ошибка при экспорте в CSV");
+            System.out.println("❌ Ошибка при экспорте в CSV: " + e.getMessage());
+        }
+    }
+
+    private void importStatement() {
+        System.out.print("Путь к файлу выписки (.csv или .ofx): ");
+        String fileName = scanner.nextLine().trim();
+        Path file = Paths.get(fileName);
+        if (fileName.isEmpty() || !Files.isRegularFile(file)) {
+            System.out.println("❌ Файл не найден.");
+            return;
+        }
+
+        boolean ofx = fileName.toLowerCase().endsWith(".ofx") || fileName.toLowerCase().endsWith(".qfx");
+        // Read as UTF-8; malformed bytes are replaced rather than failing the whole import
+        try (Reader in = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8);
+             StatementReader reader = ofx ? new OfxStatementReader(in, file.getFileName().toString())
+                     : new CsvStatementReader(in, file.getFileName().toString())) {
+            ImportResult result = financeService.importStatement(reader);
+            System.out.println("✅ Импортировано: " + result.getImported() + ", дубликатов пропущено: " + result.getDuplicates()
+                + ", отклонено: " + result.getRejected() + " (" + result.getElapsedNanos() / 1_000_000 + " мс, "
+                + Math.round(result.getRowsPerSecond()) + " строк/с)");
+            result.getErrors().forEach(error -> System.out.println("  ❌ " + error));
+            if (!result.getExpenseCategories().isEmpty()) {
+                printBalanceWarning();
+            }
+        } catch (ArithmeticException e) {
+            System.out.println("❌ Выписка не импортирована: итоги кошелька превысили бы допустимую сумму.");
+        } catch (IOException e) {
+            System.out.println("❌ Ошибка при импорте: " + e.getMessage());
         }
     }
 
     private void exportToJSON() {
-        authService.saveCurrentUserData();
+        authService.saveSnapshot();
         System.out.println("✅ Данные экспортированы в JSON формате");
     }
 
@@ -286,6 +412,21 @@ public class CLI {
         System.out.println("✅ Вы вышли из системы.");
     }
 
+    private LocalDate readOptionalDate(String prompt) {
+        while (true) {
+            System.out.print(prompt);
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(input, DateTimeFormatter.ISO_LOCAL_DATE);
+            } catch (DateTimeParseException e) {
+                System.out.println("❌ Неверный формат даты. Попробуйте снова.");
+            }
+        }
+    }
+
     private double readDouble(String prompt) {
         while (true) {
             System.out.print(prompt);
@@ -0,0 +1,36 @@
+package com.finance.export;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * What to export: an optional period (either end may be open), an optional set of categories,
+ * and whether to gzip the output.
+ */
+public class CsvExportOptions {
+    private LocalDate start;
+    private LocalDate end;
+    private Set<String> categories;
+    private boolean gzip;
+    private int bufferSize = 1 << 20;
+
+    public LocalDate getStart() { return start; }
+    public void setStart(LocalDate start) { this.start = start; }
+
+    public LocalDate getEnd() { return end; }
+    public void setEnd(LocalDate end) { this.end = end; }
+
+    // null exports all categories
+    public Set<String> getCategories() { return categories; }
+    public void setCategories(Set<String> categories) { this.categories = categories; }
+
+    public boolean isGzip() { return gzip; }
+    public void setGzip(boolean gzip) { this.gzip = gzip; }
+
+    public int getBufferSize() { return bufferSize; }
+    public void setBufferSize(int bufferSize) { this.bufferSize = bufferSize; }
+
+    public boolean hasPeriod() {
+        return start != null || end != null;
+    }
+}
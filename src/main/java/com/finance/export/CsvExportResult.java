@@ -0,0 +1,26 @@
+package com.finance.export;
+
+public class CsvExportResult {
+    private final long rows;
+    // Uncompressed CSV size
+    private final long bytes;
+    private final long elapsedNanos;
+
+    public CsvExportResult(long rows, long bytes, long elapsedNanos) {
+        this.rows = rows;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getRows() { return rows; }
+    public long getBytes() { return bytes; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    public double getMegabytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytes / (1024.0 * 1024.0) * 1e9 / elapsedNanos;
+    }
+}
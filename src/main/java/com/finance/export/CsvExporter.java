@@ -0,0 +1,174 @@
+package com.finance.export;
+
+import com.finance.model.Money;
+import com.finance.model.Transaction;
+import com.finance.model.Wallet;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a wallet's transactions as RFC 4180 CSV (comma separated, CRLF line ends, fields with commas,
+ * quotes or line breaks quoted). Rows are formatted into a reused buffer without String.format
+ * and written through a large NIO buffer, so memory use does not depend on the number of rows.
+ * The wallet's read lock is held while its rows are written.
+ */
+public class CsvExporter {
+    public static final String HEADER = "Тип,Категория,Сумма,Описание,Дата";
+    // Rows are collected up to this many chars before being encoded into the byte buffer
+    private static final int CHUNK_CHARS = 16 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
+    public CsvExportResult export(Wallet wallet, Path file, CsvExportOptions options) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (!options.isGzip()) {
+                return export(wallet, channel, options);
+            }
+            try (WritableByteChannel gzip = Channels.newChannel(
+                    new GZIPOutputStream(Channels.newOutputStream(channel), GZIP_BUFFER_SIZE))) {
+                return export(wallet, gzip, options);
+            }
+        }
+    }
+
+    public CsvExportResult export(Wallet wallet, WritableByteChannel out, CsvExportOptions options) throws IOException {
+        long start = System.nanoTime();
+        RowWriter writer = new RowWriter(out, options.getBufferSize());
+        writer.header();
+        Set<String> categories = options.getCategories();
+        long rows = 0;
+
+        wallet.getLock().readLock().lock();
+        try {
+            Iterable<Transaction> transactions = options.hasPeriod()
+                    ? wallet.getTransactionsBetween(
+                            options.getStart() != null ? options.getStart() : LocalDate.MIN,
+                            options.getEnd() != null ? options.getEnd() : LocalDate.MAX)
+                    : wallet.streamTransactions(categories)::iterator;
+            for (Transaction transaction : transactions) {
+                if (categories != null && !categories.contains(transaction.getCategory())) continue;
+                writer.row(transaction);
+                rows++;
+            }
+        } finally {
+            wallet.getLock().readLock().unlock();
+        }
+        writer.flush();
+        return new CsvExportResult(rows, writer.bytes, System.nanoTime() - start);
+    }
+
+    private static class RowWriter {
+        private final WritableByteChannel out;
+        private final ByteBuffer buffer;
+        private final StringBuilder chunk = new StringBuilder(CHUNK_CHARS + 256);
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        private long bytes;
+
+        RowWriter(WritableByteChannel out, int bufferSize) {
+            this.out = out;
+            this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        void header() {
+            chunk.append(HEADER).append("\r\n");
+        }
+
+        void row(Transaction t) throws IOException {
+            chunk.append(t.getType()).append(',');
+            appendField(t.getCategory());
+            chunk.append(',');
+            Money.appendTo(chunk, t.getAmountMinor()).append(',');
+            appendField(t.getDescription());
+            chunk.append(',');
+            appendDate(t.getDate());
+            chunk.append("\r\n");
+            if (chunk.length() >= CHUNK_CHARS) {
+                encodeChunk();
+            }
+        }
+
+        void flush() throws IOException {
+            encodeChunk();
+            drain();
+        }
+
+        private void appendField(String value) {
+            if (value == null) return;
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (!quote) {
+                chunk.append(value);
+                return;
+            }
+            chunk.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') chunk.append('"');
+                chunk.append(c);
+            }
+            chunk.append('"');
+        }
+
+        // yyyy-MM-dd HH:mm:ss
+        private void appendDate(LocalDateTime date) {
+            if (date == null) return;
+            if (date.getYear() < 0 || date.getYear() > 9999) {
+                chunk.append(date);
+                return;
+            }
+            appendPadded(date.getYear(), 4).append('-');
+            appendPadded(date.getMonthValue(), 2).append('-');
+            appendPadded(date.getDayOfMonth(), 2).append(' ');
+            appendPadded(date.getHour(), 2).append(':');
+            appendPadded(date.getMinute(), 2).append(':');
+            appendPadded(date.getSecond(), 2);
+        }
+
+        private StringBuilder appendPadded(int value, int width) {
+            for (int limit = 10, digits = 1; digits < width; limit *= 10, digits++) {
+                if (value < limit) chunk.append('0');
+            }
+            return chunk.append(value);
+        }
+
+        private void encodeChunk() throws IOException {
+            CharBuffer chars = CharBuffer.wrap(chunk);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, true);
+                if (result.isOverflow()) {
+                    drain();
+                } else {
+                    if (result.isError()) result.throwException();
+                    break;
+                }
+            }
+            encoder.reset();
+            chunk.setLength(0);
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            bytes += buffer.remaining();
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.finance.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads RFC 4180 CSV: quoted fields may contain delimiters, doubled quotes and line breaks.
+ * Columns are found by the header, in Russian or English (the layout written by CsvExporter is accepted),
+ * and the delimiter is ';' if the header has semicolons but no commas, as in many bank exports.
+ * Without a type column the sign of the amount decides between income and expense.
+ * CSV has no account number, so ids from the "id" column are qualified by the source given to the constructor.
+ */
+public class CsvStatementReader implements StatementReader {
+    private final BufferedReader reader;
+    private final String source;
+    private char delimiter = ',';
+    private long line;
+    private int typeColumn = -1;
+    private int categoryColumn = -1;
+    private int amountColumn = -1;
+    private int descriptionColumn = -1;
+    private int dateColumn = -1;
+    private int idColumn = -1;
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvStatementReader(Reader reader) throws IOException {
+        this(reader, null);
+    }
+
+    // The source, e.g. the file name, qualifies the ids of the rows
+    public CsvStatementReader(Reader reader, String source) throws IOException {
+        this.source = source;
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+        readHeader();
+    }
+
+    private void readHeader() throws IOException {
+        reader.mark(1 << 16);
+        String first = reader.readLine();
+        if (first == null) return;
+        if (first.indexOf(',') < 0 && first.indexOf(';') >= 0) {
+            delimiter = ';';
+        }
+        reader.reset();
+        // Skip a UTF-8 byte order mark, as written by spreadsheet programs
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+
+        List<String> header = readRecord();
+        for (int i = 0; i < header.size(); i++) {
+            switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "тип": case "type": typeColumn = i; break;
+                case "категория": case "category": categoryColumn = i; break;
+                case "сумма": case "amount": amountColumn = i; break;
+                case "описание": case "description": case "memo": descriptionColumn = i; break;
+                case "дата": case "date": dateColumn = i; break;
+                case "id": idColumn = i; break;
+                default: break;
+            }
+        }
+        if (amountColumn < 0) {
+            throw new IOException("CSV header has no amount column (Сумма/amount): " + header);
+        }
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+        List<String> record;
+        do {
+            record = readRecord();
+            if (record == null) return null;
+        } while (record.size() == 1 && record.get(0).isEmpty()); // blank line
+        return new ImportRow(line, column(record, typeColumn), column(record, categoryColumn),
+                column(record, amountColumn), column(record, descriptionColumn),
+                column(record, dateColumn), column(record, idColumn), source);
+    }
+
+    private static String column(List<String> record, int index) {
+        return index >= 0 && index < record.size() ? record.get(index) : null;
+    }
+
+    // Fields of the next record, or null at the end of input
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c < 0) return null;
+        line++;
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Unterminated quoted field at line " + line);
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c < 0 || c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (c == '\r') {
+                // CR of a CRLF line end
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,38 @@
+package com.finance.importer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+public class ImportResult {
+    private final long imported;
+    private final long duplicates;
+    private final long rejected;
+    // First errors only, see TransactionImporter.MAX_ERRORS
+    private final List<String> errors;
+    // Expense categories that received rows; their budgets are checked once after the import
+    private final Set<String> expenseCategories;
+    private final long elapsedNanos;
+
+    public ImportResult(long imported, long duplicates, long rejected, List<String> errors,
+                        Set<String> expenseCategories, long elapsedNanos) {
+        this.imported = imported;
+        this.duplicates = duplicates;
+        this.rejected = rejected;
+        this.errors = Collections.unmodifiableList(errors);
+        this.expenseCategories = Collections.unmodifiableSet(expenseCategories);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getImported() { return imported; }
+    public long getDuplicates() { return duplicates; }
+    public long getRejected() { return rejected; }
+    public List<String> getErrors() { return errors; }
+    public Set<String> getExpenseCategories() { return expenseCategories; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    // All rows read, including duplicates and rejected ones, per second
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : (imported + duplicates + rejected) * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,38 @@
+package com.finance.importer;
+
+/**
+ * One statement line as read from the file, before validation. Any field may be missing.
+ */
+public class ImportRow {
+    private final long line;
+    private final String type;
+    private final String category;
+    private final String amount;
+    private final String description;
+    private final String date;
+    // Bank's id of the transaction (OFX FITID, CSV "id" column), used to skip re-imported rows
+    private final String id;
+    // Account or file the statement came from, or null; qualifies the id, which is only unique within it
+    private final String source;
+
+    public ImportRow(long line, String type, String category, String amount, String description, String date,
+                     String id, String source) {
+        this.line = line;
+        this.type = type;
+        this.category = category;
+        this.amount = amount;
+        this.description = description;
+        this.date = date;
+        this.id = id;
+        this.source = source;
+    }
+
+    public long getLine() { return line; }
+    public String getType() { return type; }
+    public String getCategory() { return category; }
+    public String getAmount() { return amount; }
+    public String getDescription() { return description; }
+    public String getDate() { return date; }
+    public String getId() { return id; }
+    public String getSource() { return source; }
+}
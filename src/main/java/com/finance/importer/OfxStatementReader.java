@@ -0,0 +1,117 @@
+package com.finance.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads the {@code <STMTTRN>} entries of an OFX statement, both OFX 1.x SGML (elements without closing tags)
+ * and OFX 2.x XML. The file is scanned tag by tag, so statements of any size are read in constant memory.
+ * OFX has no categories: rows get the importer's default category, and the sign of TRNAMT gives the type.
+ * FITIDs are only unique per account, so rows carry the ACCTID of their statement as the source,
+ * or the source given to the constructor if the file names no account.
+ */
+public class OfxStatementReader implements StatementReader {
+    private final BufferedReader reader;
+    private final StringBuilder text = new StringBuilder();
+    private final String defaultSource;
+    // ACCTID of the statement being read
+    private String account;
+    private long line = 1;
+
+    public OfxStatementReader(Reader reader) {
+        this(reader, null);
+    }
+
+    public OfxStatementReader(Reader reader, String defaultSource) {
+        this.defaultSource = defaultSource;
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+    }
+
+    @Override
+    public ImportRow next() throws IOException {
+        Map<String, String> fields = null;
+        long start = 0;
+        String tag;
+        while ((tag = nextTag()) != null) {
+            if (tag.equals("STMTTRN")) {
+                fields = new HashMap<>();
+                start = line;
+            } else if (tag.equals("/STMTTRN") && fields != null) {
+                return toRow(fields, start);
+            } else if (fields != null && !tag.startsWith("/")) {
+                fields.put(tag, readValue());
+            } else if (tag.equals("ACCTID")) {
+                account = readValue();
+            }
+        }
+        return null;
+    }
+
+    private ImportRow toRow(Map<String, String> fields, long start) {
+        String name = fields.get("NAME");
+        String memo = fields.get("MEMO");
+        String description = name == null ? memo : memo == null || memo.isEmpty() ? name : name + " (" + memo + ")";
+        return new ImportRow(start, null, null, fields.get("TRNAMT"), description,
+                toIsoDate(fields.get("DTPOSTED")), fields.get("FITID"),
+                account != null && !account.isEmpty() ? account : defaultSource);
+    }
+
+    // 20240305[120000[.000]][[-5:EST]] -> 2024-03-05[ 12:00:00]
+    private static String toIsoDate(String value) {
+        if (value == null || value.length() < 8) return value;
+        StringBuilder date = new StringBuilder(19)
+                .append(value, 0, 4).append('-').append(value, 4, 6).append('-').append(value, 6, 8);
+        if (value.length() >= 14 && Character.isDigit(value.charAt(13))) {
+            date.append(' ').append(value, 8, 10).append(':').append(value, 10, 12).append(':').append(value, 12, 14);
+        }
+        return date.toString();
+    }
+
+    // Name of the next tag, e.g. "TRNAMT" or "/STMTTRN"; text between tags is skipped
+    private String nextTag() throws IOException {
+        int c;
+        while ((c = reader.read()) >= 0 && c != '<') {
+            if (c == '\n') line++;
+        }
+        if (c < 0) return null;
+        text.setLength(0);
+        while ((c = reader.read()) >= 0 && c != '>') {
+            text.append((char) c);
+        }
+        String tag = text.toString().trim();
+        int space = tag.indexOf(' ');
+        return (space > 0 ? tag.substring(0, space) : tag).toUpperCase(Locale.ROOT);
+    }
+
+    // Element text up to the next tag, which is left unread
+    private String readValue() throws IOException {
+        text.setLength(0);
+        while (true) {
+            reader.mark(1);
+            int c = reader.read();
+            if (c < 0) break;
+            if (c == '<') {
+                reader.reset();
+                break;
+            }
+            if (c == '\n') line++;
+            text.append((char) c);
+        }
+        return unescape(text.toString().trim());
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('&') < 0) return value;
+        return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&nbsp;", " ").replace("&amp;", "&");
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
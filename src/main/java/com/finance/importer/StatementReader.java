@@ -0,0 +1,12 @@
+package com.finance.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Streams the rows of a bank statement one at a time.
+ */
+public interface StatementReader extends Closeable {
+    // Next row, or null at the end of the statement
+    ImportRow next() throws IOException;
+}
@@ -0,0 +1,212 @@
+package com.finance.importer;
+
+import com.finance.model.CachedClock;
+import com.finance.model.CategoryDictionary;
+import com.finance.model.Money;
+import com.finance.model.Transaction;
+import com.finance.model.Wallet;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Validates statement rows and adds them to a wallet in batches through {@link Wallet#addTransactions},
+ * so each batch writes the journal once. Invalid rows are counted and reported, not imported; rows whose
+ * bank id is already in the wallet are skipped, so a statement can be imported again. Bank ids are only
+ * unique within an account, so they are stored qualified by the statement's source (see {@link ImportRow#getSource()}).
+ * The whole statement is validated before anything is posted, and the wallet totals are checked for all
+ * batches at once, so an import either adds every valid row or, on overflow, none.
+ * Budget alerts are left to the caller, once for the whole import (see ImportResult.getExpenseCategories()).
+ */
+public class TransactionImporter {
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    public static final String DEFAULT_CATEGORY = "Без категории";
+    static final int MAX_ERRORS = 100;
+
+    private static final CategoryDictionary CATEGORIES = CategoryDictionary.global();
+    private static final DateTimeFormatter RUSSIAN_DATE = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final DateTimeFormatter RUSSIAN_DATE_TIME = DateTimeFormatter.ofPattern("dd.MM.yyyy H:mm[:ss]");
+
+    private final int batchSize;
+    private final String defaultCategory;
+
+    public TransactionImporter() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_CATEGORY);
+    }
+
+    public TransactionImporter(int batchSize, String defaultCategory) {
+        this.batchSize = Math.max(1, batchSize);
+        this.defaultCategory = defaultCategory;
+    }
+
+    /**
+     * Imports the statement; throws ArithmeticException, with nothing imported, if the rows would
+     * overflow the wallet totals.
+     */
+    public ImportResult importInto(Wallet wallet, String username, StatementReader reader) throws IOException {
+        long start = System.nanoTime();
+        List<Transaction> accepted = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        Set<String> expenseCategories = new LinkedHashSet<>();
+        Set<String> knownIds = null;
+        long duplicates = 0;
+        long rejected = 0;
+
+        ImportRow row;
+        while ((row = reader.next()) != null) {
+            Transaction transaction;
+            try {
+                transaction = toTransaction(row, username);
+            } catch (IllegalArgumentException | ArithmeticException | DateTimeParseException e) {
+                rejected++;
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add("Строка " + row.getLine() + ": " + e.getMessage());
+                }
+                continue;
+            }
+            if (row.getId() != null && !row.getId().isEmpty()) {
+                if (knownIds == null) {
+                    knownIds = existingIds(wallet);
+                }
+                if (!knownIds.add(transaction.getId())) {
+                    duplicates++;
+                    continue;
+                }
+            }
+            if (transaction.getType() == Transaction.Type.EXPENSE) {
+                expenseCategories.add(transaction.getCategory());
+            }
+            accepted.add(transaction);
+        }
+
+        // The write lock is reentrant, so it is held across the batches and no other
+        // writer can move the totals between the check and the last batch
+        wallet.getLock().writeLock().lock();
+        try {
+            wallet.checkBatchTotals(accepted);
+            for (int from = 0; from < accepted.size(); from += batchSize) {
+                wallet.addTransactions(accepted.subList(from, Math.min(from + batchSize, accepted.size())));
+            }
+        } finally {
+            wallet.getLock().writeLock().unlock();
+        }
+        return new ImportResult(accepted.size(), duplicates, rejected, errors, expenseCategories, System.nanoTime() - start);
+    }
+
+    // The bank's id qualified by the statement's source, e.g. "40817810099910004312/2024030501"
+    static String transactionId(ImportRow row) {
+        if (row.getId() == null || row.getId().isEmpty()) {
+            return Transaction.newId();
+        }
+        return row.getSource() == null || row.getSource().isEmpty() ? row.getId() : row.getSource() + "/" + row.getId();
+    }
+
+    private Transaction toTransaction(ImportRow row, String username) {
+        if (row.getAmount() == null || row.getAmount().trim().isEmpty()) {
+            throw new IllegalArgumentException("нет суммы");
+        }
+        long amount = parseAmount(row.getAmount());
+        Transaction.Type type = parseType(row.getType(), amount);
+        amount = Math.abs(amount);
+        if (amount == 0) {
+            throw new IllegalArgumentException("нулевая сумма");
+        }
+
+        Transaction transaction = new Transaction();
+        transaction.setId(transactionId(row));
+        transaction.setType(type);
+        String category = row.getCategory() == null ? "" : row.getCategory().trim();
+        transaction.setCategory(CATEGORIES.canonical(category.isEmpty() ? defaultCategory : category));
+        transaction.setAmountMinor(amount);
+        transaction.setDescription(row.getDescription() == null ? "" : row.getDescription());
+        transaction.setDate(row.getDate() == null || row.getDate().trim().isEmpty()
+                ? CachedClock.now() : parseDate(row.getDate().trim()));
+        transaction.setUsername(username);
+        return transaction;
+    }
+
+    // "1 234,50", "1.234,50", "1,234.50", "-12.5", "1234" -> minor units; "1,234" is rejected as ambiguous
+    static long parseAmount(String value) {
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == '\u00A0' || c == '\u202F') continue; // thousands separators
+            digits.append(c);
+        }
+        // With both a point and a comma, the last of them is the decimal separator and the other groups
+        // thousands. With only commas, a single comma followed by one or two digits is the decimal
+        // separator; any other comma could be either
+        int point = digits.lastIndexOf(".");
+        int comma = digits.lastIndexOf(",");
+        if (point >= 0 && comma >= 0) {
+            char decimal = point > comma ? '.' : ',';
+            int separator = Math.max(point, comma);
+            if (digits.indexOf(String.valueOf(decimal)) != separator) {
+                throw new IllegalArgumentException("неоднозначная сумма '" + value + "'");
+            }
+            removeAll(digits, decimal == '.' ? ',' : '.');
+            digits.setCharAt(digits.indexOf(String.valueOf(decimal)), '.');
+        } else if (comma >= 0) {
+            int decimals = digits.length() - comma - 1;
+            if (digits.indexOf(",") != comma || decimals < 1 || decimals > 2) {
+                throw new IllegalArgumentException("неоднозначная сумма '" + value + "'");
+            }
+            digits.setCharAt(comma, '.');
+        }
+        try {
+            return Money.parse(digits.toString());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("неверная сумма '" + value + "'");
+        }
+    }
+
+    private static void removeAll(StringBuilder digits, char separator) {
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            if (digits.charAt(i) == separator) digits.deleteCharAt(i);
+        }
+    }
+
+    private static Transaction.Type parseType(String value, long amount) {
+        if (value == null || value.trim().isEmpty()) {
+            return amount < 0 ? Transaction.Type.EXPENSE : Transaction.Type.INCOME;
+        }
+        switch (value.trim().toUpperCase(Locale.ROOT)) {
+            case "INCOME": case "ДОХОД": case "CREDIT": return Transaction.Type.INCOME;
+            case "EXPENSE": case "РАСХОД": case "DEBIT": return Transaction.Type.EXPENSE;
+            default: throw new IllegalArgumentException("неизвестный тип '" + value + "'");
+        }
+    }
+
+    // ISO date or date-time (with 'T' or a space), or dd.MM.yyyy [HH:mm[:ss]]
+    static LocalDateTime parseDate(String value) {
+        if (value.indexOf('.') == 2) {
+            return value.length() <= 10 ? LocalDate.parse(value, RUSSIAN_DATE).atStartOfDay()
+                    : LocalDateTime.parse(value, RUSSIAN_DATE_TIME);
+        }
+        if (value.length() == 10) {
+            return LocalDate.parse(value).atStartOfDay();
+        }
+        return LocalDateTime.parse(value.replace(' ', 'T'));
+    }
+
+    private static Set<String> existingIds(Wallet wallet) {
+        Set<String> ids = new HashSet<>();
+        wallet.getLock().readLock().lock();
+        try {
+            for (Transaction transaction : wallet.getTransactions()) {
+                ids.add(transaction.getId());
+            }
+        } finally {
+            wallet.getLock().readLock().unlock();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,21 @@
+package com.finance.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link MetricsRegistry}, registered as {@code com.finance:type=Metrics}; browse it
+ * with jconsole or any JMX client.
+ */
+public interface MetricsMXBean {
+    // Counters and gauges by name
+    Map<String, Long> getCounters();
+
+    // Latency summaries by name: count, mean, p50, p99, p99.9 and max in microseconds
+    Map<String, String> getLatencies();
+
+    // Hit rates between 0 and 1 by cache name
+    Map<String, Double> getCacheHitRates();
+
+    // Zeroes counters, latencies and cache statistics; gauges are unaffected
+    void reset();
+}
@@ -0,0 +1,105 @@
+package com.finance.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Named counters, gauges, latency histograms and cache statistics of the process. Instruments are
+ * created on first use and kept for the life of the process; classes hold the ones they update in
+ * static fields, so the hot path never looks them up. Gauges are read only when a report is taken.
+ */
+public final class MetricsRegistry implements MetricsMXBean {
+    public static final String OBJECT_NAME = "com.finance:type=Metrics";
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, CacheMetric> caches = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new LatencyHistogram());
+    }
+
+    public CacheMetric cache(String name) {
+        return caches.computeIfAbsent(name, n -> new CacheMetric());
+    }
+
+    // Replaces an earlier gauge of the same name
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    @Override
+    public SortedMap<String, Long> getCounters() {
+        SortedMap<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.get()));
+        gauges.forEach((name, gauge) -> {
+            try {
+                values.put(name, gauge.getAsLong());
+            } catch (RuntimeException e) {
+                values.put(name, -1L);
+            }
+        });
+        return values;
+    }
+
+    public SortedMap<String, LatencyHistogram.Snapshot> getLatencySnapshots() {
+        SortedMap<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> snapshots.put(name, histogram.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public SortedMap<String, String> getLatencies() {
+        SortedMap<String, String> summaries = new TreeMap<>();
+        getLatencySnapshots().forEach((name, snapshot) -> summaries.put(name, snapshot.toString()));
+        return summaries;
+    }
+
+    public SortedMap<String, CacheMetric> getCaches() {
+        return new TreeMap<>(caches);
+    }
+
+    @Override
+    public SortedMap<String, Double> getCacheHitRates() {
+        SortedMap<String, Double> rates = new TreeMap<>();
+        caches.forEach((name, cache) -> rates.put(name, cache.getHitRate()));
+        return rates;
+    }
+
+    @Override
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(LatencyHistogram::reset);
+        caches.values().forEach(CacheMetric::reset);
+    }
+
+    // Exposes the registry over JMX; does nothing if it is already registered
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Error registering metrics MBean: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.finance.model;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Income and expense totals of the transactions matching a report filter, overall, per category
+ * and per calendar month. Built by {@link TransactionAggregator}; the maps are sorted by key.
+ */
+public class AggregateReport {
+    public static final AggregateReport EMPTY =
+            new AggregateReport(new PeriodTotals(0, 0, 0), new TreeMap<>(), new TreeMap<>(), 0);
+
+    private final PeriodTotals totals;
+    private final Map<String, PeriodTotals> byCategory;
+    private final Map<YearMonth, PeriodTotals> byMonth;
+    private final int chunks;
+
+    AggregateReport(PeriodTotals totals, TreeMap<String, PeriodTotals> byCategory,
+                    TreeMap<YearMonth, PeriodTotals> byMonth, int chunks) {
+        this.totals = totals;
+        this.byCategory = Collections.unmodifiableMap(byCategory);
+        this.byMonth = Collections.unmodifiableMap(byMonth);
+        this.chunks = chunks;
+    }
+
+    public PeriodTotals getTotals() { return totals; }
+
+    // Transactions without a category count towards the totals only
+    public Map<String, PeriodTotals> getByCategory() { return byCategory; }
+
+    // Transactions without a date count towards the totals and categories only
+    public Map<YearMonth, PeriodTotals> getByMonth() { return byMonth; }
+
+    // Number of row ranges reduced in parallel, 1 for a serial scan
+    public int getChunks() { return chunks; }
+
+    // Equal figures, however many chunks they were computed in
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AggregateReport)) return false;
+        AggregateReport other = (AggregateReport) o;
+        return totals.equals(other.totals) && byCategory.equals(other.byCategory) && byMonth.equals(other.byMonth);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(totals, byCategory, byMonth);
+    }
+}
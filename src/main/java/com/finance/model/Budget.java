@@ -1,17 +1,19 @@
 package com.finance.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.Objects;
 
 public class Budget {
     private String category;
-    private double limit;
+    // In minor units, see Money
+    private long limit;
     private String username;
 
     public Budget() {}
 
     public Budget(String category, double limit, String username) {
         this.category = category;
-        this.limit = limit;
+        this.limit = Money.ofDouble(limit);
         this.username = username;
     }
 
@@ -19,8 +21,13 @@ public class Budget {
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
 
-    public double getLimit() { return limit; }
-    public void setLimit(double limit) { this.limit = limit; }
+    public double getLimit() { return Money.toDouble(limit); }
+    public void setLimit(double limit) { this.limit = Money.ofDouble(limit); }
+
+    @JsonIgnore
+    public long getLimitMinor() { return limit; }
+    @JsonIgnore
+    public void setLimitMinor(long limit) { this.limit = limit; }
 
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
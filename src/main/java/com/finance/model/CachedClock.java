@@ -0,0 +1,39 @@
+package com.finance.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Local date-time of new transactions at millisecond resolution. Callers within the same
+ * millisecond share one immutable LocalDateTime instead of each allocating one through
+ * {@code LocalDateTime.now()}. The time zone is the default zone when the class is loaded.
+ */
+public final class CachedClock {
+    private static final class Tick {
+        final long millis;
+        final LocalDateTime time;
+
+        Tick(long millis, LocalDateTime time) {
+            this.millis = millis;
+            this.time = time;
+        }
+    }
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static volatile Tick current = new Tick(Long.MIN_VALUE, null);
+
+    private CachedClock() {
+    }
+
+    public static LocalDateTime now() {
+        long millis = System.currentTimeMillis();
+        Tick tick = current;
+        if (tick.millis == millis) {
+            return tick.time;
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZONE);
+        current = new Tick(millis, time);
+        return time;
+    }
+}
@@ -0,0 +1,64 @@
+package com.finance.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns category names into dense integer ids, shared by all wallets.
+ * Ids are assigned in first-seen order and never reused, so wallets can keep per-category
+ * values by id (see {@link CategoryTable}, which keeps high ids sparse) and compare categories as ints.
+ */
+public final class CategoryDictionary {
+    private static final CategoryDictionary GLOBAL = new CategoryDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // Written under the dictionary lock before the id is published in ids
+    private volatile String[] names = new String[16];
+    private int size;
+
+    public static CategoryDictionary global() {
+        return GLOBAL;
+    }
+
+    // Id of the category, assigning a new one on first use
+    public int intern(String category) {
+        if (category == null) return -1;
+        Integer id = ids.get(category);
+        return id != null ? id : add(category);
+    }
+
+    // Id of the category, or -1 if it was never interned; does not grow the dictionary
+    public int find(String category) {
+        if (category == null) return -1;
+        Integer id = ids.get(category);
+        return id != null ? id : -1;
+    }
+
+    // The dictionary's instance of the category, so wallets share one string per category
+    public String canonical(String category) {
+        return category == null ? null : name(intern(category));
+    }
+
+    public String name(int id) {
+        return id < 0 ? null : names[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    private synchronized int add(String category) {
+        Integer existing = ids.get(category);
+        if (existing != null) return existing;
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        int id = size++;
+        String[] current = names;
+        current[id] = category;
+        names = current; // volatile write publishes the name before the id
+        ids.put(category, id);
+        return id;
+    }
+}
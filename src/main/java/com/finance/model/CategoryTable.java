@@ -0,0 +1,126 @@
+package com.finance.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Rows of {@code columns} longs keyed by category id (see {@link CategoryDictionary}). Ids below
+ * {@code -Dfinance.categories.denseIds} (1024) live in one array indexed by id; higher ids, which only
+ * a process with that many distinct categories hands out, live in a sorted map. A wallet's tables
+ * therefore grow with the categories it uses, not with the highest id any wallet has interned.
+ */
+final class CategoryTable {
+    static final int DENSE_IDS = Integer.getInteger("finance.categories.denseIds", 1024);
+
+    /**
+     * Receives a row: its values are {@code values[offset]} to {@code values[offset + columns - 1]}.
+     */
+    interface RowConsumer {
+        void accept(int id, long[] values, int offset);
+    }
+
+    private final int columns;
+    private long[] dense = new long[0];
+    // Dense rows written at least once
+    private final BitSet present = new BitSet();
+    // Null until an id at or above DENSE_IDS is written
+    private TreeMap<Integer, long[]> sparse;
+
+    CategoryTable(int columns) {
+        this.columns = columns;
+    }
+
+    long get(int id, int column) {
+        if (id < 0) return 0;
+        if (id < DENSE_IDS) {
+            int index = id * columns + column;
+            return index < dense.length ? dense[index] : 0;
+        }
+        long[] row = sparse != null ? sparse.get(id) : null;
+        return row != null ? row[column] : 0;
+    }
+
+    boolean contains(int id) {
+        if (id < 0) return false;
+        return id < DENSE_IDS ? present.get(id) : sparse != null && sparse.containsKey(id);
+    }
+
+    // Makes the row present without changing it, e.g. to use a table of no columns as a set of ids
+    void mark(int id) {
+        if (id < DENSE_IDS) {
+            denseIndex(id);
+        } else {
+            sparseRow(id);
+        }
+    }
+
+    void add(int id, int column, long delta) {
+        if (id < DENSE_IDS) {
+            int index = denseIndex(id) + column; // may replace dense, so before it is read
+            dense[index] += delta;
+        } else {
+            sparseRow(id)[column] += delta;
+        }
+    }
+
+    void set(int id, int column, long value) {
+        if (id < DENSE_IDS) {
+            int index = denseIndex(id) + column;
+            dense[index] = value;
+        } else {
+            sparseRow(id)[column] = value;
+        }
+    }
+
+    // Rows written at least once, in id order
+    void forEach(RowConsumer consumer) {
+        for (int id = present.nextSetBit(0); id >= 0; id = present.nextSetBit(id + 1)) {
+            consumer.accept(id, dense, id * columns);
+        }
+        if (sparse != null) {
+            for (Map.Entry<Integer, long[]> row : sparse.entrySet()) {
+                consumer.accept(row.getKey(), row.getValue(), 0);
+            }
+        }
+    }
+
+    // Number of rows written at least once
+    int size() {
+        return present.cardinality() + (sparse != null ? sparse.size() : 0);
+    }
+
+    CategoryTable copy() {
+        CategoryTable copy = new CategoryTable(columns);
+        copy.dense = dense.clone();
+        copy.present.or(present);
+        if (sparse != null) {
+            copy.sparse = new TreeMap<>();
+            sparse.forEach((id, row) -> copy.sparse.put(id, row.clone()));
+        }
+        return copy;
+    }
+
+    void clear() {
+        Arrays.fill(dense, 0);
+        present.clear();
+        sparse = null;
+    }
+
+    private int denseIndex(int id) {
+        int index = id * columns;
+        if (index + columns > dense.length) {
+            dense = Arrays.copyOf(dense, Math.max(index + columns, Math.min(dense.length * 2, DENSE_IDS * columns)));
+        }
+        present.set(id);
+        return index;
+    }
+
+    private long[] sparseRow(int id) {
+        if (sparse == null) {
+            sparse = new TreeMap<>();
+        }
+        return sparse.computeIfAbsent(id, i -> new long[columns]);
+    }
+}
@@ -0,0 +1,212 @@
+package com.finance.model;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores transactions as parallel primitive arrays instead of one object per row:
+ * dates as epoch millis (UTC), amounts in minor units (see {@link Money}), categories and usernames
+ * as ids in a per-store dictionary, UUID ids as two longs.
+ * Rows are read back through lightweight read-only {@link Transaction} views.
+ * Dates keep millisecond precision.
+ */
+public class ColumnarTransactionStore implements TransactionStore {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final byte INCOME = 0;
+    private static final byte EXPENSE = 1;
+
+    private long[] epochMillis = new long[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] categoryIds = new int[INITIAL_CAPACITY];
+    private int[] usernameIds = new int[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private long[] idHigh = new long[INITIAL_CAPACITY];
+    private long[] idLow = new long[INITIAL_CAPACITY];
+    private String[] descriptions = new String[INITIAL_CAPACITY];
+    private int size;
+
+    // Ids that are not UUIDs are kept as strings
+    private final Map<Integer, String> otherIds = new HashMap<>();
+    // Transfer ids of the few rows that are transfer legs
+    private final Map<Integer, String> transferIds = new HashMap<>();
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+
+    @Override
+    public int add(Transaction transaction) {
+        if (size == types.length) {
+            grow();
+        }
+        int row = size++;
+        types[row] = transaction.getType() == Transaction.Type.INCOME ? INCOME : EXPENSE;
+        amounts[row] = transaction.getAmountMinor();
+        categoryIds[row] = intern(transaction.getCategory());
+        usernameIds[row] = intern(transaction.getUsername());
+        descriptions[row] = transaction.getDescription();
+        epochMillis[row] = transaction.getDate() == null ? Long.MIN_VALUE
+                : transaction.getDate().toInstant(ZoneOffset.UTC).toEpochMilli();
+        storeId(row, transaction.getId());
+        if (transaction.getTransferId() != null) {
+            transferIds.put(row, transaction.getTransferId());
+        }
+        return row;
+    }
+
+    @Override
+    public Transaction get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return new View(row);
+    }
+
+    @Override
+    public int size() { return size; }
+
+    @Override
+    public void clear() {
+        Arrays.fill(descriptions, 0, size, null);
+        size = 0;
+        otherIds.clear();
+        transferIds.clear();
+        dictionary.clear();
+        dictionaryIds.clear();
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        // Column arrays at their capacity, plus map entries of non-UUID and transfer ids
+        long perRow = 8 + 8 + 4 + 4 + 1 + 8 + 8 + 4;
+        return epochMillis.length * perRow + (otherIds.size() + transferIds.size()) * 96L;
+    }
+
+    @Override
+    public List<Transaction> asList() {
+        return new AbstractList<Transaction>() {
+            @Override
+            public Transaction get(int index) { return ColumnarTransactionStore.this.get(index); }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    private int intern(String value) {
+        if (value == null) return -1;
+        Integer id = dictionaryIds.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, id);
+        }
+        return id;
+    }
+
+    private String lookup(int id) {
+        return id < 0 ? null : dictionary.get(id);
+    }
+
+    private void storeId(int row, String id) {
+        try {
+            UUID uuid = UUID.fromString(id);
+            if (uuid.toString().equals(id)) {
+                idHigh[row] = uuid.getMostSignificantBits();
+                idLow[row] = uuid.getLeastSignificantBits();
+                return;
+            }
+        } catch (IllegalArgumentException | NullPointerException e) {
+            // not a canonical UUID, kept as a string below
+        }
+        otherIds.put(row, id);
+    }
+
+    private void grow() {
+        int capacity = types.length + (types.length >> 1);
+        epochMillis = Arrays.copyOf(epochMillis, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        categoryIds = Arrays.copyOf(categoryIds, capacity);
+        usernameIds = Arrays.copyOf(usernameIds, capacity);
+        types = Arrays.copyOf(types, capacity);
+        idHigh = Arrays.copyOf(idHigh, capacity);
+        idLow = Arrays.copyOf(idLow, capacity);
+        descriptions = Arrays.copyOf(descriptions, capacity);
+    }
+
+    /**
+     * Read-only transaction backed by one row of the columns.
+     */
+    private class View extends Transaction {
+        private final int row;
+
+        View(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public String getId() {
+            return otherIds.containsKey(row) ? otherIds.get(row) : new UUID(idHigh[row], idLow[row]).toString();
+        }
+
+        @Override
+        public Type getType() { return types[row] == INCOME ? Type.INCOME : Type.EXPENSE; }
+
+        @Override
+        public String getCategory() { return lookup(categoryIds[row]); }
+
+        @Override
+        public long getAmountMinor() { return amounts[row]; }
+
+        @Override
+        public String getDescription() { return descriptions[row]; }
+
+        @Override
+        public LocalDateTime getDate() {
+            long millis = epochMillis[row];
+            return millis == Long.MIN_VALUE ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+        }
+
+        @Override
+        public String getUsername() { return lookup(usernameIds[row]); }
+
+        @Override
+        public String getTransferId() { return transferIds.get(row); }
+
+        @Override
+        public void setId(String id) { throw readOnly(); }
+
+        @Override
+        public void setType(Type type) { throw readOnly(); }
+
+        @Override
+        public void setCategory(String category) { throw readOnly(); }
+
+        @Override
+        public void setAmountMinor(long amount) { throw readOnly(); }
+
+        @Override
+        public void setDescription(String description) { throw readOnly(); }
+
+        @Override
+        public void setDate(LocalDateTime date) { throw readOnly(); }
+
+        @Override
+        public void setUsername(String username) { throw readOnly(); }
+
+        @Override
+        public void setTransferId(String transferId) { throw readOnly(); }
+
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Columnar transactions are read-only");
+        }
+    }
+}
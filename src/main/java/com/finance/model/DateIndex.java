@@ -0,0 +1,134 @@
+package com.finance.model;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.IntPredicate;
+
+/**
+ * Transaction rows of a {@link TransactionStore} bucketed by day, with income/expense sums kept per day and per month.
+ * A range query costs O(log n + k); a range sum touches at most the partial days
+ * at both ends plus one bucket per full month.
+ */
+class DateIndex {
+    private static class Sums {
+        long income;
+        long expenses;
+        int count;
+
+        void add(Transaction transaction) {
+            if (transaction.getType() == Transaction.Type.INCOME) {
+                income += transaction.getAmountMinor();
+            } else if (transaction.getType() == Transaction.Type.EXPENSE) {
+                expenses += transaction.getAmountMinor();
+            }
+            count++;
+        }
+    }
+
+    private static class DayBucket extends Sums {
+        int[] rows = new int[2];
+
+        void addRow(int row) {
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            rows[count] = row;
+        }
+    }
+
+    private final TreeMap<LocalDate, DayBucket> days = new TreeMap<>();
+    private final TreeMap<YearMonth, Sums> months = new TreeMap<>();
+
+    void add(Transaction transaction, int row) {
+        if (transaction.getDate() == null) return;
+        LocalDate day = transaction.getDate().toLocalDate();
+        DayBucket bucket = days.computeIfAbsent(day, d -> new DayBucket());
+        bucket.addRow(row);
+        bucket.add(transaction);
+        months.computeIfAbsent(YearMonth.from(day), m -> new Sums()).add(transaction);
+    }
+
+    void clear() {
+        days.clear();
+        months.clear();
+    }
+
+    // Skipped rows are counted per day, so only the returned ones are read from the store
+    List<Transaction> between(LocalDate start, LocalDate end, TransactionStore store, int offset, int limit) {
+        List<Transaction> result = new ArrayList<>();
+        if (start.isAfter(end)) return result;
+        int skip = Math.max(0, offset);
+        for (DayBucket bucket : days.subMap(start, true, end, true).values()) {
+            if (result.size() >= limit) break;
+            if (skip >= bucket.count) {
+                skip -= bucket.count;
+                continue;
+            }
+            for (int i = skip; i < bucket.count && result.size() < limit; i++) {
+                result.add(store.get(bucket.rows[i]));
+            }
+            skip = 0;
+        }
+        return result;
+    }
+
+    // Row numbers dated within [start, end] (either bound null for open-ended) that pass the filter, in date order
+    int[] rows(LocalDate start, LocalDate end, IntPredicate filter) {
+        if (start != null && end != null && start.isAfter(end)) return new int[0];
+        NavigableMap<LocalDate, DayBucket> range = days;
+        if (start != null) range = range.tailMap(start, true);
+        if (end != null) range = range.headMap(end, true);
+        int[] result = new int[16];
+        int size = 0;
+        for (DayBucket bucket : range.values()) {
+            for (int i = 0; i < bucket.count; i++) {
+                if (!filter.test(bucket.rows[i])) continue;
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = bucket.rows[i];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    PeriodTotals totals(LocalDate start, LocalDate end) {
+        Sums total = new Sums();
+        if (start.isAfter(end)) return toTotals(total);
+
+        YearMonth firstFull = start.getDayOfMonth() == 1 ? YearMonth.from(start) : YearMonth.from(start).plusMonths(1);
+        YearMonth lastFull = end.equals(YearMonth.from(end).atEndOfMonth()) ? YearMonth.from(end) : YearMonth.from(end).minusMonths(1);
+
+        if (firstFull.isAfter(lastFull)) {
+            addDays(total, days.subMap(start, true, end, true));
+        } else {
+            addDays(total, days.subMap(start, true, firstFull.atDay(1), false));
+            for (Sums month : months.subMap(firstFull, true, lastFull, true).values()) {
+                merge(total, month);
+            }
+            addDays(total, days.subMap(lastFull.atEndOfMonth(), false, end, true));
+        }
+        return toTotals(total);
+    }
+
+    private static void addDays(Sums total, NavigableMap<LocalDate, DayBucket> range) {
+        for (DayBucket bucket : range.values()) {
+            merge(total, bucket);
+        }
+    }
+
+    private static void merge(Sums total, Sums part) {
+        total.income += part.income;
+        total.expenses += part.expenses;
+        total.count += part.count;
+    }
+
+    private static PeriodTotals toTotals(Sums sums) {
+        return new PeriodTotals(sums.income, sums.expenses, sums.count);
+    }
+}
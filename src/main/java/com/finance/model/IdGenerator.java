@@ -0,0 +1,9 @@
+package com.finance.model;
+
+/**
+ * Source of ids for new transactions, see {@link IdGenerators} and {@link Transaction#setIdGenerator}.
+ * Must be thread-safe and never return the same id twice within a data directory.
+ */
+public interface IdGenerator {
+    String nextId();
+}
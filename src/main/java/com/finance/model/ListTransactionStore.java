@@ -0,0 +1,33 @@
+package com.finance.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ListTransactionStore implements TransactionStore {
+    // Transaction with its id string and LocalDateTime plus the list slot, as measured by WalletMemoryBenchmark
+    static final long OBJECT_ROW_BYTES = 190;
+
+    private final List<Transaction> transactions = new ArrayList<>();
+
+    @Override
+    public int add(Transaction transaction) {
+        transactions.add(transaction);
+        return transactions.size() - 1;
+    }
+
+    @Override
+    public Transaction get(int row) { return transactions.get(row); }
+
+    @Override
+    public int size() { return transactions.size(); }
+
+    @Override
+    public void clear() { transactions.clear(); }
+
+    @Override
+    public long estimateHeapBytes() { return transactions.size() * OBJECT_ROW_BYTES; }
+
+    @Override
+    public List<Transaction> asList() { return Collections.unmodifiableList(transactions); }
+}
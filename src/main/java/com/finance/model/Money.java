@@ -0,0 +1,92 @@
+package com.finance.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point money arithmetic on {@code long} minor units (cents).
+ * Amounts stay primitive on the hot path, so sums are exact and need no allocation;
+ * doubles appear only at the API and JSON boundary.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+    public static final long MINOR_PER_UNIT = 100;
+    // Largest amount accepted from callers, ten trillion units; thousands of them still sum within a long
+    public static final long MAX_AMOUNT_MINOR = 1_000_000_000_000_000L;
+
+    private Money() {}
+
+    // Finite and within MAX_AMOUNT_MINOR either way
+    public static boolean isValid(double amount) {
+        return Double.isFinite(amount) && Math.abs(amount) * MINOR_PER_UNIT <= MAX_AMOUNT_MINOR;
+    }
+
+    // Rounds half away from zero to the nearest minor unit; rejects amounts that are not valid
+    public static long ofDouble(double amount) {
+        if (!isValid(amount)) {
+            throw new IllegalArgumentException("Amount out of range: " + amount);
+        }
+        // Math.round rounds half up, so the magnitude is rounded and the sign put back
+        long minor = Math.round(Math.abs(amount) * MINOR_PER_UNIT);
+        return amount < 0 ? -minor : minor;
+    }
+
+    public static double toDouble(long minor) {
+        return (double) minor / MINOR_PER_UNIT;
+    }
+
+    // Exact decimal parse, e.g. "12.345" -> 1235; amounts beyond MAX_AMOUNT_MINOR are rejected
+    public static long parse(String amount) {
+        BigDecimal value = new BigDecimal(amount.trim());
+        // Digits before the point, checked before rescaling, which would expand an exponent such as 1e999999999
+        int integerDigits = value.precision() - value.scale();
+        if (integerDigits > 16) {
+            throw new NumberFormatException("Amount out of range: " + amount);
+        }
+        if (integerDigits < -2) {
+            return 0; // below 0.001
+        }
+        long minor = value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValue();
+        if (Math.abs(minor) > MAX_AMOUNT_MINOR) {
+            throw new NumberFormatException("Amount out of range: " + amount);
+        }
+        return minor;
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static int compare(long a, long b) {
+        return Long.compare(a, b);
+    }
+
+    public static String format(long minor) {
+        return appendTo(new StringBuilder(24), minor).toString();
+    }
+
+    public static String format(double amount) {
+        return format(ofDouble(amount));
+    }
+
+    /**
+     * Appends the amount with two decimals, like {@code String.format("%.2f")} but
+     * locale-independent and without the formatter overhead.
+     */
+    public static StringBuilder appendTo(StringBuilder out, long minor) {
+        if (minor < 0) {
+            out.append('-');
+            if (minor == Long.MIN_VALUE) {
+                // -Long.MIN_VALUE overflows; its last two digits are 08
+                return out.append(-(minor / MINOR_PER_UNIT)).append(".08");
+            }
+            minor = -minor;
+        }
+        long cents = minor % MINOR_PER_UNIT;
+        out.append(minor / MINOR_PER_UNIT).append('.');
+        if (cents < 10) {
+            out.append('0');
+        }
+        return out.append(cents);
+    }
+}
@@ -0,0 +1,333 @@
+package com.finance.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the most recent transactions on the heap and seals older ones into immutable,
+ * memory-mapped segment files of a fixed number of rows, so a wallet's history can outgrow the heap.
+ * Between one and two segments' worth of rows stay in memory.
+ * Each sealed segment has a {@link SegmentSummary}. Category scans skip the segments it rules out,
+ * reports answer the segments it covers whole (see {@link TransactionAggregator}), and a sealed row is decoded from its mapped page only when it is read, as a read-only {@link Transaction}.
+ * Segment files are a spill area of this process only: they are unlinked as soon as they are mapped,
+ * and the snapshot and journal remain the durable copy of the rows.
+ */
+public class PagedTransactionStore implements TransactionStore {
+    private static final int DEFAULT_SEGMENT_ROWS = Integer.getInteger("finance.wallet.segmentRows", 65536);
+    private static final String DEFAULT_SEGMENT_DIR =
+            System.getProperty("finance.wallet.segmentDir", System.getProperty("java.io.tmpdir"));
+
+    // Row layout: flags, amount, epoch second, nanos, category id, username id, id, description, transfer id;
+    // flags, id and strings are encoded as in the binary snapshot (see TransactionRowCodec)
+    private static final int CATEGORY_OFFSET = 1 + 8 + 8 + 4;
+    private static final int FIXED_BYTES = CATEGORY_OFFSET + 4 + 4;
+
+    private final Path segmentDir;
+    private final int segmentRows;
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<Transaction> recent = new ArrayList<>();
+    private int sealedRows;
+
+    // Category and username ids of sealed rows, shared by all segments of the store
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIds = new HashMap<>();
+
+    public PagedTransactionStore() {
+        this(Paths.get(DEFAULT_SEGMENT_DIR), DEFAULT_SEGMENT_ROWS);
+    }
+
+    public PagedTransactionStore(Path segmentDir, int segmentRows) {
+        if (segmentRows <= 0) {
+            throw new IllegalArgumentException("segmentRows must be positive");
+        }
+        this.segmentDir = segmentDir;
+        this.segmentRows = segmentRows;
+    }
+
+    @Override
+    public int add(Transaction transaction) {
+        // Sealed before the row is added, so a failed seal leaves the store as it was
+        if (recent.size() + 1 >= 2 * segmentRows) {
+            seal(recent.subList(0, segmentRows));
+        }
+        recent.add(transaction);
+        return sealedRows + recent.size() - 1;
+    }
+
+    @Override
+    public Transaction get(int row) {
+        if (row < 0 || row >= size()) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size());
+        }
+        if (row >= sealedRows) {
+            return recent.get(row - sealedRows);
+        }
+        Segment segment = segments.get(row / segmentRows);
+        return segment.read(row - segment.summary.getFirstRow());
+    }
+
+    @Override
+    public int size() { return sealedRows + recent.size(); }
+
+    @Override
+    public void clear() {
+        segments.clear();
+        recent.clear();
+        sealedRows = 0;
+        dictionary.clear();
+        dictionaryIds.clear();
+    }
+
+    @Override
+    public long estimateHeapBytes() {
+        // Sealed rows live in mapped files; only recent rows and segment summaries are on the heap
+        return recent.size() * ListTransactionStore.OBJECT_ROW_BYTES + segments.size() * 512L;
+    }
+
+    @Override
+    public List<Transaction> asList() {
+        return new AbstractList<Transaction>() {
+            @Override
+            public Transaction get(int index) { return PagedTransactionStore.this.get(index); }
+
+            @Override
+            public int size() { return PagedTransactionStore.this.size(); }
+        };
+    }
+
+    // Sealed segments skip rows by category id before decoding, and skip whole segments by their summary
+    @Override
+    public Stream<Transaction> stream(Set<String> categories) {
+        if (categories == null) {
+            return asList().stream();
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (String category : categories) {
+            Integer id = dictionaryIds.get(category);
+            if (id != null) ids.add(id);
+        }
+        Stream<Transaction> sealed = segments.stream()
+                .filter(segment -> segment.summary.mayContainAny(categories))
+                .flatMap(segment -> IntStream.range(0, segment.summary.getRowCount())
+                        .filter(index -> ids.contains(segment.categoryId(index)))
+                        .mapToObj(segment::read));
+        return Stream.concat(sealed, recent.stream().filter(t -> categories.contains(t.getCategory())));
+    }
+
+    @Override
+    public List<SegmentSummary> getSegments() {
+        List<SegmentSummary> summaries = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            summaries.add(segment.summary);
+        }
+        return Collections.unmodifiableList(summaries);
+    }
+
+    // Rows currently held on the heap
+    public int getRecentCount() { return recent.size(); }
+
+    private void seal(List<Transaction> rows) {
+        try {
+            Files.createDirectories(segmentDir);
+            Path file = Files.createTempFile(segmentDir, "segment-", ".seg");
+            try {
+                SegmentSummary summary = write(file, rows);
+                ByteBuffer mapped;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                segments.add(new Segment(summary, mapped, rows.size()));
+            } finally {
+                // The mapping stays valid after the file is unlinked
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    file.toFile().deleteOnExit();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error sealing transaction segment in " + segmentDir, e);
+        }
+        sealedRows += rows.size();
+        rows.clear();
+    }
+
+    private SegmentSummary write(Path file, List<Transaction> rows) throws IOException {
+        int[] offsets = new int[rows.size()];
+        LocalDateTime minDate = null;
+        LocalDateTime maxDate = null;
+        long totalIncome = 0;
+        long totalExpenses = 0;
+        Map<String, Long> incomeByCategory = new LinkedHashMap<>();
+        Map<String, Long> expensesByCategory = new LinkedHashMap<>();
+        int datedRows = 0;
+        RollupCube rollup = new RollupCube();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            TransactionRowCodec.Writer out = new TransactionRowCodec.Writer(channel, 1 << 16);
+            for (int i = 0; i < rows.size(); i++) {
+                Transaction transaction = rows.get(i);
+                if (out.position() >= Integer.MAX_VALUE - 4L * rows.size()) {
+                    throw new IOException("Transaction segment exceeds 2 GB");
+                }
+                offsets[i] = (int) out.position();
+                LocalDateTime date = transaction.getDate();
+                int flags = TransactionRowCodec.flags(transaction);
+
+                out.writeByte(flags);
+                out.writeLong(transaction.getAmountMinor());
+                out.writeLong(date != null ? date.toEpochSecond(ZoneOffset.UTC) : 0);
+                out.writeInt(date != null ? date.getNano() : 0);
+                out.writeInt(intern(transaction.getCategory()));
+                out.writeInt(intern(transaction.getUsername()));
+                out.writeId(transaction.getId(), flags);
+                out.writeString(transaction.getDescription());
+                if ((flags & TransactionRowCodec.HAS_TRANSFER) != 0) {
+                    out.writeString(transaction.getTransferId());
+                }
+
+                rollup.add(transaction);
+                if (date != null) {
+                    datedRows++;
+                    if (minDate == null || date.isBefore(minDate)) minDate = date;
+                    if (maxDate == null || date.isAfter(maxDate)) maxDate = date;
+                }
+                if (transaction.getType() == Transaction.Type.INCOME) {
+                    totalIncome += transaction.getAmountMinor();
+                    if (transaction.getCategory() != null) {
+                        incomeByCategory.merge(transaction.getCategory(), transaction.getAmountMinor(), Long::sum);
+                    }
+                } else if (transaction.getType() == Transaction.Type.EXPENSE) {
+                    totalExpenses += transaction.getAmountMinor();
+                    if (transaction.getCategory() != null) {
+                        expensesByCategory.merge(transaction.getCategory(), transaction.getAmountMinor(), Long::sum);
+                    }
+                }
+            }
+            // Row offsets at the end, so any row is found with one read
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.flush();
+        }
+        return new SegmentSummary(sealedRows, rows.size(), datedRows, minDate, maxDate,
+                totalIncome, totalExpenses, incomeByCategory, expensesByCategory, rollup);
+    }
+
+    private int intern(String value) {
+        if (value == null) return -1;
+        Integer id = dictionaryIds.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            dictionary.add(value);
+            dictionaryIds.put(value, id);
+        }
+        return id;
+    }
+
+    private String lookup(int id) {
+        return id < 0 ? null : dictionary.get(id);
+    }
+
+    /**
+     * A sealed segment: its summary and the mapped rows, read with absolute gets or through a duplicate
+     * so concurrent readers under the wallet's read lock do not interfere.
+     */
+    private class Segment {
+        final SegmentSummary summary;
+        final ByteBuffer rows;
+        final int offsetTable;
+
+        Segment(SegmentSummary summary, ByteBuffer rows, int rowCount) {
+            this.summary = summary;
+            this.rows = rows;
+            this.offsetTable = rows.capacity() - 4 * rowCount;
+        }
+
+        int categoryId(int index) {
+            return rows.getInt(rows.getInt(offsetTable + 4 * index) + CATEGORY_OFFSET);
+        }
+
+        Transaction read(int index) {
+            int position = rows.getInt(offsetTable + 4 * index);
+            int flags = rows.get(position);
+            long amount = rows.getLong(position + 1);
+            LocalDateTime date = (flags & TransactionRowCodec.HAS_DATE) == 0 ? null
+                    : LocalDateTime.ofEpochSecond(rows.getLong(position + 9), rows.getInt(position + 17), ZoneOffset.UTC);
+            String category = lookup(rows.getInt(position + CATEGORY_OFFSET));
+            String username = lookup(rows.getInt(position + CATEGORY_OFFSET + 4));
+            // A view of its own, so the relative reads below do not move another reader's position
+            ByteBuffer in = rows.duplicate();
+            in.position(position + FIXED_BYTES);
+            String id = TransactionRowCodec.readId(in, flags);
+            String description = TransactionRowCodec.readString(in);
+            String transferId = (flags & TransactionRowCodec.HAS_TRANSFER) != 0 ? TransactionRowCodec.readString(in) : null;
+            return new SealedTransaction(id, TransactionRowCodec.typeOf(flags),
+                    category, amount, description, date, username, transferId);
+        }
+    }
+
+    /**
+     * Row decoded from a sealed segment; changing it would not reach the segment, so it is read-only.
+     */
+    private static class SealedTransaction extends Transaction {
+        SealedTransaction(String id, Type type, String category, long amount, String description,
+                          LocalDateTime date, String username, String transferId) {
+            super.setId(id);
+            super.setType(type);
+            super.setCategory(category);
+            super.setAmountMinor(amount);
+            super.setDescription(description);
+            super.setDate(date);
+            super.setUsername(username);
+            super.setTransferId(transferId);
+        }
+
+        @Override
+        public void setId(String id) { throw readOnly(); }
+
+        @Override
+        public void setType(Type type) { throw readOnly(); }
+
+        @Override
+        public void setCategory(String category) { throw readOnly(); }
+
+        @Override
+        public void setAmountMinor(long amount) { throw readOnly(); }
+
+        @Override
+        public void setDescription(String description) { throw readOnly(); }
+
+        @Override
+        public void setDate(LocalDateTime date) { throw readOnly(); }
+
+        @Override
+        public void setUsername(String username) { throw readOnly(); }
+
+        @Override
+        public void setTransferId(String transferId) { throw readOnly(); }
+
+        private UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Sealed transactions are read-only");
+        }
+    }
+}
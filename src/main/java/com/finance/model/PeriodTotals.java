@@ -0,0 +1,44 @@
+package com.finance.model;
+
+import java.util.Objects;
+
+public class PeriodTotals {
+    // In minor units, see Money
+    private final long income;
+    private final long expenses;
+    private final int count;
+
+    public PeriodTotals(long income, long expenses, int count) {
+        this.income = income;
+        this.expenses = expenses;
+        this.count = count;
+    }
+
+    public double getIncome() { return Money.toDouble(income); }
+    public double getExpenses() { return Money.toDouble(expenses); }
+    public double getBalance() { return Money.toDouble(income - expenses); }
+
+    public long getIncomeMinor() { return income; }
+    public long getExpensesMinor() { return expenses; }
+    public long getBalanceMinor() { return income - expenses; }
+
+    public int getCount() { return count; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PeriodTotals)) return false;
+        PeriodTotals other = (PeriodTotals) o;
+        return income == other.income && expenses == other.expenses && count == other.count;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(income, expenses, count);
+    }
+
+    @Override
+    public String toString() {
+        return "PeriodTotals{income=" + income + ", expenses=" + expenses + ", count=" + count + "}";
+    }
+}
@@ -0,0 +1,202 @@
+package com.finance.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Materialized (year-month, category, type) → sum and count of a wallet's transactions,
+ * kept up to date as transactions are added. A report over whole months is answered from
+ * the cells in O(months × categories), whatever the number of transactions.
+ * Undated transactions are kept under a month of null, uncategorized ones under a category of null,
+ * and transactions without a type under a type of null.
+ */
+@JsonSerialize(using = RollupCubeJson.Serializer.class)
+@JsonDeserialize(using = RollupCubeJson.Deserializer.class)
+public class RollupCube {
+    private static final CategoryDictionary CATEGORIES = CategoryDictionary.global();
+    // Types in slot order; the last slot is for transactions without a type
+    private static final Transaction.Type[] TYPES = {Transaction.Type.INCOME, Transaction.Type.EXPENSE, null};
+    private static final int SLOTS = TYPES.length;
+    private static final int UNDATED = Integer.MIN_VALUE;
+
+    /**
+     * Receives each non-empty cell; month, category and type may be null as described above.
+     */
+    public interface CellConsumer {
+        void accept(YearMonth month, String category, Transaction.Type type, long sum, int count);
+    }
+
+    // Cells by year * 12 + month - 1, with undated transactions first. A month's rows are keyed by
+    // category id + 1 (0 for uncategorized) and hold the sum of each type slot, then the count of each.
+    private final TreeMap<Integer, CategoryTable> months = new TreeMap<>();
+    private int transactionCount;
+
+    void add(Transaction transaction) {
+        LocalDateTime date = transaction.getDate();
+        int month = date == null ? UNDATED : key(YearMonth.from(date));
+        int category = CATEGORIES.intern(transaction.getCategory());
+        addToCell(month, category + 1, slot(transaction.getType()), transaction.getAmountMinor(), 1);
+        transactionCount++;
+    }
+
+    /**
+     * Adds a cell read back from a snapshot; {@link #setTransactionCount} then records
+     * how many transactions the cells cover.
+     */
+    public void addCell(YearMonth month, String category, Transaction.Type type, long sum, int count) {
+        addToCell(month == null ? UNDATED : key(month), CATEGORIES.intern(category) + 1, slot(type), sum, count);
+    }
+
+    public void setTransactionCount(int transactionCount) {
+        this.transactionCount = transactionCount;
+    }
+
+    // Number of transactions the cells cover
+    public int getTransactionCount() {
+        return transactionCount;
+    }
+
+    public int getCellCount() {
+        int[] cells = new int[1];
+        for (CategoryTable row : months.values()) {
+            row.forEach((key, values, offset) -> {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    if (values[offset + SLOTS + slot] > 0) cells[0]++;
+                }
+            });
+        }
+        return cells[0];
+    }
+
+    public long getSum(YearMonth month, String category, Transaction.Type type) {
+        CategoryTable row = months.get(month == null ? UNDATED : key(month));
+        int key = find(category);
+        return row != null && key >= 0 ? row.get(key, slot(type)) : 0;
+    }
+
+    public int getCount(YearMonth month, String category, Transaction.Type type) {
+        CategoryTable row = months.get(month == null ? UNDATED : key(month));
+        int key = find(category);
+        return row != null && key >= 0 ? (int) row.get(key, SLOTS + slot(type)) : 0;
+    }
+
+    // Non-empty cells by month (undated first), then category id, then type
+    public void forEachCell(CellConsumer consumer) {
+        for (Map.Entry<Integer, CategoryTable> entry : months.entrySet()) {
+            YearMonth month = toMonth(entry.getKey());
+            entry.getValue().forEach((key, values, offset) -> {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    if (values[offset + SLOTS + slot] > 0) {
+                        consumer.accept(month, CATEGORIES.name(key - 1), TYPES[slot],
+                                values[offset + slot], (int) values[offset + SLOTS + slot]);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Same figures as a scan with {@link TransactionAggregator} over the whole months from..to
+     * (null for open-ended); undated transactions are included only when both are null.
+     */
+    AggregateReport report(YearMonth from, YearMonth to, Collection<String> categories) {
+        TreeMap<String, PeriodTotals> byCategory = new TreeMap<>();
+        TreeMap<YearMonth, PeriodTotals> byMonth = new TreeMap<>();
+        if (from != null && to != null && from.isAfter(to)) {
+            return new AggregateReport(new PeriodTotals(0, 0, 0), byCategory, byMonth, 0);
+        }
+        CategoryTable wanted = categories != null ? keysOf(categories) : null;
+        Map<Integer, CategoryTable> range = months;
+        if (from != null || to != null) {
+            range = months.subMap(from == null ? UNDATED + 1 : key(from), true,
+                    to == null ? Integer.MAX_VALUE : key(to), true);
+        }
+
+        // Per key: income, expenses, count
+        CategoryTable categoryTotals = new CategoryTable(3);
+        // Income, expenses, count of the report and of the month being added
+        long[] total = new long[3];
+        long[] month = new long[3];
+        for (Map.Entry<Integer, CategoryTable> entry : range.entrySet()) {
+            Arrays.fill(month, 0);
+            entry.getValue().forEach((key, values, offset) -> {
+                if (wanted != null && !wanted.contains(key)) return;
+                long cellIncome = values[offset + slot(Transaction.Type.INCOME)];
+                long cellExpenses = values[offset + slot(Transaction.Type.EXPENSE)];
+                long cellCount = 0;
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    cellCount += values[offset + SLOTS + slot];
+                }
+                month[0] += cellIncome;
+                month[1] += cellExpenses;
+                month[2] += cellCount;
+                if (key > 0 && cellCount > 0) {
+                    categoryTotals.add(key, 0, cellIncome);
+                    categoryTotals.add(key, 1, cellExpenses);
+                    categoryTotals.add(key, 2, cellCount);
+                }
+            });
+            if (month[2] > 0 && entry.getKey() != UNDATED) {
+                byMonth.put(toMonth(entry.getKey()), new PeriodTotals(month[0], month[1], (int) month[2]));
+            }
+            for (int i = 0; i < 3; i++) {
+                total[i] += month[i];
+            }
+        }
+        categoryTotals.forEach((key, values, offset) -> byCategory.put(CATEGORIES.name(key - 1),
+                new PeriodTotals(values[offset], values[offset + 1], (int) values[offset + 2])));
+        return new AggregateReport(new PeriodTotals(total[0], total[1], (int) total[2]), byCategory, byMonth, 0);
+    }
+
+    RollupCube copy() {
+        RollupCube copy = new RollupCube();
+        months.forEach((month, row) -> copy.months.put(month, row.copy()));
+        copy.transactionCount = transactionCount;
+        return copy;
+    }
+
+    void clear() {
+        months.clear();
+        transactionCount = 0;
+    }
+
+    private void addToCell(int month, int key, int slot, long sum, int count) {
+        CategoryTable row = months.computeIfAbsent(month, m -> new CategoryTable(2 * SLOTS));
+        row.add(key, slot, sum);
+        row.add(key, SLOTS + slot, count);
+    }
+
+    // Row keys (category id + 1) of the categories that were ever interned
+    private static CategoryTable keysOf(Collection<String> categories) {
+        CategoryTable keys = new CategoryTable(0);
+        for (String category : categories) {
+            int id = CATEGORIES.find(category);
+            if (id >= 0) keys.mark(id + 1);
+        }
+        return keys;
+    }
+
+    // Row key of a category, or -1 if the category was never interned
+    private static int find(String category) {
+        int id = CATEGORIES.find(category);
+        return category != null && id < 0 ? -1 : id + 1;
+    }
+
+    private static int slot(Transaction.Type type) {
+        return type == null ? SLOTS - 1 : type.ordinal();
+    }
+
+    private static int key(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+
+    private static YearMonth toMonth(int key) {
+        return key == UNDATED ? null : YearMonth.of(Math.floorDiv(key, 12), Math.floorMod(key, 12) + 1);
+    }
+}
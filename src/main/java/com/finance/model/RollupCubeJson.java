@@ -0,0 +1,109 @@
+package com.finance.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.time.YearMonth;
+
+/**
+ * JSON form of a {@link RollupCube}:
+ * {@code {"transactions": 120, "cells": [["2024-03", "Food", "EXPENSE", 4550, 7], ...]}}
+ * with sums in minor units and null for an undated month, missing category or type.
+ * Written without type ids under default typing, as the cube's class is fixed.
+ */
+class RollupCubeJson {
+    private RollupCubeJson() {
+    }
+
+    static class Serializer extends StdSerializer<RollupCube> {
+        Serializer() {
+            super(RollupCube.class);
+        }
+
+        @Override
+        public void serialize(RollupCube cube, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            gen.writeNumberField("transactions", cube.getTransactionCount());
+            gen.writeArrayFieldStart("cells");
+            IOException[] failure = new IOException[1];
+            cube.forEachCell((month, category, type, sum, count) -> {
+                if (failure[0] != null) return;
+                try {
+                    gen.writeStartArray();
+                    gen.writeString(month == null ? null : month.toString());
+                    gen.writeString(category);
+                    gen.writeString(type == null ? null : type.name());
+                    gen.writeNumber(sum);
+                    gen.writeNumber(count);
+                    gen.writeEndArray();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+
+        @Override
+        public void serializeWithType(RollupCube cube, JsonGenerator gen, SerializerProvider provider,
+                                      TypeSerializer typeSer) throws IOException {
+            serialize(cube, gen, provider);
+        }
+    }
+
+    static class Deserializer extends StdDeserializer<RollupCube> {
+        Deserializer() {
+            super(RollupCube.class);
+        }
+
+        @Override
+        public RollupCube deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                return (RollupCube) context.handleUnexpectedToken(RollupCube.class, parser);
+            }
+            RollupCube cube = new RollupCube();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("transactions".equals(field)) {
+                    cube.setTransactionCount(parser.getIntValue());
+                } else if ("cells".equals(field)) {
+                    while (parser.nextToken() == JsonToken.START_ARRAY) {
+                        parser.nextToken();
+                        String month = parser.getValueAsString();
+                        parser.nextToken();
+                        String category = parser.getValueAsString();
+                        parser.nextToken();
+                        String type = parser.getValueAsString();
+                        parser.nextToken();
+                        long sum = parser.getLongValue();
+                        parser.nextToken();
+                        int count = parser.getIntValue();
+                        if (parser.nextToken() != JsonToken.END_ARRAY) {
+                            return (RollupCube) context.handleUnexpectedToken(RollupCube.class, parser);
+                        }
+                        cube.addCell(month == null ? null : YearMonth.parse(month), category,
+                                type == null ? null : Transaction.Type.valueOf(type), sum, count);
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return cube;
+        }
+
+        @Override
+        public Object deserializeWithType(JsonParser parser, DeserializationContext context,
+                                          TypeDeserializer typeDeserializer) throws IOException {
+            return deserialize(parser, context);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.finance.model;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Aggregates of one sealed segment of a {@link PagedTransactionStore}, kept on the heap
+ * so that queries can rule a segment out, or answer it whole, without touching its mapped pages.
+ * Amounts are in minor units; the dates are null if no row of the segment has one.
+ * {@link TransactionAggregator} answers a segment lying wholly within a report's range from its rollup.
+ */
+public final class SegmentSummary {
+    private final int firstRow;
+    private final int rowCount;
+    private final LocalDateTime minDate;
+    private final LocalDateTime maxDate;
+    private final long totalIncome;
+    private final long totalExpenses;
+    private final Map<String, Long> incomeByCategory;
+    private final Map<String, Long> expensesByCategory;
+    private final int datedRows;
+    // Month × category × type sums of the segment's rows
+    private final RollupCube rollup;
+
+    SegmentSummary(int firstRow, int rowCount, int datedRows, LocalDateTime minDate, LocalDateTime maxDate,
+                   long totalIncome, long totalExpenses,
+                   Map<String, Long> incomeByCategory, Map<String, Long> expensesByCategory, RollupCube rollup) {
+        this.firstRow = firstRow;
+        this.rowCount = rowCount;
+        this.minDate = minDate;
+        this.maxDate = maxDate;
+        this.totalIncome = totalIncome;
+        this.totalExpenses = totalExpenses;
+        this.incomeByCategory = Collections.unmodifiableMap(incomeByCategory);
+        this.expensesByCategory = Collections.unmodifiableMap(expensesByCategory);
+        this.datedRows = datedRows;
+        this.rollup = rollup;
+    }
+
+    public int getFirstRow() { return firstRow; }
+    public int getRowCount() { return rowCount; }
+    public LocalDateTime getMinDate() { return minDate; }
+    public LocalDateTime getMaxDate() { return maxDate; }
+    public long getTotalIncome() { return totalIncome; }
+    public long getTotalExpenses() { return totalExpenses; }
+    public Map<String, Long> getIncomeByCategory() { return incomeByCategory; }
+    public Map<String, Long> getExpensesByCategory() { return expensesByCategory; }
+
+    RollupCube getRollup() { return rollup; }
+
+    // False only if no row of the segment is in one of the categories
+    public boolean mayContainAny(Collection<String> categories) {
+        for (String category : categories) {
+            if (incomeByCategory.containsKey(category) || expensesByCategory.containsKey(category)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // False only if no row of the segment is dated within [start, end]
+    public boolean mayOverlap(LocalDateTime start, LocalDateTime end) {
+        return minDate != null && !minDate.isAfter(end) && !maxDate.isBefore(start);
+    }
+
+    // True only if every row of the segment is dated within [from, until), either bound null for open-ended
+    boolean isWithin(LocalDateTime from, LocalDateTime until) {
+        return datedRows == rowCount && minDate != null
+                && (from == null || !minDate.isBefore(from)) && (until == null || maxDate.isBefore(until));
+    }
+}
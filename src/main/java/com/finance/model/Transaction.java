@@ -1,29 +1,53 @@
 package com.finance.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
 public class Transaction {
     public enum Type { INCOME, EXPENSE }
+
+    private static volatile IdGenerator idGenerator = IdGenerators.DEFAULT;
     
     private String id;
     private Type type;
     private String category;
-    private double amount;
+    // In minor units, see Money; exposed as a double "amount" in JSON
+    private long amount;
     private String description;
     private LocalDateTime date;
     private String username;
+    // Shared by both legs of a transfer, null for other transactions
+    private String transferId;
 
     public Transaction() {}
 
     public Transaction(Type type, String category, double amount, String description, String username) {
-        this.id = java.util.UUID.randomUUID().toString();
+        this(type, category, Money.ofDouble(amount), description, username, null);
+    }
+
+    // One leg of a transfer: the amount in minor units and the id shared with the other leg
+    public Transaction(Type type, String category, long amountMinor, String description, String username,
+                       String transferId) {
+        this.id = idGenerator.nextId();
         this.type = type;
         this.category = category;
-        this.amount = amount;
+        this.amount = amountMinor;
         this.description = description;
-        this.date = LocalDateTime.now();
+        this.date = CachedClock.now();
         this.username = username;
+        this.transferId = transferId;
+    }
+
+    // Ids of transactions created from now on, e.g. IdGenerators.sequence(node)
+    public static void setIdGenerator(IdGenerator generator) {
+        idGenerator = Objects.requireNonNull(generator);
+    }
+
+    // Id for a transaction built through the setters
+    public static String newId() {
+        return idGenerator.nextId();
     }
 
     // Getters and setters
@@ -36,8 +60,13 @@ public class Transaction {
     public String getCategory() { return category; }
     public void setCategory(String category) { this.category = category; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public double getAmount() { return Money.toDouble(getAmountMinor()); }
+    public void setAmount(double amount) { setAmountMinor(Money.ofDouble(amount)); }
+
+    @JsonIgnore
+    public long getAmountMinor() { return amount; }
+    @JsonIgnore
+    public void setAmountMinor(long amount) { this.amount = amount; }
 
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
@@ -48,16 +77,21 @@ public class Transaction {
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getTransferId() { return transferId; }
+    public void setTransferId(String transferId) { this.transferId = transferId; }
+
+    // Compared through getId() so store-backed views equal the transaction they were stored from
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
+        if (!(o instanceof Transaction)) return false;
         Transaction that = (Transaction) o;
-        return Objects.equals(id, that.id);
+        return Objects.equals(getId(), that.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Objects.hash(getId());
     }
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+package com.finance.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds an {@link AggregateReport} from the rows of a {@link TransactionStore}. Sealed segments
+ * lying wholly within the range are answered from their {@link SegmentSummary}, and those without
+ * any of the categories are skipped; of the rest, a bounded range reads only the rows the wallet's
+ * {@link DateIndex} has within it. At least {@code parallelThreshold} rows left to read are split into
+ * chunks of {@code chunkRows} that are reduced on a fork-join pool and merged pairwise. All sums are
+ * exact long minor units, so the result does not depend on how the rows were split or summarized.
+ * The caller must keep writers out (the wallet read lock) for the whole scan.
+ */
+class TransactionAggregator {
+    private static final CategoryDictionary CATEGORIES = CategoryDictionary.global();
+    // Smaller stores are scanned on the calling thread, where forking costs more than it saves
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger("finance.aggregate.parallelThreshold", 200_000);
+    private static final int CHUNK_ROWS = Integer.getInteger("finance.aggregate.chunkRows", 32_768);
+    // 0 uses the common pool; a positive value gives reports a dedicated pool of that many threads
+    private static final int PARALLELISM = Integer.getInteger("finance.aggregate.parallelism", 0);
+
+    static final TransactionAggregator DEFAULT = new TransactionAggregator(PARALLEL_THRESHOLD, CHUNK_ROWS,
+            PARALLELISM > 0 ? new ForkJoinPool(PARALLELISM) : ForkJoinPool.commonPool());
+
+    private final int parallelThreshold;
+    private final int chunkRows;
+    private final ForkJoinPool pool;
+
+    TransactionAggregator(int parallelThreshold, int chunkRows, ForkJoinPool pool) {
+        this.parallelThreshold = parallelThreshold;
+        this.chunkRows = Math.max(1, chunkRows);
+        this.pool = pool;
+    }
+
+    /**
+     * Totals of the rows dated within [start, end] (either bound may be null for open-ended;
+     * undated rows only match when both are) and in one of the categories (all if null).
+     */
+    AggregateReport aggregate(TransactionStore store, DateIndex dates, LocalDate start, LocalDate end,
+                              Collection<String> categories) {
+        Filter filter = new Filter(start, end, categories);
+        Accumulator summarized = new Accumulator();
+        List<SegmentSummary> segments = store.getSegments();
+        int[] firstRows = new int[segments.size()];
+        int[] ends = new int[segments.size()];
+        // Segments whose rows need not be read: answered from the summary or holding none of the categories
+        boolean[] settled = new boolean[segments.size()];
+        for (int i = 0; i < segments.size(); i++) {
+            SegmentSummary segment = segments.get(i);
+            firstRows[i] = segment.getFirstRow();
+            ends[i] = segment.getFirstRow() + segment.getRowCount();
+            if (categories != null && !segment.mayContainAny(categories)) {
+                settled[i] = true;
+            } else if (filter.unbounded() || segment.isWithin(filter.from, filter.until)) {
+                summarized.add(segment.getRollup().report(null, null, categories));
+                settled[i] = true;
+            }
+        }
+
+        Rows rows;
+        if (filter.unbounded()) {
+            // Every sealed segment is settled, so only the rows after them are read
+            int first = segments.isEmpty() ? 0 : ends[ends.length - 1];
+            rows = new Rows(null, first, store.size() - first);
+        } else {
+            int[] list = dates.rows(start, end, row -> {
+                int segment = Arrays.binarySearch(firstRows, row);
+                if (segment < 0) segment = -segment - 2;
+                return segment < 0 || row >= ends[segment] || !settled[segment];
+            });
+            rows = new Rows(list, 0, list.length);
+        }
+
+        if (rows.size < parallelThreshold || pool.getParallelism() <= 1) {
+            Accumulator accumulator = new Accumulator();
+            accumulator.scan(store, rows, 0, rows.size, filter);
+            return accumulator.merge(summarized).toReport(1);
+        }
+        Accumulator accumulator = pool.invoke(new ChunkTask(store, rows, 0, rows.size, filter));
+        return accumulator.merge(summarized).toReport((rows.size + chunkRows - 1) / chunkRows);
+    }
+
+    // Row numbers to read: list[0..size) if there is a list, otherwise first..first + size
+    private static class Rows {
+        final int[] list;
+        final int first;
+        final int size;
+
+        Rows(int[] list, int first, int size) {
+            this.list = list;
+            this.first = first;
+            this.size = size;
+        }
+
+        int get(int position) {
+            return list != null ? list[position] : first + position;
+        }
+    }
+
+    private static class Filter {
+        final LocalDateTime from;
+        // Exclusive: the start of the day after end
+        final LocalDateTime until;
+        // Ids of the wanted categories, null for all
+        final CategoryTable categories;
+
+        Filter(LocalDate start, LocalDate end, Collection<String> categories) {
+            this.from = start != null ? start.atStartOfDay() : null;
+            this.until = end != null ? end.plusDays(1).atStartOfDay() : null;
+            if (categories == null) {
+                this.categories = null;
+            } else {
+                this.categories = new CategoryTable(0);
+                for (String category : categories) {
+                    int id = CATEGORIES.find(category);
+                    if (id >= 0) this.categories.mark(id);
+                }
+            }
+        }
+
+        boolean unbounded() {
+            return from == null && until == null;
+        }
+
+        boolean matches(LocalDateTime date, int category) {
+            if (categories != null && !categories.contains(category)) return false;
+            if (from == null && until == null) return true;
+            if (date == null) return false;
+            return (from == null || !date.isBefore(from)) && (until == null || date.isBefore(until));
+        }
+    }
+
+    private class ChunkTask extends RecursiveTask<Accumulator> {
+        private final TransactionStore store;
+        private final Rows rows;
+        // Positions in rows
+        private final int from;
+        private final int to;
+        private final Filter filter;
+
+        ChunkTask(TransactionStore store, Rows rows, int from, int to, Filter filter) {
+            this.store = store;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from <= chunkRows) {
+                Accumulator accumulator = new Accumulator();
+                accumulator.scan(store, rows, from, to, filter);
+                return accumulator;
+            }
+            // Split on a chunk boundary so every leaf but the last is a full chunk
+            int middle = from + Math.max(1, (to - from) / chunkRows / 2) * chunkRows;
+            ChunkTask left = new ChunkTask(store, rows, from, middle, filter);
+            left.fork();
+            Accumulator right = new ChunkTask(store, rows, middle, to, filter).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Sums of one row range, by category id and by month (year * 12 + month - 1)
+    private static class Accumulator {
+        long income;
+        long expenses;
+        int count;
+        // {income, expenses, count}
+        final CategoryTable byCategory = new CategoryTable(3);
+        // {income, expenses, count}
+        final Map<Integer, long[]> months = new HashMap<>();
+
+        void scan(TransactionStore store, Rows rows, int from, int to, Filter filter) {
+            for (int position = from; position < to; position++) {
+                Transaction transaction = store.get(rows.get(position));
+                int category = CATEGORIES.find(transaction.getCategory());
+                LocalDateTime date = transaction.getDate();
+                if (filter.matches(date, category)) {
+                    add(transaction, category, date);
+                }
+            }
+        }
+
+        private void add(Transaction transaction, int category, LocalDateTime date) {
+            long amount = transaction.getAmountMinor();
+            long income = transaction.getType() == Transaction.Type.INCOME ? amount : 0;
+            long expenses = transaction.getType() == Transaction.Type.EXPENSE ? amount : 0;
+            this.income += income;
+            this.expenses += expenses;
+            count++;
+            if (category >= 0) {
+                byCategory.add(category, 0, income);
+                byCategory.add(category, 1, expenses);
+                byCategory.add(category, 2, 1);
+            }
+            if (date != null) {
+                long[] month = months.computeIfAbsent(date.getYear() * 12 + date.getMonthValue() - 1, m -> new long[3]);
+                month[0] += income;
+                month[1] += expenses;
+                month[2]++;
+            }
+        }
+
+        // Figures of a report over other rows, such as a segment's rollup
+        void add(AggregateReport report) {
+            PeriodTotals totals = report.getTotals();
+            income += totals.getIncomeMinor();
+            expenses += totals.getExpensesMinor();
+            count += totals.getCount();
+            report.getByCategory().forEach((name, sums) -> {
+                int category = CATEGORIES.find(name);
+                byCategory.add(category, 0, sums.getIncomeMinor());
+                byCategory.add(category, 1, sums.getExpensesMinor());
+                byCategory.add(category, 2, sums.getCount());
+            });
+            report.getByMonth().forEach((key, sums) -> {
+                long[] month = months.computeIfAbsent(key.getYear() * 12 + key.getMonthValue() - 1, m -> new long[3]);
+                month[0] += sums.getIncomeMinor();
+                month[1] += sums.getExpensesMinor();
+                month[2] += sums.getCount();
+            });
+        }
+
+        Accumulator merge(Accumulator other) {
+            income += other.income;
+            expenses += other.expenses;
+            count += other.count;
+            other.byCategory.forEach((category, sums, offset) -> {
+                for (int column = 0; column < 3; column++) {
+                    byCategory.add(category, column, sums[offset + column]);
+                }
+            });
+            other.months.forEach((key, sums) -> {
+                long[] month = months.computeIfAbsent(key, m -> new long[3]);
+                month[0] += sums[0];
+                month[1] += sums[1];
+                month[2] += sums[2];
+            });
+            return this;
+        }
+
+        AggregateReport toReport(int chunks) {
+            TreeMap<String, PeriodTotals> categoryTotals = new TreeMap<>();
+            byCategory.forEach((category, sums, offset) -> categoryTotals.put(CATEGORIES.name(category),
+                    new PeriodTotals(sums[offset], sums[offset + 1], (int) sums[offset + 2])));
+            TreeMap<YearMonth, PeriodTotals> byMonth = new TreeMap<>();
+            months.forEach((key, sums) -> byMonth.put(YearMonth.of(key / 12, key % 12 + 1),
+                    new PeriodTotals(sums[0], sums[1], (int) sums[2])));
+            return new AggregateReport(new PeriodTotals(income, expenses, count), categoryTotals, byMonth, chunks);
+        }
+    }
+}
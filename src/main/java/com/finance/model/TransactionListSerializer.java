@@ -0,0 +1,47 @@
+package com.finance.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes a wallet's read-only transaction view as a plain list. Under default typing it is
+ * tagged as java.util.ArrayList, whatever the store's list class, so users.json stays readable.
+ */
+class TransactionListSerializer extends StdSerializer<List<Transaction>> {
+    @SuppressWarnings("unchecked")
+    TransactionListSerializer() {
+        super((Class<List<Transaction>>) (Class<?>) List.class);
+    }
+
+    @Override
+    public void serialize(List<Transaction> transactions, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartArray(transactions, transactions.size());
+        writeContents(transactions, gen, provider);
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(List<Transaction> transactions, JsonGenerator gen, SerializerProvider provider,
+                                  TypeSerializer typeSer) throws IOException {
+        WritableTypeId typeId = typeSer.writeTypePrefix(gen,
+                typeSer.typeId(transactions, ArrayList.class, JsonToken.START_ARRAY));
+        writeContents(transactions, gen, provider);
+        typeSer.writeTypeSuffix(gen, typeId);
+    }
+
+    private void writeContents(List<Transaction> transactions, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        // Serialized through Transaction's getters, so store-specific views are written the same way
+        JsonSerializer<Object> serializer = provider.findValueSerializer(Transaction.class);
+        for (Transaction transaction : transactions) {
+            serializer.serialize(transaction, gen, provider);
+        }
+    }
+}
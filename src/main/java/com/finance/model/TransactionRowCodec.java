@@ -0,0 +1,175 @@
+package com.finance.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Field encodings shared by the binary snapshot and the sealed segments of {@link PagedTransactionStore},
+ * so the two formats cannot drift apart: the transaction flags, ids in canonical UUID form as 16 bytes,
+ * and varint, zigzag and string fields. Strings are a varint of the UTF-8 length plus one, then the bytes;
+ * zero stands for null. Readers throw IllegalArgumentException or BufferUnderflowException on damaged input.
+ */
+public final class TransactionRowCodec {
+    // Transaction flags: the low two bits are the type, 0 for null
+    public static final int INCOME = 1;
+    public static final int EXPENSE = 2;
+    public static final int UUID_ID = 4;
+    public static final int HAS_DATE = 8;
+    public static final int HAS_TRANSFER = 16;
+
+    private TransactionRowCodec() {}
+
+    public static int flags(Transaction transaction) {
+        int flags = typeFlags(transaction.getType());
+        if (isCanonicalUuid(transaction.getId())) flags |= UUID_ID;
+        if (transaction.getDate() != null) flags |= HAS_DATE;
+        if (transaction.getTransferId() != null) flags |= HAS_TRANSFER;
+        return flags;
+    }
+
+    public static int typeFlags(Transaction.Type type) {
+        return type == null ? 0 : type == Transaction.Type.EXPENSE ? EXPENSE : INCOME;
+    }
+
+    public static Transaction.Type typeOf(int flags) {
+        int type = flags & (INCOME | EXPENSE);
+        return type == EXPENSE ? Transaction.Type.EXPENSE : type == INCOME ? Transaction.Type.INCOME : null;
+    }
+
+    // Only the lowercase form UUID.toString() produces, so decoding gives back the same string
+    public static boolean isCanonicalUuid(String id) {
+        if (id == null || id.length() != 36) return false;
+        for (int i = 0; i < 36; i++) {
+            char c = id.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') return false;
+            } else if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // An id written by Writer.writeId with the same flags
+    public static String readId(ByteBuffer in, int flags) {
+        return (flags & UUID_ID) != 0 ? new UUID(in.getLong(), in.getLong()).toString() : readString(in);
+    }
+
+    public static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    public static long readZigzag(ByteBuffer in) {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static String readString(ByteBuffer in) {
+        long length = readVarint(in);
+        if (length == 0) return null;
+        if (length - 1 > in.remaining()) {
+            throw new IllegalArgumentException("String of " + (length - 1) + " bytes exceeds the record");
+        }
+        byte[] bytes = new byte[(int) length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffers fields in a direct buffer and writes them to the channel as it fills.
+     */
+    public static class Writer {
+        protected final FileChannel channel;
+        protected final ByteBuffer buffer;
+        // Bytes already written to the channel
+        protected long flushed;
+
+        public Writer(FileChannel channel, int bufferBytes) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(bufferBytes);
+        }
+
+        // Bytes written so far, flushed or not
+        public long position() {
+            return flushed + buffer.position();
+        }
+
+        public void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        public void writeByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        public void writeInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        public void writeVarint(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer.put((byte) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        public void writeZigzag(long value) throws IOException {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        public void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            int written = 0;
+            while (written < bytes.length) {
+                if (!buffer.hasRemaining()) flush();
+                int chunk = Math.min(buffer.remaining(), bytes.length - written);
+                buffer.put(bytes, written, chunk);
+                written += chunk;
+            }
+        }
+
+        // 16 bytes if the flags have UUID_ID, otherwise a string
+        public void writeId(String id, int flags) throws IOException {
+            if ((flags & UUID_ID) != 0) {
+                UUID value = UUID.fromString(id);
+                writeLong(value.getMostSignificantBits());
+                writeLong(value.getLeastSignificantBits());
+            } else {
+                writeString(id);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.finance.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Backing storage for a wallet's transactions, addressed by row number in insertion order.
+ */
+public interface TransactionStore {
+    // Appends the transaction and returns its row number
+    int add(Transaction transaction);
+
+    Transaction get(int row);
+
+    int size();
+
+    void clear();
+
+    // Read-only list view over all rows
+    List<Transaction> asList();
+
+    // Approximate heap held by the rows, for diagnostics; memory-mapped segments are not heap
+    long estimateHeapBytes();
+
+    // Summaries of the sealed row ranges, in row order; empty if the store keeps no summaries
+    default List<SegmentSummary> getSegments() {
+        return Collections.emptyList();
+    }
+
+    // Rows in one of the categories (all rows if null), in row order
+    default Stream<Transaction> stream(Set<String> categories) {
+        Stream<Transaction> rows = asList().stream();
+        return categories == null ? rows : rows.filter(t -> categories.contains(t.getCategory()));
+    }
+}
@@ -1,11 +1,27 @@
 package com.finance.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.finance.metrics.CacheMetric;
+import com.finance.metrics.LatencyHistogram;
+import com.finance.metrics.MetricsRegistry;
+import java.lang.ref.SoftReference;
+import java.util.List;
 import java.util.Objects;
 
 public class User {
+    // Lazily loaded wallets found in memory (hits) or read from storage (misses)
+    private static final CacheMetric WALLET_CACHE = MetricsRegistry.global().cache("user.wallets");
+    private static final LatencyHistogram WALLET_LOAD_TIME = MetricsRegistry.global().histogram("user.walletLoad");
+
     private String username;
     private String password;
+
+    // Strongly held wallet: created in memory or changed since it was loaded
     private Wallet wallet;
+    // Wallet loaded from storage and not changed since; the GC may drop it under memory pressure
+    private SoftReference<Wallet> loadedWallet;
+    private WalletLoader walletLoader;
+    private WalletListener walletListener;
 
     public User() {
         this.wallet = new Wallet();
@@ -17,6 +33,13 @@ public class User {
         this.wallet = new Wallet();
     }
 
+    // Wallet is loaded on first getWallet() call
+    public User(String username, String password, WalletLoader walletLoader) {
+        this.username = username;
+        this.password = password;
+        this.walletLoader = walletLoader;
+    }
+
     // Getters and setters
     public String getUsername() { return username; }
     public void setUsername(String username) { this.username = username; }
@@ -24,8 +47,105 @@ public class User {
     public String getPassword() { return password; }
     public void setPassword(String password) { this.password = password; }
 
-    public Wallet getWallet() { return wallet; }
-    public void setWallet(Wallet wallet) { this.wallet = wallet; }
+    public synchronized Wallet getWallet() {
+        if (wallet != null) return wallet;
+        Wallet loaded = loadedWallet != null ? loadedWallet.get() : null;
+        if (loaded == null && walletLoader != null) {
+            WALLET_CACHE.miss();
+            long start = System.nanoTime();
+            loaded = walletLoader.load(username);
+            WALLET_LOAD_TIME.recordSince(start);
+            loadedWallet = new SoftReference<>(loaded);
+            bindListener(loaded);
+        } else if (loaded != null) {
+            WALLET_CACHE.hit();
+        }
+        return loaded;
+    }
+
+    public synchronized void setWallet(Wallet wallet) {
+        this.wallet = wallet;
+        this.loadedWallet = null;
+        if (wallet != null) {
+            bindListener(wallet);
+        }
+    }
+
+    /**
+     * Month × category × type totals of the wallet. A wallet that is not in memory
+     * is not loaded for this when storage can read its rollup on its own.
+     */
+    @JsonIgnore
+    public RollupCube getRollup() {
+        WalletLoader loader;
+        synchronized (this) {
+            loader = isWalletLoaded() ? null : walletLoader;
+        }
+        RollupCube rollup = loader != null ? loader.loadRollup(username) : null;
+        return rollup != null ? rollup : getWallet().getRollup();
+    }
+
+    @JsonIgnore
+    public synchronized boolean isWalletLoaded() {
+        return wallet != null || (loadedWallet != null && loadedWallet.get() != null);
+    }
+
+    // The wallet if it is in memory, null rather than loading it
+    public synchronized Wallet peekWallet() {
+        return wallet != null ? wallet : loadedWallet != null ? loadedWallet.get() : null;
+    }
+
+    /**
+     * Makes the wallet evictable again once its contents are persisted; it is reloaded through
+     * the loader on next access. A wallet whose change count is no longer the one it had when it
+     * was written stays pinned, since storage does not hold the later changes yet.
+     */
+    public synchronized void releaseWallet(WalletLoader walletLoader, long writtenChangeCount) {
+        this.walletLoader = walletLoader;
+        if (wallet != null && wallet.getChangeCount() == writtenChangeCount) {
+            loadedWallet = new SoftReference<>(wallet);
+            wallet = null;
+        }
+    }
+
+    @JsonIgnore
+    public synchronized void setWalletListener(WalletListener walletListener) {
+        this.walletListener = walletListener;
+        Wallet current = wallet != null ? wallet : (loadedWallet != null ? loadedWallet.get() : null);
+        if (current != null) {
+            bindListener(current);
+        }
+    }
+
+    private void bindListener(Wallet target) {
+        target.setListener(new WalletListener() {
+            @Override
+            public void onTransactionAdded(Transaction transaction) {
+                pin(target);
+                if (walletListener != null) walletListener.onTransactionAdded(transaction);
+            }
+
+            @Override
+            public void onTransactionsAdded(List<Transaction> transactions) {
+                pin(target);
+                if (walletListener != null) walletListener.onTransactionsAdded(transactions);
+            }
+
+            @Override
+            public void onBudgetSet(Budget budget) {
+                pin(target);
+                if (walletListener != null) walletListener.onBudgetSet(budget);
+            }
+        });
+    }
+
+    // A changed wallet differs from storage, so it must not be evicted
+    private synchronized void pin(Wallet target) {
+        if (wallet == null) {
+            wallet = target;
+            loadedWallet = null;
+        }
+    }
 
     @Override
     public boolean equals(Object o) {
@@ -39,4 +159,4 @@ public class User {
     public int hashCode() {
         return Objects.hash(username);
     }
-}
\ No newline at end of file
+}
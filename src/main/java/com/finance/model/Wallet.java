@@ -1,68 +1,485 @@
 package com.finance.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.finance.metrics.CacheMetric;
+import com.finance.metrics.MetricsRegistry;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
+// balance/totalIncome/totalExpenses are derived values: still written for readers of users.json,
+// but ignored on load because the totals are rebuilt from the transactions. The rollup is written first,
+// so it can be read without the transactions while the wallet is not loaded.
+@JsonIgnoreProperties(value = {"balance", "totalIncome", "totalExpenses", "rollup"}, allowGetters = true)
+@JsonPropertyOrder({"rollup"})
 public class Wallet {
-    private List<Transaction> transactions;
-    private List<Budget> budgets;
+    // Selects the transaction store for new wallets: "list" (default), "columnar" or "paged"
+    private static final String STORE = System.getProperty("finance.wallet.store", "list");
+
+    private static final CategoryDictionary CATEGORIES = CategoryDictionary.global();
+    // Date index entry per transaction, as measured by WalletMemoryBenchmark
+    private static final long INDEX_ROW_BYTES = 20;
+    // Reports answered from the rollup (hits) rather than by scanning (misses)
+    private static final CacheMetric ROLLUP_REPORTS = MetricsRegistry.global().cache("wallet.rollupReports");
+
+    private TransactionStore transactions;
+    // Keyed by category id, in the order the budgets were last set
+    private Map<Integer, Budget> budgets;
+
+    // Running totals in minor units, updated in addTransaction so reads never rescan the transaction list.
+    // Per-category sums are keyed by category id (see CategoryDictionary) and hold the categories used.
+    private long totalIncome;
+    private long totalExpenses;
+    private CategoryTable incomeByCategory;
+    private CategoryTable expensesByCategory;
+    private DateIndex dateIndex;
+    private RollupCube rollup;
+    // Rows about to be loaded that a rollup restored from the snapshot already covers
+    private int rollupCovered;
+
+    // Notified of every change, e.g. to append it to the storage journal
+    private WalletListener listener;
+    // Incremented by every change, before the listener is notified; read without the lock by storage
+    private volatile long changeCount;
+
+    // Guards all wallet state: changes take the write lock, queries the read lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
 
     public Wallet() {
-        this.transactions = new ArrayList<>();
-        this.budgets = new ArrayList<>();
+        this(newStore());
+    }
+
+    public Wallet(TransactionStore transactions) {
+        this.transactions = transactions;
+        this.budgets = new LinkedHashMap<>();
+        this.incomeByCategory = new CategoryTable(1);
+        this.expensesByCategory = new CategoryTable(1);
+        this.dateIndex = new DateIndex();
+        this.rollup = new RollupCube();
     }
 
     public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
+        lock.writeLock().lock();
+        try {
+            appendTransaction(transaction);
+            changeCount++;
+            if (listener != null) {
+                listener.onTransactionAdded(transaction);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a batch under one write lock with a single listener notification,
+     * e.g. a chunk of an imported bank statement.
+     */
+    public void addTransactions(List<Transaction> batch) {
+        if (batch.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            checkBatchTotals(batch);
+            for (Transaction transaction : batch) {
+                appendTransaction(transaction);
+            }
+            changeCount++;
+            if (listener != null) {
+                listener.onTransactionsAdded(batch);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public void addBudget(Budget budget) {
-        // Remove existing budget for the same category
-        budgets.removeIf(b -> b.getCategory().equals(budget.getCategory()));
-        budgets.add(budget);
+        lock.writeLock().lock();
+        try {
+            // Replaces the existing budget for the same category
+            putBudget(budget);
+            changeCount++;
+            if (listener != null) {
+                listener.onBudgetSet(budget);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
+    /**
+     * Lock held by every wallet operation. Callers that change several wallets together
+     * (transfers) take the write locks in a fixed order; callers iterating
+     * {@link #getTransactions()} while other threads write should hold the read lock.
+     */
+    @JsonIgnore
+    public ReadWriteLock getLock() { return lock; }
+
+    @JsonIgnore
+    public WalletListener getListener() { return listener; }
+
+    // Number of changes made through addTransaction(s) and addBudget; storage compares it to tell
+    // whether the wallet changed after it was written
+    @JsonIgnore
+    public long getChangeCount() { return changeCount; }
+
+    @JsonIgnore
+    public void setListener(WalletListener listener) { this.listener = listener; }
+
     public double getBalance() {
-        double income = transactions.stream()
-                .filter(t -> t.getType() == Transaction.Type.INCOME)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-        double expenses = transactions.stream()
-                .filter(t -> t.getType() == Transaction.Type.EXPENSE)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
-        return income - expenses;
+        return Money.toDouble(getBalanceMinor());
     }
 
     public double getTotalIncome() {
-        return transactions.stream()
-                .filter(t -> t.getType() == Transaction.Type.INCOME)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return Money.toDouble(getTotalIncomeMinor());
     }
 
     public double getTotalExpenses() {
-        return transactions.stream()
-                .filter(t -> t.getType() == Transaction.Type.EXPENSE)
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return Money.toDouble(getTotalExpensesMinor());
     }
 
-    public List<Transaction> getTransactions() { return transactions; }
-    public List<Budget> getBudgets() { return budgets; }
+    @JsonIgnore
+    public long getBalanceMinor() {
+        lock.readLock().lock();
+        try {
+            return totalIncome - totalExpenses;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @JsonIgnore
+    public long getTotalIncomeMinor() {
+        lock.readLock().lock();
+        try {
+            return totalIncome;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @JsonIgnore
+    public long getTotalExpensesMinor() {
+        lock.readLock().lock();
+        try {
+            return totalExpenses;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Live read-only view, see getLock()
+    @JsonSerialize(using = TransactionListSerializer.class)
+    public List<Transaction> getTransactions() { return transactions.asList(); }
+
+    // Approximate heap held by the transactions, the date index and the rollup, for diagnostics
+    public long estimateHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return transactions.estimateHeapBytes() + transactions.size() * INDEX_ROW_BYTES
+                    + rollup.getCellCount() * 12L;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Transactions in one of the categories (all if null), in insertion order. Like getTransactions(),
+     * a live view: hold the read lock while consuming it if other threads write.
+     * A paged store skips sealed segments that hold none of the categories.
+     */
+    public Stream<Transaction> streamTransactions(Set<String> categories) {
+        return transactions.stream(categories);
+    }
+
+    public List<Budget> getBudgets() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(budgets.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Used by Jackson on load: totals are rebuilt from the loaded transactions
+    public void setTransactions(List<Transaction> transactions) {
+        List<Transaction> loaded = new ArrayList<>(transactions);
+        lock.writeLock().lock();
+        try {
+            this.transactions.clear();
+            resetTotals();
+            for (Transaction transaction : loaded) {
+                appendTransaction(transaction);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Used by Jackson on load
+    public void setBudgets(List<Budget> budgets) {
+        lock.writeLock().lock();
+        try {
+            this.budgets.clear();
+            for (Budget budget : budgets) {
+                putBudget(budget);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
     public Optional<Budget> getBudgetForCategory(String category) {
-        return budgets.stream()
-                .filter(b -> b.getCategory().equals(category))
-                .findFirst();
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(budgets.get(CATEGORIES.find(category)));
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public double getExpensesForCategory(String category) {
-        return transactions.stream()
-                .filter(t -> t.getType() == Transaction.Type.EXPENSE)
-                .filter(t -> t.getCategory().equals(category))
-                .mapToDouble(Transaction::getAmount)
-                .sum();
+        return Money.toDouble(getExpensesMinorForCategory(category));
+    }
+
+    public double getIncomeForCategory(String category) {
+        return Money.toDouble(getIncomeMinorForCategory(category));
+    }
+
+    public long getExpensesMinorForCategory(String category) {
+        lock.readLock().lock();
+        try {
+            return expensesByCategory.get(CATEGORIES.find(category), 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getIncomeMinorForCategory(String category) {
+        lock.readLock().lock();
+        try {
+            return incomeByCategory.get(CATEGORIES.find(category), 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Transactions dated within [start, end], in date order
+    public List<Transaction> getTransactionsBetween(LocalDate start, LocalDate end) {
+        return getTransactionsBetween(start, end, 0, Integer.MAX_VALUE);
+    }
+
+    // A page of the transactions dated within [start, end]: skips offset of them, returns at most limit
+    public List<Transaction> getTransactionsBetween(LocalDate start, LocalDate end, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            return dateIndex.between(start, end, transactions, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public PeriodTotals getTotalsForPeriod(LocalDate start, LocalDate end) {
+        lock.readLock().lock();
+        try {
+            return dateIndex.totals(start, end);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Totals overall, per category and per month of the transactions dated within [start, end]
+     * (null for open-ended) and in one of the categories (all if null). Whole months are answered
+     * from the rollup; other ranges read the rows the date index has within them, large sets in parallel,
+     * and sealed segments within the range from their summaries (see TransactionAggregator).
+     */
+    public AggregateReport aggregate(LocalDate start, LocalDate end, Collection<String> categories) {
+        boolean wholeMonths = (start == null || start.getDayOfMonth() == 1)
+                && (end == null || end.equals(YearMonth.from(end).atEndOfMonth()));
+        if (!wholeMonths) {
+            ROLLUP_REPORTS.miss();
+            return aggregate(TransactionAggregator.DEFAULT, start, end, categories);
+        }
+        ROLLUP_REPORTS.hit();
+        lock.readLock().lock();
+        try {
+            return rollup.report(start == null ? null : YearMonth.from(start),
+                    end == null ? null : YearMonth.from(end), categories);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    AggregateReport aggregate(TransactionAggregator aggregator, LocalDate start, LocalDate end,
+                              Collection<String> categories) {
+        lock.readLock().lock();
+        try {
+            return aggregator.aggregate(transactions, dateIndex, start, end, categories);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copy of the month × category × type rollup
+    public RollupCube getRollup() {
+        lock.readLock().lock();
+        try {
+            return rollup.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Installs a rollup read from the snapshot before its transactions are added to this empty wallet,
+     * so loading them does not rebuild it. Later transactions are added to it as usual.
+     */
+    public void restoreRollup(RollupCube restored) {
+        lock.writeLock().lock();
+        try {
+            if (transactions.size() > 0) {
+                throw new IllegalStateException("Rollup can only be restored into an empty wallet");
+            }
+            rollup = restored.copy();
+            rollupCovered = restored.getTransactionCount();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @JsonIgnore
+    public Map<String, Double> getIncomeByCategory() {
+        lock.readLock().lock();
+        try {
+            return toAmounts(incomeByCategory);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @JsonIgnore
+    public Map<String, Double> getExpensesByCategory() {
+        lock.readLock().lock();
+        try {
+            return toAmounts(expensesByCategory);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // All figures of the statistics screen from the running aggregates, in one read lock
+    @JsonIgnore
+    public WalletStatistics getStatistics() {
+        lock.readLock().lock();
+        try {
+            List<WalletStatistics.BudgetStatus> budgetStatuses = new ArrayList<>(budgets.size());
+            budgets.forEach((category, budget) -> budgetStatuses.add(new WalletStatistics.BudgetStatus(
+                    budget.getCategory(), budget.getLimitMinor(), expensesByCategory.get(category, 0))));
+            return new WalletStatistics(totalIncome, totalExpenses, transactions.size(),
+                    toMinorAmounts(incomeByCategory),
+                    toMinorAmounts(expensesByCategory),
+                    budgetStatuses);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static TransactionStore newStore() {
+        switch (STORE) {
+            case "columnar":
+                return new ColumnarTransactionStore();
+            case "paged":
+                return new PagedTransactionStore();
+            default:
+                return new ListTransactionStore();
+        }
+    }
+
+    // Totals are computed before anything changes, so a transaction that would overflow one
+    // throws ArithmeticException and leaves the wallet as it was
+    private void appendTransaction(Transaction transaction) {
+        long amount = transaction.getAmountMinor();
+        int category = CATEGORIES.intern(transaction.getCategory());
+        boolean income = transaction.getType() == Transaction.Type.INCOME;
+        boolean expense = transaction.getType() == Transaction.Type.EXPENSE;
+        long total = income ? Money.add(totalIncome, amount) : expense ? Money.add(totalExpenses, amount) : 0;
+        long categoryTotal = category < 0 || !(income || expense) ? 0
+                : Money.add((income ? incomeByCategory : expensesByCategory).get(category, 0), amount);
+
+        int row = transactions.add(transaction);
+        if (rollupCovered > 0) {
+            rollupCovered--;
+        } else {
+            rollup.add(transaction);
+        }
+        if (income) {
+            totalIncome = total;
+            if (category >= 0) {
+                incomeByCategory.set(category, 0, categoryTotal);
+            }
+        } else if (expense) {
+            totalExpenses = total;
+            if (category >= 0) {
+                expensesByCategory.set(category, 0, categoryTotal);
+            }
+        }
+        dateIndex.add(transaction, row);
+    }
+
+    /**
+     * Throws ArithmeticException if adding the batch would overflow the totals. Callers that post
+     * several batches together check all of them first, holding the write lock throughout.
+     */
+    public void checkBatchTotals(List<Transaction> batch) {
+        long income = totalIncome;
+        long expenses = totalExpenses;
+        for (Transaction transaction : batch) {
+            if (transaction.getType() == Transaction.Type.INCOME) {
+                income = Money.add(income, transaction.getAmountMinor());
+            } else if (transaction.getType() == Transaction.Type.EXPENSE) {
+                expenses = Money.add(expenses, transaction.getAmountMinor());
+            }
+        }
+    }
+
+    private void putBudget(Budget budget) {
+        int category = CATEGORIES.intern(budget.getCategory());
+        budgets.remove(category);
+        budgets.put(category, budget);
+    }
+
+    private static Map<String, Double> toAmounts(CategoryTable sums) {
+        Map<String, Double> amounts = new HashMap<>();
+        sums.forEach((category, values, offset) -> amounts.put(CATEGORIES.name(category), Money.toDouble(values[offset])));
+        return amounts;
+    }
+
+    private static Map<String, Long> toMinorAmounts(CategoryTable sums) {
+        Map<String, Long> amounts = new LinkedHashMap<>();
+        sums.forEach((category, values, offset) -> amounts.put(CATEGORIES.name(category), values[offset]));
+        return amounts;
+    }
+
+    private void resetTotals() {
+        totalIncome = 0;
+        totalExpenses = 0;
+        incomeByCategory.clear();
+        expensesByCategory.clear();
+        dateIndex.clear();
+        rollup.clear();
+        rollupCovered = 0;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.finance.model;
+
+import java.util.List;
+
+public interface WalletListener {
+    void onTransactionAdded(Transaction transaction);
+
+    // A batch added by Wallet.addTransactions
+    default void onTransactionsAdded(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            onTransactionAdded(transaction);
+        }
+    }
+
+    void onBudgetSet(Budget budget);
+}
@@ -0,0 +1,10 @@
+package com.finance.model;
+
+public interface WalletLoader {
+    Wallet load(String username);
+
+    // The stored wallet's rollup without loading its transactions, or null if it has to be built from the wallet
+    default RollupCube loadRollup(String username) {
+        return null;
+    }
+}
@@ -0,0 +1,66 @@
+package com.finance.model;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a wallet's figures, taken under one read lock, so all values are consistent
+ * with each other. Amounts are in minor units (see Money); per-category maps are in minor units too.
+ */
+public class WalletStatistics {
+    public static final WalletStatistics EMPTY =
+            new WalletStatistics(0, 0, 0, Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList());
+
+    private final long totalIncome;
+    private final long totalExpenses;
+    private final int transactionCount;
+    private final Map<String, Long> incomeByCategory;
+    private final Map<String, Long> expensesByCategory;
+    private final List<BudgetStatus> budgets;
+
+    public WalletStatistics(long totalIncome, long totalExpenses, int transactionCount,
+                            Map<String, Long> incomeByCategory, Map<String, Long> expensesByCategory,
+                            List<BudgetStatus> budgets) {
+        this.totalIncome = totalIncome;
+        this.totalExpenses = totalExpenses;
+        this.transactionCount = transactionCount;
+        this.incomeByCategory = Collections.unmodifiableMap(incomeByCategory);
+        this.expensesByCategory = Collections.unmodifiableMap(expensesByCategory);
+        this.budgets = Collections.unmodifiableList(budgets);
+    }
+
+    public long getTotalIncomeMinor() { return totalIncome; }
+    public long getTotalExpensesMinor() { return totalExpenses; }
+    public long getBalanceMinor() { return totalIncome - totalExpenses; }
+
+    public double getTotalIncome() { return Money.toDouble(totalIncome); }
+    public double getTotalExpenses() { return Money.toDouble(totalExpenses); }
+    public double getBalance() { return Money.toDouble(getBalanceMinor()); }
+
+    public int getTransactionCount() { return transactionCount; }
+    public Map<String, Long> getIncomeByCategory() { return incomeByCategory; }
+    public Map<String, Long> getExpensesByCategory() { return expensesByCategory; }
+    public List<BudgetStatus> getBudgets() { return budgets; }
+
+    /**
+     * A budget together with what was spent in its category.
+     */
+    public static class BudgetStatus {
+        private final String category;
+        private final long limit;
+        private final long spent;
+
+        public BudgetStatus(String category, long limit, long spent) {
+            this.category = category;
+            this.limit = limit;
+            this.spent = spent;
+        }
+
+        public String getCategory() { return category; }
+        public long getLimitMinor() { return limit; }
+        public long getSpentMinor() { return spent; }
+        public long getRemainingMinor() { return limit - spent; }
+        public boolean isExceeded() { return spent > limit; }
+    }
+}
@@ -0,0 +1,419 @@
+package com.finance.repository;
+
+import com.finance.model.Budget;
+import com.finance.model.RollupCube;
+import com.finance.model.Transaction;
+import com.finance.model.TransactionRowCodec;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Compact snapshot layout, read through memory-mapped files.
+ *
+ * <pre>
+ * file        = magic "FNSB" (int), version (byte), record*
+ * record      = length of the rest (int), username, password, dictionary, budgets, rollup, transactions
+ * dictionary  = count, string*            categories and usernames of this wallet, the owner first
+ * budget      = category ref, username ref, limit (zigzag)
+ * rollup      = transactions covered, count, cell*      (version 2 on)
+ * cell        = flags (byte: type as for transactions, 4 if dated), [year * 12 + month - 1 (zigzag)],
+ *               category ref, sum (zigzag), count
+ * transaction = flags (byte), category ref, username ref, amount (zigzag),
+ *               [seconds since the previous transaction (zigzag), nanos], id, description,
+ *               [transfer id]                           (flag 16, version 3 on)
+ * </pre>
+ * Counts and refs are unsigned varints, amounts are minor units and timestamps UTC epoch seconds.
+ * Strings are a varint of the UTF-8 length plus one, then the bytes; refs are a dictionary
+ * index plus one. Zero stands for null in both. Ids in canonical UUID form take 16 bytes.
+ * Each record is self-contained, so a wallet is decoded from its own mapping alone. Flags and field
+ * encodings are those of {@link TransactionRowCodec}, shared with the paged store's segments.
+ */
+class BinarySnapshotCodec implements SnapshotCodec {
+    static final int MAGIC = 0x464E5342; // "FNSB"
+    static final byte VERSION = 3;
+    // Version 1 records have no rollup; the wallet rebuilds it while loading
+    private static final byte VERSION_WITHOUT_ROLLUP = 1;
+    private static final int HEADER_BYTES = 5;
+    // Indexing maps the file in windows of this size, or of one record if it is larger
+    private static final long INDEX_WINDOW_BYTES = 64L << 20;
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+    // Decoded transactions are handed to the wallet in batches, so a paged store can seal them as they arrive
+    private static final int LOAD_BATCH_SIZE = 8192;
+
+    // Rollup cell flag: the type bits of TransactionRowCodec, plus whether a month follows
+    private static final int DATED_CELL = 4;
+
+    @Override
+    public void write(File file, List<User> users) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            RecordWriter out = new RecordWriter(channel);
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            for (User user : users) {
+                Wallet wallet = user.getWallet();
+                wallet.getLock().readLock().lock();
+                try {
+                    out.beginRecord();
+                    writeUser(out, user, wallet);
+                    out.endRecord();
+                } finally {
+                    wallet.getLock().readLock().unlock();
+                }
+            }
+            out.flush();
+        }
+    }
+
+    @Override
+    public Map<String, Long> index(File file, BiConsumer<String, String> onUser) throws IOException {
+        Map<String, Long> offsets = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            readVersion(file, channel);
+            ByteBuffer window = null;
+            long windowStart = 0;
+            long position = HEADER_BYTES;
+            while (position < size) {
+                if (window == null || position + 4 > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, INDEX_WINDOW_BYTES));
+                }
+                int length = readLength(window, (int) (position - windowStart), position, size);
+                if (position + 4 + length > windowStart + window.limit()) {
+                    windowStart = position;
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(size - position, Math.max(INDEX_WINDOW_BYTES, 4L + length)));
+                }
+                int start = (int) (position - windowStart) + 4;
+                ByteBuffer record = window.duplicate();
+                record.limit(start + length).position(start);
+                try {
+                    String username = readString(record);
+                    String password = readString(record);
+                    offsets.put(username, position);
+                    onUser.accept(username, password);
+                } catch (BufferUnderflowException | IllegalArgumentException e) {
+                    throw new IOException("Corrupt snapshot record at offset " + position + " in " + file);
+                }
+                position += 4L + length;
+            }
+        }
+        return offsets;
+    }
+
+    @Override
+    public Wallet readWallet(File file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            byte version = readVersion(file, channel);
+            ByteBuffer record = mapRecord(file, channel, offset);
+            try {
+                return readUserWallet(record, version);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot record at offset " + offset + " in " + file);
+            }
+        }
+    }
+
+    @Override
+    public RollupCube readRollup(File file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (readVersion(file, channel) == VERSION_WITHOUT_ROLLUP) return null;
+            ByteBuffer record = mapRecord(file, channel, offset);
+            try {
+                readString(record); // username
+                readString(record); // password
+                String[] dictionary = readDictionary(record);
+                readBudgets(record, dictionary);
+                return readRollup(record, dictionary);
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Corrupt snapshot record at offset " + offset + " in " + file);
+            }
+        }
+    }
+
+    private static ByteBuffer mapRecord(File file, FileChannel channel, long offset) throws IOException {
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (lengthBuffer.hasRemaining()) {
+            if (channel.read(lengthBuffer, offset + lengthBuffer.position()) < 0) {
+                throw new IOException("Truncated snapshot record at offset " + offset + " in " + file);
+            }
+        }
+        int length = readLength(lengthBuffer, 0, offset, channel.size());
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset + 4, length);
+    }
+
+    private static byte readVersion(File file, FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, header.position());
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary snapshot: " + file);
+        }
+        byte version = header.get(4);
+        if (version < VERSION_WITHOUT_ROLLUP || version > VERSION) {
+            throw new IOException("Unsupported binary snapshot version " + version + " in " + file);
+        }
+        return version;
+    }
+
+    private static int readLength(ByteBuffer buffer, int index, long position, long fileSize) throws IOException {
+        int length = buffer.getInt(index);
+        if (length < 0 || position + 4 + length > fileSize) {
+            throw new IOException("Truncated snapshot record at offset " + position);
+        }
+        return length;
+    }
+
+    private static void writeUser(RecordWriter out, User user, Wallet wallet) throws IOException {
+        List<Transaction> transactions = wallet.getTransactions();
+        List<Budget> budgets = wallet.getBudgets();
+        RollupCube rollup = wallet.getRollup();
+
+        Map<String, Integer> refs = new HashMap<>();
+        List<String> dictionary = new ArrayList<>();
+        addToDictionary(refs, dictionary, user.getUsername());
+        for (Budget budget : budgets) {
+            addToDictionary(refs, dictionary, budget.getCategory());
+            addToDictionary(refs, dictionary, budget.getUsername());
+        }
+        for (Transaction transaction : transactions) {
+            addToDictionary(refs, dictionary, transaction.getCategory());
+            addToDictionary(refs, dictionary, transaction.getUsername());
+        }
+
+        out.writeString(user.getUsername());
+        out.writeString(user.getPassword());
+        out.writeVarint(dictionary.size());
+        for (String entry : dictionary) {
+            out.writeString(entry);
+        }
+
+        out.writeVarint(budgets.size());
+        for (Budget budget : budgets) {
+            out.writeVarint(ref(refs, budget.getCategory()));
+            out.writeVarint(ref(refs, budget.getUsername()));
+            out.writeZigzag(budget.getLimitMinor());
+        }
+
+        out.writeVarint(rollup.getTransactionCount());
+        out.writeVarint(rollup.getCellCount());
+        IOException[] failure = new IOException[1];
+        rollup.forEachCell((month, category, type, sum, count) -> {
+            if (failure[0] != null) return;
+            try {
+                out.writeByte(TransactionRowCodec.typeFlags(type) | (month != null ? DATED_CELL : 0));
+                if (month != null) {
+                    out.writeZigzag(month.getYear() * 12L + month.getMonthValue() - 1);
+                }
+                out.writeVarint(ref(refs, category));
+                out.writeZigzag(sum);
+                out.writeVarint(count);
+            } catch (IOException e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+
+        out.writeVarint(transactions.size());
+        long previousSecond = 0;
+        for (Transaction transaction : transactions) {
+            LocalDateTime date = transaction.getDate();
+            int flags = TransactionRowCodec.flags(transaction);
+
+            out.writeByte(flags);
+            out.writeVarint(ref(refs, transaction.getCategory()));
+            out.writeVarint(ref(refs, transaction.getUsername()));
+            out.writeZigzag(transaction.getAmountMinor());
+            if (date != null) {
+                long second = date.toEpochSecond(ZoneOffset.UTC);
+                out.writeZigzag(second - previousSecond);
+                out.writeVarint(date.getNano());
+                previousSecond = second;
+            }
+            out.writeId(transaction.getId(), flags);
+            out.writeString(transaction.getDescription());
+            if ((flags & TransactionRowCodec.HAS_TRANSFER) != 0) {
+                out.writeString(transaction.getTransferId());
+            }
+        }
+    }
+
+    private static Wallet readUserWallet(ByteBuffer in, byte version) {
+        readString(in); // username
+        readString(in); // password
+        String[] dictionary = readDictionary(in);
+        List<Budget> budgets = readBudgets(in, dictionary);
+
+        Wallet wallet = new Wallet();
+        RollupCube rollup = version == VERSION_WITHOUT_ROLLUP ? null : readRollup(in, dictionary);
+        int transactionCount = readCount(in);
+        if (rollup != null) {
+            if (rollup.getTransactionCount() != transactionCount) {
+                throw new IllegalArgumentException("Rollup covers " + rollup.getTransactionCount()
+                        + " of " + transactionCount + " transactions");
+            }
+            wallet.restoreRollup(rollup);
+        }
+        List<Transaction> transactions = new ArrayList<>(Math.min(transactionCount, LOAD_BATCH_SIZE));
+        long previousSecond = 0;
+        for (int i = 0; i < transactionCount; i++) {
+            int flags = in.get();
+            Transaction transaction = new Transaction();
+            transaction.setType(TransactionRowCodec.typeOf(flags));
+            transaction.setCategory(lookup(dictionary, readVarint(in)));
+            transaction.setUsername(lookup(dictionary, readVarint(in)));
+            transaction.setAmountMinor(readZigzag(in));
+            if ((flags & TransactionRowCodec.HAS_DATE) != 0) {
+                long second = previousSecond + readZigzag(in);
+                transaction.setDate(LocalDateTime.ofEpochSecond(second, (int) readVarint(in), ZoneOffset.UTC));
+                previousSecond = second;
+            }
+            transaction.setId(TransactionRowCodec.readId(in, flags));
+            transaction.setDescription(readString(in));
+            if ((flags & TransactionRowCodec.HAS_TRANSFER) != 0) {
+                transaction.setTransferId(readString(in));
+            }
+            transactions.add(transaction);
+            if (transactions.size() == LOAD_BATCH_SIZE) {
+                wallet.addTransactions(transactions);
+                transactions = new ArrayList<>(LOAD_BATCH_SIZE);
+            }
+        }
+        // No listener is bound yet, so nothing is journaled
+        wallet.addTransactions(transactions);
+        wallet.setBudgets(budgets);
+        return wallet;
+    }
+
+    private static String[] readDictionary(ByteBuffer in) {
+        String[] dictionary = new String[readCount(in)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = readString(in);
+        }
+        return dictionary;
+    }
+
+    private static List<Budget> readBudgets(ByteBuffer in, String[] dictionary) {
+        int budgetCount = readCount(in);
+        List<Budget> budgets = new ArrayList<>(budgetCount);
+        for (int i = 0; i < budgetCount; i++) {
+            Budget budget = new Budget();
+            budget.setCategory(lookup(dictionary, readVarint(in)));
+            budget.setUsername(lookup(dictionary, readVarint(in)));
+            budget.setLimitMinor(readZigzag(in));
+            budgets.add(budget);
+        }
+        return budgets;
+    }
+
+    private static RollupCube readRollup(ByteBuffer in, String[] dictionary) {
+        RollupCube rollup = new RollupCube();
+        long covered = readVarint(in);
+        if (covered > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Rollup covers " + covered + " transactions");
+        }
+        rollup.setTransactionCount((int) covered);
+        int cellCount = readCount(in);
+        for (int i = 0; i < cellCount; i++) {
+            int flags = in.get();
+            YearMonth month = null;
+            if ((flags & DATED_CELL) != 0) {
+                long key = readZigzag(in);
+                month = YearMonth.of((int) Math.floorDiv(key, 12L), (int) Math.floorMod(key, 12L) + 1);
+            }
+            String category = lookup(dictionary, readVarint(in));
+            long sum = readZigzag(in);
+            long count = readVarint(in);
+            if (count > covered) {
+                throw new IllegalArgumentException("Rollup cell count " + count + " exceeds " + covered);
+            }
+            rollup.addCell(month, category, TransactionRowCodec.typeOf(flags), sum, (int) count);
+        }
+        return rollup;
+    }
+
+    private static void addToDictionary(Map<String, Integer> refs, List<String> dictionary, String value) {
+        if (value != null && !refs.containsKey(value)) {
+            refs.put(value, dictionary.size());
+            dictionary.add(value);
+        }
+    }
+
+    private static long ref(Map<String, Integer> refs, String value) {
+        return value == null ? 0 : refs.get(value) + 1;
+    }
+
+    private static String lookup(String[] dictionary, long ref) {
+        return ref == 0 ? null : dictionary[(int) ref - 1];
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        return TransactionRowCodec.readVarint(in);
+    }
+
+    private static long readZigzag(ByteBuffer in) {
+        return TransactionRowCodec.readZigzag(in);
+    }
+
+    private static int readCount(ByteBuffer in) {
+        long count = readVarint(in);
+        if (count > in.remaining()) {
+            throw new IllegalArgumentException("Count " + count + " exceeds the record");
+        }
+        return (int) count;
+    }
+
+    private static String readString(ByteBuffer in) {
+        return TransactionRowCodec.readString(in);
+    }
+
+    /**
+     * Patches each record's length prefix once the record is complete.
+     */
+    private static class RecordWriter extends TransactionRowCodec.Writer {
+        private long recordStart;
+
+        RecordWriter(FileChannel channel) {
+            super(channel, WRITE_BUFFER_BYTES);
+        }
+
+        void beginRecord() throws IOException {
+            ensure(4);
+            recordStart = position();
+            buffer.putInt(0);
+        }
+
+        void endRecord() throws IOException {
+            long length = position() - recordStart - 4;
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot record exceeds 2 GB");
+            }
+            if (recordStart >= flushed) {
+                buffer.putInt((int) (recordStart - flushed), (int) length);
+            } else {
+                ByteBuffer prefix = ByteBuffer.allocate(4).putInt((int) length);
+                prefix.flip();
+                while (prefix.hasRemaining()) {
+                    channel.write(prefix, recordStart + prefix.position());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.finance.repository;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a flush on a background thread {@code windowMillis} after it is first requested.
+ * Requests made while a flush is pending join it, so a burst of changes costs one write
+ * and no change waits longer than the window plus a flush that is already running.
+ * The thread is started on the first request. A flush that fails asks for a {@link #retry},
+ * which waits twice as long after each consecutive failure, up to {@code maxBackoffMillis}.
+ */
+class CoalescingFlusher {
+    private final Runnable flush;
+    private final long windowMillis;
+    private final long maxBackoffMillis;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    // Flushes in a row that asked for a retry
+    private final AtomicInteger failures = new AtomicInteger();
+    private ScheduledExecutorService executor;
+    private boolean closed;
+
+    CoalescingFlusher(Runnable flush, long windowMillis, long maxBackoffMillis) {
+        this.flush = flush;
+        this.windowMillis = windowMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    void request() {
+        if (!pending.compareAndSet(false, true)) return;
+        try {
+            executor().schedule(this::run, windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed: nothing runs in the background any more
+            run();
+        }
+    }
+
+    // Called by a flush that left changes unwritten; once closed, they stay for the caller to handle
+    void retry() {
+        int failed = failures.getAndIncrement();
+        long delay = Math.min(maxBackoffMillis, Math.max(1, windowMillis) << Math.min(failed + 1, 30));
+        if (!pending.compareAndSet(false, true)) return;
+        try {
+            executor().schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.set(false);
+        }
+    }
+
+    // Waits for a pending flush, then flushes whatever is left on the calling thread
+    void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            closed = true;
+            running = executor;
+        }
+        if (running != null) {
+            running.shutdown();
+            try {
+                running.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush.run();
+    }
+
+    private synchronized ScheduledExecutorService executor() {
+        if (closed) {
+            throw new RejectedExecutionException("Flusher is closed");
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "storage-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private void run() {
+        pending.set(false);
+        int failed = failures.get();
+        try {
+            flush.run();
+        } catch (RuntimeException e) {
+            DataStorage.reportError("Background save failed: " + e.getMessage());
+            retry();
+            return;
+        }
+        if (failures.get() == failed) {
+            failures.set(0);
+        }
+    }
+}
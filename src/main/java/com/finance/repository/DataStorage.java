@@ -1,49 +1,674 @@
 package com.finance.repository;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.finance.metrics.Counter;
+import com.finance.metrics.LatencyHistogram;
+import com.finance.metrics.MetricsRegistry;
+import com.finance.model.Budget;
+import com.finance.model.RollupCube;
+import com.finance.model.Transaction;
 import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.model.WalletListener;
+import com.finance.model.WalletLoader;
 import java.io.*;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 public class DataStorage {
     private static final String DATA_DIR = "data";
-    private static final String USERS_FILE = DATA_DIR + "/users.json";
-    private ObjectMapper objectMapper;
+    private static final String JOURNAL_DIR = "journal";
+    // Without the journal, users changed since the last snapshot are written here, one file per user
+    private static final String USER_FILES_DIR = "users";
+
+    // Journal settings, overridable with -D system properties
+    private static final boolean JOURNAL_ENABLED =
+            !"json".equals(System.getProperty("finance.storage.mode", "journal"));
+    private static final int FSYNC_BATCH_SIZE = Integer.getInteger("finance.journal.fsyncBatch", 32);
+    private static final long FSYNC_INTERVAL_MILLIS = Long.getLong("finance.journal.fsyncIntervalMs", 1000L);
+    private static final long SEGMENT_MAX_BYTES = Long.getLong("finance.journal.segmentBytes", 16L << 20);
+    private static final long COMPACT_THRESHOLD_BYTES = Long.getLong("finance.journal.compactBytes", 64L << 20);
+    // Layout of new snapshots: "json" (default) or "binary"
+    private static final SnapshotFormat SNAPSHOT_FORMAT =
+            SnapshotFormat.fromName(System.getProperty("finance.snapshot.format", "json"));
+    // Without the journal: how long changes are coalesced before the changed users are written
+    private static final long FLUSH_WINDOW_MILLIS = Long.getLong("finance.storage.flushWindowMs", 200L);
+    // Longest wait before retrying a background write that failed
+    private static final long FLUSH_RETRY_MAX_MILLIS = Long.getLong("finance.storage.flushRetryMaxMs", 30_000L);
+    // Snapshot generations kept as fallbacks, and whether snapshots and per-user files are fsynced before the rename
+    private static final int SNAPSHOT_GENERATIONS = Integer.getInteger("finance.snapshot.generations", 3);
+    private static final boolean FSYNC = !"false".equals(System.getProperty("finance.storage.fsync", "true"));
+
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final Counter ERRORS = METRICS.counter("storage.errors");
+    private static final LatencyHistogram SAVE_TIME = METRICS.histogram("storage.saveUsers");
+    private static final LatencyHistogram LOAD_TIME = METRICS.histogram("storage.loadUsers");
+    private static final LatencyHistogram REPLAY_TIME = METRICS.histogram("storage.replayJournal");
+
+    private final Path dataDir;
+    private final SnapshotFormat format;
+    private final Map<SnapshotFormat, SnapshotCodec> codecs = new EnumMap<>(SnapshotFormat.class);
+    // Given to users whose wallet is read from storage on demand
+    private final WalletLoader walletLoader = new WalletLoader() {
+        @Override
+        public Wallet load(String username) {
+            return loadWallet(username);
+        }
+
+        @Override
+        public RollupCube loadRollup(String username) {
+            return DataStorage.this.loadRollup(username);
+        }
+    };
+    private final SnapshotGenerations generations;
+    // Snapshot generation the users were last loaded from or saved to
+    private Path currentSnapshot;
+    private RecoveryReport recoveryReport;
+    private Journal journal;
+    // Without the journal: users changed since they were last written, and the background writer
+    private final Map<String, User> dirtyUsers = new ConcurrentHashMap<>();
+    private CoalescingFlusher flusher;
+    // Where each user's wallet is read from: the snapshot or the user's own file
+    private Map<String, WalletLocation> walletLocations = new HashMap<>();
+    // Wallet loads read through the locations; saving swaps files and locations under the write lock
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    private static class WalletLocation {
+        final File file;
+        final SnapshotCodec codec;
+        final long offset;
+
+        WalletLocation(File file, SnapshotCodec codec, long offset) {
+            this.file = file;
+            this.codec = codec;
+            this.offset = offset;
+        }
+    }
 
     public DataStorage() {
-        this.objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        objectMapper.enableDefaultTyping();
-        
+        this(Paths.get(DATA_DIR), JOURNAL_ENABLED);
+    }
+
+    public DataStorage(Path dataDir, boolean journalEnabled) {
+        this(dataDir, journalEnabled, SNAPSHOT_FORMAT);
+    }
+
+    public DataStorage(Path dataDir, boolean journalEnabled, SnapshotFormat format) {
+        this.dataDir = dataDir;
+        this.format = format;
+        for (SnapshotFormat each : SnapshotFormat.values()) {
+            codecs.put(each, each.newCodec());
+        }
+        this.generations = new SnapshotGenerations(dataDir, SNAPSHOT_GENERATIONS, FSYNC);
+
         // Create data directory if it doesn't exist
         try {
-            Files.createDirectories(Paths.get(DATA_DIR));
+            Files.createDirectories(dataDir);
+            if (journalEnabled) {
+                journal = new Journal(dataDir.resolve(JOURNAL_DIR),
+                        FSYNC_BATCH_SIZE, FSYNC_INTERVAL_MILLIS, SEGMENT_MAX_BYTES);
+            } else {
+                flusher = new CoalescingFlusher(this::flush, FLUSH_WINDOW_MILLIS, FLUSH_RETRY_MAX_MILLIS);
+            }
         } catch (IOException e) {
-            System.err.println("Error creating data directory: " + e.getMessage());
+            reportError("Error creating data directory: " + e.getMessage());
         }
     }
 
-    public void saveUsers(List<User> users) {
+    public boolean isJournalEnabled() {
+        return journal != null;
+    }
+
+    // Disabling fsync trades crash safety for save latency, e.g. to measure its cost
+    public void setFsyncEnabled(boolean fsync) {
+        generations.setFsync(fsync);
+    }
+
+    /**
+     * Writes a full snapshot as a new generation (see {@link SnapshotGenerations}); a crash mid-save
+     * leaves the previous generation current. In journal mode this is a compaction:
+     * the segments the snapshot covers are deleted afterwards; without the journal,
+     * the per-user files of the saved users are, and those written on top of older generations,
+     * which loads ignore once the new generation is committed.
+     * Wallets become evictable again, since the snapshot now holds their contents.
+     */
+    public synchronized void saveUsers(List<User> users) {
+        long start = System.nanoTime();
         try {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(new File(USERS_FILE), users);
+            long coveredSegment = journal != null ? journal.rollSegment() : 0;
+            // Changes from here on mark their users dirty again, even if the snapshot catches them
+            for (User user : users) {
+                dirtyUsers.remove(user.getUsername());
+            }
+            // Wallets in memory are released afterwards only if nothing changed them since this point
+            Map<User, Long> changeCounts = changeCounts(users);
+            // A new file: unloaded wallets are still read from the current generation
+            SnapshotCodec codec = codecs.get(format);
+            Path snapshot = generations.nextFile(format);
+            File usersFile = snapshot.toFile();
+            codec.write(usersFile, users);
+            snapshotLock.writeLock().lock();
+            try {
+                Map<String, Long> offsets = codec.index(usersFile, (username, password) -> { });
+                // Wallets keep reading from their current files until the new generation is committed
+                Set<Path> released = filesInUse();
+                Set<Path> inUse = new HashSet<>(released);
+                inUse.add(snapshot);
+                generations.commit(snapshot, inUse);
+                offsets.forEach((username, offset) ->
+                        walletLocations.put(username, new WalletLocation(usersFile, codec, offset)));
+                currentSnapshot = snapshot;
+                // Generations the commit dropped but kept for those wallets can go now
+                released.removeAll(filesInUse());
+                for (SnapshotGenerations.Generation generation : generations.read()) {
+                    released.remove(generations.path(generation));
+                }
+                for (Path file : released) {
+                    Files.deleteIfExists(file);
+                }
+                for (User user : users) {
+                    deleteUserFiles(user.getUsername(), null);
+                }
+                for (Path dir : userFileDirs().headMap(SnapshotGenerations.numberOf(snapshot)).values()) {
+                    deleteDirectory(dir);
+                }
+                // Snapshots from before generations were kept are superseded
+                for (SnapshotFormat each : SnapshotFormat.values()) {
+                    if (!filesInUse().contains(legacySnapshotFile(each).toPath())) {
+                        Files.deleteIfExists(legacySnapshotFile(each).toPath());
+                    }
+                }
+            } finally {
+                snapshotLock.writeLock().unlock();
+            }
+            if (journal != null) {
+                journal.deleteSegmentsUpTo(coveredSegment);
+            }
+
+            changeCounts.forEach((user, changeCount) -> {
+                if (hasStoredWallet(user.getUsername())) {
+                    user.releaseWallet(walletLoader, changeCount);
+                }
+            });
         } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
+            reportError("Error saving users: " + e.getMessage());
+        } finally {
+            SAVE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Persists pending changes without blocking on the snapshot. In journal mode the changes are already
+     * in the log, so this only syncs it and compacts once the log outgrows the threshold; otherwise
+     * the changed users are written to their own files in the background (see {@link #flush()}).
+     */
+    public void saveChanges(Supplier<List<User>> users) {
+        if (journal == null) {
+            if (flusher != null) flusher.request();
+            return;
         }
+        journal.sync();
+        if (journal.getTotalBytes() >= COMPACT_THRESHOLD_BYTES) {
+            saveUsers(users.get());
+        }
+    }
+
+    /**
+     * Writes each user changed since it was last written to its own file, replacing the earlier one,
+     * so the cost follows what changed rather than the number of users. Runs on the background
+     * flusher; call it directly to persist synchronously. The two users of a transfer may be written
+     * in separate files: use the journal when they must be persisted atomically.
+     */
+    public synchronized void flush() {
+        List<User> users = new ArrayList<>();
+        for (String username : new ArrayList<>(dirtyUsers.keySet())) {
+            User user = dirtyUsers.remove(username);
+            if (user != null) users.add(user);
+        }
+        SnapshotCodec codec = codecs.get(format);
+        boolean failed = false;
+        for (User user : users) {
+            String username = user.getUsername();
+            try {
+                File userFile = userFile(username, format, SnapshotGenerations.numberOf(currentSnapshot));
+                Files.createDirectories(userFile.getParentFile().toPath());
+                File tempFile = new File(userFile.getPath() + ".tmp");
+                Map<User, Long> changeCounts = changeCounts(List.of(user));
+                codec.write(tempFile, List.of(user));
+                generations.fsync(tempFile.toPath());
+                snapshotLock.writeLock().lock();
+                try {
+                    generations.move(tempFile.toPath(), userFile.toPath());
+                    deleteUserFiles(username, userFile.toPath());
+                    long offset = codec.index(userFile, (name, password) -> { }).get(username);
+                    walletLocations.put(username, new WalletLocation(userFile, codec, offset));
+                } finally {
+                    snapshotLock.writeLock().unlock();
+                }
+                Long changeCount = changeCounts.get(user);
+                if (changeCount != null) {
+                    user.releaseWallet(walletLoader, changeCount);
+                }
+            } catch (IOException e) {
+                dirtyUsers.putIfAbsent(username, user);
+                reportError("Error saving user " + username + ": " + e.getMessage());
+                failed = true;
+            }
+        }
+        if (failed && flusher != null) {
+            // Without a retry the user would wait for its next change, which may never come
+            flusher.retry();
+        }
+    }
+
+    // Users changed and not yet written
+    public int getDirtyCount() {
+        return dirtyUsers.size();
     }
 
+    /**
+     * Loads usernames and passwords only, streaming over the newest snapshot generation whose size
+     * and checksum verify, then the per-user files written on top of it or of a newer generation,
+     * which take precedence; files left over from older generations are ignored. Each wallet is read from
+     * its recorded location on first access. Before the first generation is committed, a plain
+     * users.json or users.bin is loaded. Returns null if there is no data yet; if there is data
+     * but no generation is readable, fails rather than start empty and overwrite it on the next save.
+     * See {@link #getRecoveryReport()} for what was loaded and how long it took.
+     */
     public List<User> loadUsers() {
+        long start = System.nanoTime();
+        snapshotLock.writeLock().lock();
         try {
-            File file = new File(USERS_FILE);
-            if (file.exists()) {
-                return objectMapper.readValue(file, 
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, User.class));
+            Map<String, User> users = new LinkedHashMap<>();
+            Map<String, WalletLocation> locations = new HashMap<>();
+            List<String> skipped = new ArrayList<>();
+            currentSnapshot = loadSnapshot(users, locations, skipped);
+            // Unstamped files from before per-generation directories, then the directories not superseded
+            List<File> userFiles = listUserFiles(dataDir.resolve(USER_FILES_DIR));
+            for (Path dir : userFileDirs().tailMap(SnapshotGenerations.numberOf(currentSnapshot), true).values()) {
+                userFiles.addAll(listUserFiles(dir));
             }
+            for (File userFile : userFiles) {
+                try {
+                    index(userFile, SnapshotFormat.forFile(userFile.toPath()), users, locations);
+                } catch (IOException e) {
+                    // Written by rename, so only damaged after the fact; the snapshot copy is used instead
+                    reportError("Skipping unreadable user file " + userFile + ": " + e.getMessage());
+                }
+            }
+            walletLocations = locations;
+            recoveryReport = new RecoveryReport(currentSnapshot != null ? currentSnapshot.getFileName().toString() : null,
+                    skipped, users.size(), System.nanoTime() - start, 0, 0);
+            return users.isEmpty() ? null : new ArrayList<>(users.values());
+        } finally {
+            snapshotLock.writeLock().unlock();
+            LOAD_TIME.recordSince(start);
+        }
+    }
+
+    public RecoveryReport getRecoveryReport() {
+        return recoveryReport;
+    }
+
+    // Snapshot generation in use, or null if none has been loaded or saved
+    public Path getSnapshotPath() {
+        return currentSnapshot;
+    }
+
+    private Path loadSnapshot(Map<String, User> users, Map<String, WalletLocation> locations,
+                              List<String> skipped) {
+        List<SnapshotGenerations.Generation> committed;
+        try {
+            committed = generations.read();
         } catch (IOException e) {
-            System.err.println("Error loading users: " + e.getMessage());
+            throw new UncheckedIOException("Cannot read snapshot manifest in " + dataDir, e);
+        }
+        for (SnapshotGenerations.Generation generation : committed) {
+            Path file = generations.path(generation);
+            if (!generations.verify(generation)) {
+                reportError("Snapshot generation " + generation + " is incomplete or damaged, trying an older one");
+                skipped.add(generation.fileName);
+                continue;
+            }
+            try {
+                Map<String, User> loaded = new LinkedHashMap<>();
+                Map<String, WalletLocation> loadedLocations = new HashMap<>();
+                index(file.toFile(), SnapshotFormat.forFile(file), loaded, loadedLocations);
+                users.putAll(loaded);
+                locations.putAll(loadedLocations);
+                return file;
+            } catch (IOException e) {
+                reportError("Cannot read snapshot generation " + generation + ": " + e.getMessage());
+                skipped.add(generation.fileName);
+            }
+        }
+        if (!committed.isEmpty()) {
+            throw new UncheckedIOException(new IOException("No valid snapshot generation in " + dataDir
+                    + " (tried " + skipped + "); refusing to start with empty data"));
+        }
+        for (SnapshotFormat candidate : candidateFormats()) {
+            File usersFile = legacySnapshotFile(candidate);
+            if (usersFile.exists()) {
+                try {
+                    index(usersFile, candidate, users, locations);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Cannot read snapshot " + usersFile
+                            + "; refusing to start with empty data", e);
+                }
+                return usersFile.toPath();
+            }
         }
         return null;
     }
-}
\ No newline at end of file
+
+    public Wallet loadWallet(String username) {
+        snapshotLock.readLock().lock();
+        try {
+            return readWallet(username);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Reads only the rollup of a stored wallet; null if the snapshot predates rollups
+    public RollupCube loadRollup(String username) {
+        snapshotLock.readLock().lock();
+        try {
+            WalletLocation location = walletLocations.get(username);
+            if (location == null) {
+                return new RollupCube();
+            }
+            return location.codec.readRollup(location.file, location.offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading rollup of " + username, e);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    public SnapshotFormat getSnapshotFormat() {
+        return format;
+    }
+
+    private void index(File file, SnapshotFormat fileFormat, Map<String, User> users,
+                       Map<String, WalletLocation> locations) throws IOException {
+        SnapshotCodec codec = codecs.get(fileFormat);
+        Map<String, Long> offsets = codec.index(file,
+                (username, password) -> users.put(username, new User(username, password, walletLoader)));
+        offsets.forEach((username, offset) -> locations.put(username, new WalletLocation(file, codec, offset)));
+    }
+
+    private Wallet readWallet(String username) {
+        WalletLocation location = walletLocations.get(username);
+        if (location == null) {
+            return new Wallet();
+        }
+        try {
+            return location.codec.readWallet(location.file, location.offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading wallet of " + username, e);
+        }
+    }
+
+    // Change counts of the users' wallets that are in memory; wallets not in memory have nothing to release
+    private static Map<User, Long> changeCounts(List<User> users) {
+        Map<User, Long> changeCounts = new HashMap<>();
+        for (User user : users) {
+            Wallet wallet = user.peekWallet();
+            if (wallet != null) {
+                changeCounts.put(user, wallet.getChangeCount());
+            }
+        }
+        return changeCounts;
+    }
+
+    private boolean hasStoredWallet(String username) {
+        snapshotLock.readLock().lock();
+        try {
+            return walletLocations.containsKey(username);
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    // Snapshot written before generations were kept
+    private File legacySnapshotFile(SnapshotFormat snapshotFormat) {
+        return dataDir.resolve(snapshotFormat.getFileName()).toFile();
+    }
+
+    // Files that unloaded wallets are still read from; called under the snapshot lock
+    private Set<Path> filesInUse() {
+        Set<Path> files = new HashSet<>();
+        for (WalletLocation location : walletLocations.values()) {
+            files.add(location.file.toPath());
+        }
+        return files;
+    }
+
+    /**
+     * Per-user file written while the given generation was current (0 before the first one), in a directory
+     * named after that generation. Once a newer generation is committed the file is stale: the snapshot
+     * holds the user's changes, and loads skip the directory even if a crash left it behind.
+     */
+    private File userFile(String username, SnapshotFormat fileFormat, long generation) {
+        return dataDir.resolve(USER_FILES_DIR).resolve(String.format("%06d", generation))
+                .resolve(userFileName(username, fileFormat)).toFile();
+    }
+
+    // Usernames are URL-encoded into file names, so any username maps to a distinct plain name
+    private static String userFileName(String username, SnapshotFormat fileFormat) {
+        String name = URLEncoder.encode(username, StandardCharsets.UTF_8).replace("*", "%2A");
+        if (name.startsWith(".")) {
+            name = "%2E" + name.substring(1);
+        }
+        return name + fileFormat.getExtension();
+    }
+
+    // Directories of per-user files by the generation they were written on top of
+    private TreeMap<Long, Path> userFileDirs() {
+        TreeMap<Long, Path> dirs = new TreeMap<>();
+        File[] entries = dataDir.resolve(USER_FILES_DIR).toFile().listFiles(File::isDirectory);
+        if (entries != null) {
+            for (File entry : entries) {
+                try {
+                    dirs.put(Long.parseLong(entry.getName()), entry.toPath());
+                } catch (NumberFormatException e) {
+                    // Not a generation directory
+                }
+            }
+        }
+        return dirs;
+    }
+
+    // Completed files in the directory, sorted by name
+    private static List<File> listUserFiles(Path dir) {
+        File[] files = dir.toFile().listFiles(file -> file.isFile() && !file.getName().endsWith(".tmp"));
+        List<File> result = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            result.addAll(Arrays.asList(files));
+        }
+        return result;
+    }
+
+    // All the user's files, in any generation's directory or unstamped, except keep
+    private void deleteUserFiles(String username, Path keep) throws IOException {
+        List<Path> dirs = new ArrayList<>(userFileDirs().values());
+        dirs.add(dataDir.resolve(USER_FILES_DIR));
+        for (Path dir : dirs) {
+            for (SnapshotFormat each : SnapshotFormat.values()) {
+                Path file = dir.resolve(userFileName(username, each));
+                if (!file.equals(keep)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // The configured format first
+    private List<SnapshotFormat> candidateFormats() {
+        List<SnapshotFormat> formats = new ArrayList<>();
+        formats.add(format);
+        for (SnapshotFormat other : SnapshotFormat.values()) {
+            if (other != format) formats.add(other);
+        }
+        return formats;
+    }
+
+    /**
+     * Applies journal records written after the last snapshot. Replay is idempotent:
+     * transactions already present in a wallet (same id) are skipped. The check reads only the
+     * rows dated on the days the records touch, not the whole wallet.
+     */
+    public void replayJournal(UserRepository userRepository) {
+        if (journal == null) return;
+        long start = System.nanoTime();
+        try {
+            Map<String, Set<String>> knownIds = new HashMap<>();
+            List<JournalRecord> records = journal.readAll();
+            for (JournalRecord record : records) {
+                replay(record, userRepository, knownIds);
+            }
+            if (recoveryReport != null) {
+                recoveryReport = recoveryReport.withJournal(records.size(), System.nanoTime() - start);
+            }
+        } catch (IOException e) {
+            reportError("Error replaying journal: " + e.getMessage());
+        } finally {
+            REPLAY_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Routes the user's wallet changes into the journal or, without it,
+     * marks the user dirty for the background flusher.
+     */
+    public void attach(User user) {
+        String username = user.getUsername();
+        if (journal == null) {
+            user.setWalletListener(new WalletListener() {
+                @Override
+                public void onTransactionAdded(Transaction transaction) {
+                    markDirty(user);
+                }
+
+                @Override
+                public void onTransactionsAdded(List<Transaction> transactions) {
+                    markDirty(user);
+                }
+
+                @Override
+                public void onBudgetSet(Budget budget) {
+                    markDirty(user);
+                }
+            });
+            return;
+        }
+        user.setWalletListener(new WalletListener() {
+            @Override
+            public void onTransactionAdded(Transaction transaction) {
+                journal.append(JournalRecord.transaction(username, transaction));
+            }
+
+            @Override
+            public void onTransactionsAdded(List<Transaction> transactions) {
+                List<JournalRecord> records = new ArrayList<>(transactions.size());
+                for (Transaction transaction : transactions) {
+                    records.add(JournalRecord.transaction(username, transaction));
+                }
+                journal.append(JournalRecord.group(records));
+            }
+
+            @Override
+            public void onBudgetSet(Budget budget) {
+                journal.append(JournalRecord.budget(username, budget));
+            }
+        });
+    }
+
+    /**
+     * Runs changes that must be persisted together, such as both sides of a transfer.
+     */
+    public void runAtomically(Runnable action) {
+        if (journal != null) {
+            journal.group(action);
+        } else {
+            action.run();
+        }
+    }
+
+    // Storage errors go to stderr and are counted as storage.errors
+    static void reportError(String message) {
+        ERRORS.increment();
+        System.err.println(message);
+    }
+
+    // Writes pending changes before returning
+    public void close() {
+        if (flusher != null) {
+            flusher.close();
+        }
+        if (journal == null) return;
+        try {
+            journal.close();
+        } catch (IOException e) {
+            reportError("Error closing journal: " + e.getMessage());
+        }
+    }
+
+    private void markDirty(User user) {
+        dirtyUsers.put(user.getUsername(), user);
+        if (flusher != null) flusher.request();
+    }
+
+    private void replay(JournalRecord record, UserRepository userRepository, Map<String, Set<String>> knownIds) {
+        if (record.getOp() == JournalRecord.Op.GROUP) {
+            for (JournalRecord nested : record.getRecords()) {
+                replay(nested, userRepository, knownIds);
+            }
+            return;
+        }
+        Optional<User> user = userRepository.findByUsername(record.getUser());
+        if (user.isEmpty()) {
+            reportError("Skipping journal record for unknown user " + record.getUser());
+            return;
+        }
+        if (record.getOp() == JournalRecord.Op.BUDGET) {
+            user.get().getWallet().addBudget(record.getBudget());
+        } else if (record.getOp() == JournalRecord.Op.TRANSACTION) {
+            Transaction transaction = record.getTransaction();
+            Wallet wallet = user.get().getWallet();
+            // A copy already in the wallet has the same date, so only the rows of that day are read
+            LocalDate day = transaction.getDate() != null ? transaction.getDate().toLocalDate() : null;
+            Set<String> ids = knownIds.computeIfAbsent(record.getUser() + '\0' + day, key -> {
+                Set<String> existing = new HashSet<>();
+                List<Transaction> candidates = day != null
+                        ? wallet.getTransactionsBetween(day, day) : wallet.getTransactions();
+                candidates.forEach(t -> existing.add(t.getId()));
+                return existing;
+            });
+            if (ids.add(transaction.getId())) {
+                wallet.addTransaction(transaction);
+            }
+        }
+    }
+}
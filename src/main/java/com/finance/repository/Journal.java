@@ -0,0 +1,244 @@
+package com.finance.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.finance.metrics.Counter;
+import com.finance.metrics.LatencyHistogram;
+import com.finance.metrics.MetricsRegistry;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of wallet changes, stored as JSON lines in numbered segment files.
+ * Appends are written immediately but fsync'ed in batches: after {@code fsyncBatchSize}
+ * records or {@code fsyncIntervalMillis}, whichever comes first. A daemon thread syncs
+ * records still waiting when the interval passes, so a lone append is not left unsynced
+ * until the next one.
+ */
+public class Journal implements Closeable {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final LatencyHistogram FSYNC_TIME = MetricsRegistry.global().histogram("journal.fsync");
+    private static final Counter RECORDS = MetricsRegistry.global().counter("journal.records");
+    private static final Counter BYTES = MetricsRegistry.global().counter("journal.bytes");
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final int fsyncBatchSize;
+    private final long fsyncIntervalMillis;
+    private final long segmentMaxBytes;
+    // Syncs records left waiting by the last append; null if every append syncs
+    private final ScheduledExecutorService syncer;
+
+    private FileChannel channel;
+    private long segmentNumber;
+    private long segmentBytes;
+    private long totalBytes;
+    private int unsyncedRecords;
+    private long lastSyncMillis;
+    // Records collected by group() on the calling thread; the journal is not locked while the group runs
+    private final ThreadLocal<List<JournalRecord>> pendingGroup = new ThreadLocal<>();
+
+    public Journal(Path directory, int fsyncBatchSize, long fsyncIntervalMillis, long segmentMaxBytes) throws IOException {
+        this.directory = directory;
+        this.fsyncBatchSize = Math.max(1, fsyncBatchSize);
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        Files.createDirectories(directory);
+        List<Long> segments = listSegments();
+        for (long number : segments) {
+            totalBytes += Files.size(segmentPath(number));
+        }
+        this.segmentNumber = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        openSegment();
+
+        if (fsyncIntervalMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::syncPending, fsyncIntervalMillis, fsyncIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    public void append(JournalRecord record) {
+        List<JournalRecord> group = pendingGroup.get();
+        if (group != null) {
+            group.add(record);
+            return;
+        }
+        synchronized (this) {
+            try {
+                write(record);
+            } catch (IOException e) {
+                DataStorage.reportError("Error writing journal: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs the action and writes every record it appends as a single group line,
+     * e.g. both legs of a transfer. If the action throws, nothing is written.
+     */
+    public void group(Runnable action) {
+        if (pendingGroup.get() != null) {
+            action.run();
+            return;
+        }
+        List<JournalRecord> records = new ArrayList<>();
+        pendingGroup.set(records);
+        try {
+            action.run();
+        } finally {
+            pendingGroup.remove();
+        }
+        if (records.size() == 1) {
+            append(records.get(0));
+        } else if (!records.isEmpty()) {
+            append(JournalRecord.group(records));
+        }
+    }
+
+    public synchronized void sync() {
+        try {
+            if (unsyncedRecords > 0) {
+                long start = System.nanoTime();
+                channel.force(false);
+                FSYNC_TIME.recordSince(start);
+            }
+            unsyncedRecords = 0;
+            lastSyncMillis = System.currentTimeMillis();
+        } catch (IOException e) {
+            DataStorage.reportError("Error syncing journal: " + e.getMessage());
+        }
+    }
+
+    // Run by the syncer every interval; an idle journal is left alone
+    private synchronized void syncPending() {
+        if (unsyncedRecords > 0 && channel.isOpen()) {
+            sync();
+        }
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     * Returns the number of the last closed segment, i.e. the last one a snapshot taken now covers.
+     */
+    public synchronized long rollSegment() throws IOException {
+        sync();
+        channel.close();
+        long closed = segmentNumber;
+        segmentNumber++;
+        openSegment();
+        return closed;
+    }
+
+    public synchronized void deleteSegmentsUpTo(long lastSegment) throws IOException {
+        for (long number : listSegments()) {
+            if (number <= lastSegment) {
+                Path path = segmentPath(number);
+                totalBytes -= Files.size(path);
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Reads all records in append order. A torn last line (crash mid-append) ends the replay.
+     */
+    public synchronized List<JournalRecord> readAll() throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        for (long number : listSegments()) {
+            try (BufferedReader reader = Files.newBufferedReader(segmentPath(number), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) continue;
+                    try {
+                        records.add(objectMapper.readValue(line, JournalRecord.class));
+                    } catch (JsonProcessingException e) {
+                        DataStorage.reportError("Skipping damaged journal tail in segment " + number);
+                        break;
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    synchronized int getUnsyncedRecords() {
+        return unsyncedRecords;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+        sync();
+        channel.close();
+    }
+
+    private void write(JournalRecord record) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(record);
+        ByteBuffer buffer = ByteBuffer.allocate(json.length + 1);
+        buffer.put(json).put((byte) '\n').flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        segmentBytes += json.length + 1;
+        totalBytes += json.length + 1;
+        unsyncedRecords++;
+        RECORDS.increment();
+        BYTES.add(json.length + 1);
+
+        if (unsyncedRecords >= fsyncBatchSize
+                || System.currentTimeMillis() - lastSyncMillis >= fsyncIntervalMillis) {
+            sync();
+        }
+        if (segmentBytes >= segmentMaxBytes) {
+            rollSegment();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path path = segmentPath(segmentNumber);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+        lastSyncMillis = System.currentTimeMillis();
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.finance.repository;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.finance.model.Budget;
+import com.finance.model.Transaction;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JournalRecord {
+    public enum Op { TRANSACTION, BUDGET, GROUP }
+
+    private Op op;
+    private String user;
+    private Transaction transaction;
+    private Budget budget;
+    private List<JournalRecord> records;
+
+    public JournalRecord() {}
+
+    public static JournalRecord transaction(String user, Transaction transaction) {
+        JournalRecord record = new JournalRecord();
+        record.op = Op.TRANSACTION;
+        record.user = user;
+        record.transaction = transaction;
+        return record;
+    }
+
+    public static JournalRecord budget(String user, Budget budget) {
+        JournalRecord record = new JournalRecord();
+        record.op = Op.BUDGET;
+        record.user = user;
+        record.budget = budget;
+        return record;
+    }
+
+    // Records written as one line, so a group is replayed entirely or not at all
+    public static JournalRecord group(List<JournalRecord> records) {
+        JournalRecord record = new JournalRecord();
+        record.op = Op.GROUP;
+        record.records = records;
+        return record;
+    }
+
+    // Getters and setters
+    public Op getOp() { return op; }
+    public void setOp(Op op) { this.op = op; }
+
+    public String getUser() { return user; }
+    public void setUser(String user) { this.user = user; }
+
+    public Transaction getTransaction() { return transaction; }
+    public void setTransaction(Transaction transaction) { this.transaction = transaction; }
+
+    public Budget getBudget() { return budget; }
+    public void setBudget(Budget budget) { this.budget = budget; }
+
+    public List<JournalRecord> getRecords() { return records; }
+    public void setRecords(List<JournalRecord> records) { this.records = records; }
+}
@@ -0,0 +1,159 @@
+package com.finance.repository;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.finance.model.RollupCube;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The original users.json layout: a default-typed, pretty-printed {@code List<User>}.
+ * Offsets are byte positions of each user object in the file.
+ */
+class JsonSnapshotCodec implements SnapshotCodec {
+    private final ObjectMapper objectMapper;
+
+    JsonSnapshotCodec() {
+        this.objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.enableDefaultTyping();
+    }
+
+    /**
+     * Writes the users in the layout of {@code writerFor(List<User>)}, one user at a time.
+     */
+    @Override
+    public void write(File file, List<User> users) throws IOException {
+        ObjectWriter userWriter = objectMapper.writerFor(User.class);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(file, JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            generator.writeString(ArrayList.class.getName());
+            generator.writeStartArray();
+            for (User user : users) {
+                Wallet wallet = user.getWallet();
+                wallet.getLock().readLock().lock();
+                try {
+                    userWriter.writeValue(generator, user);
+                } finally {
+                    wallet.getLock().readLock().unlock();
+                }
+            }
+            generator.writeEndArray();
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Accepts both the typed layout written by {@link #write} ({@code ["java.util.ArrayList", [...]]})
+     * and a plain array, with elements optionally wrapped as {@code ["com.finance.model.User", {...}]}.
+     */
+    @Override
+    public Map<String, Long> index(File file, BiConsumer<String, String> onUser) throws IOException {
+        Map<String, Long> offsets = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(file)) {
+            JsonToken token = parser.nextToken();
+            if (token != JsonToken.START_ARRAY) {
+                throw new IOException("users file must contain an array");
+            }
+            token = parser.nextToken();
+            if (token == JsonToken.VALUE_STRING) {
+                parser.nextToken(); // START_ARRAY of the typed list
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                boolean typed = token == JsonToken.START_ARRAY;
+                if (typed) {
+                    parser.nextToken(); // type id
+                    parser.nextToken();
+                }
+                long offset = parser.getTokenLocation().getByteOffset();
+                String username = null;
+                String password = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("username".equals(field)) {
+                        username = parser.getText();
+                    } else if ("password".equals(field)) {
+                        password = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (typed) {
+                    parser.nextToken(); // END_ARRAY of the wrapper
+                }
+                if (username != null) {
+                    offsets.put(username, offset);
+                    onUser.accept(username, password);
+                }
+                token = parser.nextToken();
+            }
+        }
+        return offsets;
+    }
+
+    @Override
+    public Wallet readWallet(File file, long offset) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(offset);
+            try (JsonParser parser = objectMapper.getFactory().createParser(new BufferedInputStream(in))) {
+                parser.nextToken(); // START_OBJECT of the user
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("wallet".equals(field)) {
+                        return objectMapper.readValue(parser, Wallet.class);
+                    }
+                    parser.skipChildren();
+                }
+            }
+            return new Wallet();
+        }
+    }
+
+    // The rollup is written ahead of the transactions (see Wallet), so only the wallet's head is parsed
+    @Override
+    public RollupCube readRollup(File file, long offset) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            in.getChannel().position(offset);
+            try (JsonParser parser = objectMapper.getFactory().createParser(new BufferedInputStream(in))) {
+                parser.nextToken(); // START_OBJECT of the user
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("wallet".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String walletField = parser.getCurrentName();
+                            parser.nextToken();
+                            if ("rollup".equals(walletField)) {
+                                return objectMapper.readValue(parser, RollupCube.class);
+                            } else if ("transactions".equals(walletField)) {
+                                return null;
+                            }
+                            parser.skipChildren();
+                        }
+                        return null;
+                    }
+                    parser.skipChildren();
+                }
+            }
+            return null;
+        }
+    }
+}
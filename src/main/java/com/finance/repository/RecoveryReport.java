@@ -0,0 +1,52 @@
+package com.finance.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of loading the users at startup: which snapshot was used, which newer generations
+ * failed verification, and how long loading and journal replay took.
+ */
+public class RecoveryReport {
+    private final String snapshot;
+    private final List<String> skipped;
+    private final int users;
+    private final long loadNanos;
+    private final int journalRecords;
+    private final long replayNanos;
+
+    RecoveryReport(String snapshot, List<String> skipped, int users, long loadNanos,
+                   int journalRecords, long replayNanos) {
+        this.snapshot = snapshot;
+        this.skipped = Collections.unmodifiableList(skipped);
+        this.users = users;
+        this.loadNanos = loadNanos;
+        this.journalRecords = journalRecords;
+        this.replayNanos = replayNanos;
+    }
+
+    RecoveryReport withJournal(int records, long nanos) {
+        return new RecoveryReport(snapshot, skipped, users, loadNanos, records, nanos);
+    }
+
+    // File name of the snapshot loaded, or null if there was none
+    public String getSnapshot() { return snapshot; }
+    // Newer generations that failed verification, newest first
+    public List<String> getSkipped() { return skipped; }
+    public int getUsers() { return users; }
+    public long getLoadNanos() { return loadNanos; }
+    public int getJournalRecords() { return journalRecords; }
+    public long getReplayNanos() { return replayNanos; }
+
+    public long getTotalMillis() {
+        return (loadNanos + replayNanos) / 1_000_000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Recovered %d users from %s in %d ms (snapshot %d ms, %d journal records %d ms)%s",
+                users, snapshot != null ? snapshot : "no snapshot", getTotalMillis(),
+                loadNanos / 1_000_000, journalRecords, replayNanos / 1_000_000,
+                skipped.isEmpty() ? "" : ", skipped invalid generations " + skipped);
+    }
+}
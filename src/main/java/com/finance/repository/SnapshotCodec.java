@@ -0,0 +1,36 @@
+package com.finance.repository;
+
+import com.finance.model.RollupCube;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads and writes one snapshot file layout. A snapshot is indexed once at startup
+ * and each wallet is then read on demand from the offset recorded for its user.
+ */
+interface SnapshotCodec {
+    /**
+     * Writes all users, each under its wallet's read lock so concurrent sessions
+     * can keep working on other wallets.
+     */
+    void write(File file, List<User> users) throws IOException;
+
+    /**
+     * Scans the file without materializing wallets, passing each username and password to {@code onUser}.
+     * Returns the offset of each user, as accepted by {@link #readWallet}.
+     */
+    Map<String, Long> index(File file, BiConsumer<String, String> onUser) throws IOException;
+
+    Wallet readWallet(File file, long offset) throws IOException;
+
+    /**
+     * Reads only the wallet's month × category × type rollup, without its transactions.
+     * Returns null if the snapshot was written without one.
+     */
+    RollupCube readRollup(File file, long offset) throws IOException;
+}
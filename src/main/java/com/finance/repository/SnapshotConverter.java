@@ -0,0 +1,59 @@
+package com.finance.repository;
+
+import com.finance.model.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a users snapshot between the JSON and binary formats; the format of each file
+ * follows its extension (*.bin is binary). Wallets are converted one at a time.
+ * Run with: mvn compile exec:java -Dexec.mainClass=com.finance.repository.SnapshotConverter
+ *           -Dexec.args="data/users.json data/users.bin"
+ */
+public class SnapshotConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SnapshotConverter <input users.json|users.bin> <output users.json|users.bin>");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        long start = System.nanoTime();
+        int users = convert(input, output);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("Converted %d users in %d ms: %s (%,d bytes) -> %s (%,d bytes)%n",
+                users, elapsed / 1_000_000, input, Files.size(input), output, Files.size(output));
+    }
+
+    /**
+     * Returns the number of users converted.
+     */
+    public static int convert(Path input, Path output) throws IOException {
+        if (Files.exists(output) && Files.isSameFile(input, output)) {
+            throw new IllegalArgumentException("Input and output must be different files");
+        }
+        SnapshotCodec reader = SnapshotFormat.forFile(input).newCodec();
+        SnapshotCodec writer = SnapshotFormat.forFile(output).newCodec();
+        Map<String, Long> offsets = new HashMap<>();
+        List<User> users = new ArrayList<>();
+        offsets.putAll(reader.index(input.toFile(), (username, password) ->
+                users.add(new User(username, password, name -> {
+                    try {
+                        return reader.readWallet(input.toFile(), offsets.get(name));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error loading wallet of " + name, e);
+                    }
+                }))));
+        // Each user's wallet is loaded softly, so the converted ones can be collected as the writer moves on
+        writer.write(output.toFile(), users);
+        return users.size();
+    }
+}
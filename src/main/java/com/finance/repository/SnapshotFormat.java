@@ -0,0 +1,42 @@
+package com.finance.repository;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Layout of the users snapshot: pretty-printed Jackson JSON or the compact binary
+ * format of {@link BinarySnapshotCodec}.
+ */
+public enum SnapshotFormat {
+    JSON("users.json"),
+    BINARY("users.bin");
+
+    private final String fileName;
+
+    SnapshotFormat(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    // ".json" or ".bin", also used for per-user files
+    public String getExtension() {
+        return fileName.substring(fileName.lastIndexOf('.'));
+    }
+
+    // "json" or "binary", as in -Dfinance.snapshot.format
+    public static SnapshotFormat fromName(String name) {
+        return valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    // Binary for *.bin files, JSON otherwise
+    public static SnapshotFormat forFile(Path file) {
+        return file.getFileName().toString().endsWith(".bin") ? BINARY : JSON;
+    }
+
+    SnapshotCodec newCodec() {
+        return this == BINARY ? new BinarySnapshotCodec() : new JsonSnapshotCodec();
+    }
+}
@@ -0,0 +1,206 @@
+package com.finance.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Numbered snapshot files ({@code users-000042.json}, {@code users-000043.bin}) listed newest first
+ * in a manifest with the size and CRC32C of each. A generation is committed by fsyncing its file,
+ * then replacing the manifest through a fsynced temp file, a rename and a directory fsync,
+ * so a crash at any point leaves the previous manifest and every generation it lists intact.
+ */
+class SnapshotGenerations {
+    static final String MANIFEST = "snapshot.manifest";
+    private static final String HEADER = "finance-snapshot-manifest 1";
+
+    private final Path dir;
+    private final int retained;
+    private boolean fsync;
+
+    static class Generation {
+        final long number;
+        final String fileName;
+        final long size;
+        final long checksum;
+
+        Generation(long number, String fileName, long size, long checksum) {
+            this.number = number;
+            this.fileName = fileName;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public String toString() {
+            return fileName;
+        }
+    }
+
+    SnapshotGenerations(Path dir, int retained, boolean fsync) {
+        this.dir = dir;
+        this.retained = Math.max(1, retained);
+        this.fsync = fsync;
+    }
+
+    void setFsync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    Path path(Generation generation) {
+        return dir.resolve(generation.fileName);
+    }
+
+    // Newest first; empty if no generation was committed yet
+    List<Generation> read() throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(dir.resolve(MANIFEST), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return new ArrayList<>();
+        }
+        if (lines.isEmpty() || !HEADER.equals(lines.get(0))) {
+            throw new IOException("Unrecognized snapshot manifest " + dir.resolve(MANIFEST));
+        }
+        List<Generation> generations = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            String[] fields = line.trim().split(" ");
+            if (fields.length != 4) {
+                throw new IOException("Malformed snapshot manifest line: " + line);
+            }
+            try {
+                generations.add(new Generation(Long.parseLong(fields[0]), fields[1],
+                        Long.parseLong(fields[2]), Long.parseUnsignedLong(fields[3], 16)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed snapshot manifest line: " + line);
+            }
+        }
+        return generations;
+    }
+
+    // File for the next generation; it only becomes visible to loads once committed
+    Path nextFile(SnapshotFormat format) throws IOException {
+        List<Generation> generations = read();
+        long next = generations.isEmpty() ? 1 : generations.get(0).number + 1;
+        return dir.resolve(String.format("users-%06d%s", next, format.getExtension()));
+    }
+
+    /**
+     * Makes a fully written file the newest generation. Generations beyond the retained count
+     * are dropped from the manifest and deleted unless {@code inUse} still reads from them.
+     */
+    Generation commit(Path file, Collection<Path> inUse) throws IOException {
+        if (fsync) {
+            fsync(file);
+        }
+        String fileName = file.getFileName().toString();
+        long number = numberOf(file);
+        Generation generation = new Generation(number, fileName, Files.size(file), checksum(file));
+
+        List<Generation> generations = read();
+        generations.removeIf(g -> g.number >= number);
+        generations.add(0, generation);
+        List<Generation> dropped = new ArrayList<>();
+        while (generations.size() > retained) {
+            dropped.add(generations.remove(generations.size() - 1));
+        }
+
+        StringBuilder manifest = new StringBuilder(HEADER).append('\n');
+        for (Generation g : generations) {
+            manifest.append(g.number).append(' ').append(g.fileName).append(' ')
+                    .append(g.size).append(' ').append(Long.toHexString(g.checksum)).append('\n');
+        }
+        replace(dir.resolve(MANIFEST), manifest.toString().getBytes(StandardCharsets.UTF_8));
+
+        for (Generation g : dropped) {
+            Path old = path(g);
+            if (!inUse.contains(old)) {
+                Files.deleteIfExists(old);
+            }
+        }
+        return generation;
+    }
+
+    // Number of a generation file such as users-000042.json; 0 for null or any other file, e.g. a snapshot from before generations
+    static long numberOf(Path file) {
+        if (file == null) return 0;
+        String fileName = file.getFileName().toString();
+        if (!fileName.matches("users-\\d+\\..*")) return 0;
+        return Long.parseLong(fileName.substring("users-".length(), fileName.indexOf('.')));
+    }
+
+    // Size and checksum match the manifest, so the file was written completely and has not been damaged
+    boolean verify(Generation generation) {
+        Path file = path(generation);
+        try {
+            return Files.size(file) == generation.size && checksum(file) == generation.checksum;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the content through a temp file, fsync and rename, then fsyncs the directory
+     * so the rename itself survives a crash.
+     */
+    void replace(Path target, byte[] content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) channel.force(true);
+        }
+        move(temp, target);
+    }
+
+    // Atomic rename followed by a directory fsync
+    void move(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (fsync) {
+            fsyncDirectory(target.getParent());
+        }
+    }
+
+    void fsync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    // Not supported on every platform (e.g. Windows); the rename is still atomic there
+    static void fsyncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UncheckedIOException e) {
+            // best effort
+        }
+    }
+
+    static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
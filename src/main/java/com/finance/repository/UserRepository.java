@@ -2,27 +2,29 @@ package com.finance.repository;
 
 import com.finance.model.User;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class UserRepository {
-    private Map<String, User> users;
-    private static UserRepository instance;
+    private final Map<String, User> users;
 
     private UserRepository() {
-        this.users = new HashMap<>();
+        this.users = new ConcurrentHashMap<>();
         // Add some test users
         users.put("user1", new User("user1", "password1"));
         users.put("user2", new User("user2", "password2"));
     }
 
+    // Initialized on first use; class loading makes it thread-safe
+    private static class Holder {
+        private static final UserRepository INSTANCE = new UserRepository();
+    }
+
     public static UserRepository getInstance() {
-        if (instance == null) {
-            instance = new UserRepository();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     public Optional<User> findByUsername(String username) {
-        return Optional.ofNullable(users.get(username));
+        return username == null ? Optional.empty() : Optional.ofNullable(users.get(username));
     }
 
     public boolean authenticate(String username, String password) {
@@ -46,4 +48,4 @@ public class UserRepository {
         users.put("user1", new User("user1", "password1"));
         users.put("user2", new User("user2", "password2"));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,360 @@
+package com.finance.server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.finance.model.Money;
+import com.finance.model.PeriodTotals;
+import com.finance.service.AuthService;
+import com.finance.service.FinanceService;
+import com.finance.service.Session;
+import com.finance.service.TransferRequest;
+import com.finance.service.TransferResult;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP/JSON front-end for FinanceService on the JDK's built-in server. Each request runs on its own
+ * virtual thread when the JVM has them (Java 21 on); older JVMs fall back to a fixed pool of
+ * {@code -Dfinance.server.threads} platform threads.
+ *
+ * <pre>
+ * POST   /api/sessions        {"username", "password"}            -> {"token"}
+ * DELETE /api/sessions
+ * POST   /api/income          {"category", "amount", "description"} -> {"balance"}
+ * POST   /api/expense         {"category", "amount", "description"} -> {"balance", "warning"}
+ * POST   /api/transfers       {"to", "amount", "idempotencyKey"}  -> {"status", "transferId", "reason"}
+ * POST   /api/transfers/batch {"transfers": [{"to", "amount", "idempotencyKey"}, ...]} -> [result, ...]
+ * GET    /api/statistics                                          -> WalletStatistics
+ * GET    /api/period?from=2024-01-01&amp;to=2024-01-31                -> totals of the period
+ * GET    /api/transactions?from=2024-01-01&amp;to=2024-01-31[&amp;offset=0&amp;limit=1000] -> transactions of the period
+ * </pre>
+ * Every call but opening a session carries {@code Authorization: Bearer <token>}. An
+ * {@code Idempotency-Key} header stands in for a single transfer's idempotencyKey. An expense that
+ * leaves the balance negative or low returns a "warning". Transactions are returned a page at a time,
+ * at most {@code -Dfinance.server.pageSize} of them; a shorter page is the last one. Errors are
+ * {@code {"error": "..."}} with a 4xx status; unexpected failures are logged to the
+ * {@code com.finance.server.FinanceServer} java.util.logging logger.
+ */
+public class FinanceServer {
+    private static final int FALLBACK_THREADS = Integer.getInteger("finance.server.threads", 64);
+    private static final int BACKLOG = Integer.getInteger("finance.server.backlog", 1024);
+    private static final int PAGE_SIZE = Integer.getInteger("finance.server.pageSize", 1000);
+    private static final Logger LOG = Logger.getLogger(FinanceServer.class.getName());
+
+    private final AuthService authService;
+    private final FinanceService financeService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final Map<String, Route> routes = new HashMap<>();
+
+    @FunctionalInterface
+    private interface Route {
+        Object handle(HttpExchange exchange) throws IOException;
+    }
+
+    /** Failure reported to the client with the given status. */
+    private static class HttpError extends RuntimeException {
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public FinanceServer(AuthService authService, FinanceService financeService, InetSocketAddress address)
+            throws IOException {
+        this.authService = authService;
+        this.financeService = financeService;
+        this.server = HttpServer.create(address, BACKLOG);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtualThreads ? virtual : newFallbackExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/", this::dispatch);
+
+        routes.put("POST /api/sessions", this::openSession);
+        routes.put("DELETE /api/sessions", this::closeSession);
+        routes.put("POST /api/income", exchange -> addTransaction(exchange, true));
+        routes.put("POST /api/expense", exchange -> addTransaction(exchange, false));
+        routes.put("POST /api/transfers", this::transfer);
+        routes.put("POST /api/transfers/batch", this::transferBatch);
+        routes.put("GET /api/statistics", exchange -> financeService.getStatistics(session(exchange)));
+        routes.put("GET /api/period", this::period);
+        routes.put("GET /api/transactions", this::transactions);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Stops accepting requests and waits up to the given number of seconds for running ones
+    public void stop(int seconds) {
+        server.stop(seconds);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(seconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() is looked up at run time, so the build still targets Java 11
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newFallbackExecutor() {
+        AtomicInteger number = new AtomicInteger();
+        return Executors.newFixedThreadPool(FALLBACK_THREADS, task -> {
+            Thread thread = new Thread(task, "finance-http-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        try {
+            Route route = routes.get(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+            int status = 200;
+            Object body;
+            try {
+                if (route == null) {
+                    throw new HttpError(404, "No such endpoint: " + exchange.getRequestMethod() + " "
+                            + exchange.getRequestURI().getPath());
+                }
+                body = route.handle(exchange);
+                if (body instanceof TransferResult) {
+                    status = statusOf((TransferResult) body);
+                }
+            } catch (HttpError e) {
+                status = e.status;
+                body = error(e.getMessage());
+            } catch (JsonProcessingException e) {
+                status = 400;
+                body = error("Malformed JSON: " + e.getOriginalMessage());
+            } catch (RuntimeException e) {
+                LOG.log(Level.SEVERE, "Error handling " + exchange.getRequestURI(), e);
+                status = 500;
+                body = error("Internal error");
+            }
+            byte[] json = body == null ? new byte[0] : objectMapper.writeValueAsBytes(body);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, json.length == 0 ? -1 : json.length);
+            if (json.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(json);
+                }
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Object openSession(HttpExchange exchange) throws IOException {
+        JsonNode request = body(exchange);
+        Optional<Session> session = authService.openSession(text(request, "username"), text(request, "password"));
+        if (session.isEmpty()) {
+            throw new HttpError(401, "Wrong username or password");
+        }
+        return object().put("token", session.get().getToken());
+    }
+
+    private Object closeSession(HttpExchange exchange) {
+        authService.closeSession(session(exchange));
+        return null;
+    }
+
+    private Object addTransaction(HttpExchange exchange, boolean income) throws IOException {
+        Session session = session(exchange);
+        JsonNode request = body(exchange);
+        String category = text(request, "category");
+        double amount = amount(request);
+        String description = Objects.requireNonNullElse(text(request, "description"), "");
+        boolean added = income ? financeService.addIncome(session, category, amount, description)
+                : financeService.addExpense(session, category, amount, description);
+        if (!added) {
+            throw new HttpError(400, "Category and a positive amount are required");
+        }
+        ObjectNode response = object().put("balance", financeService.getBalance(session));
+        String warning = income ? null : financeService.getBalanceWarning(session);
+        if (warning != null) {
+            response.put("warning", warning);
+        }
+        return response;
+    }
+
+    private Object transfer(HttpExchange exchange) throws IOException {
+        Session session = session(exchange);
+        JsonNode request = body(exchange);
+        String key = text(request, "idempotencyKey");
+        if (key == null) {
+            key = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        }
+        return financeService.transfer(session, text(request, "to"), amount(request),
+                text(request, "description"), key);
+    }
+
+    private Object transferBatch(HttpExchange exchange) throws IOException {
+        Session session = session(exchange);
+        JsonNode transfers = body(exchange).path("transfers");
+        if (!transfers.isArray()) {
+            throw new HttpError(400, "Expected a \"transfers\" array");
+        }
+        List<TransferRequest> requests = new ArrayList<>(transfers.size());
+        String from = session.getUser().getUsername();
+        for (JsonNode transfer : transfers) {
+            requests.add(new TransferRequest(from, text(transfer, "to"), Money.ofDouble(amount(transfer)),
+                    text(transfer, "idempotencyKey")));
+        }
+        return financeService.transferBatch(session, requests);
+    }
+
+    private Object period(HttpExchange exchange) {
+        LocalDate[] range = range(exchange);
+        PeriodTotals totals = financeService.getTotalsForPeriod(session(exchange), range[0], range[1]);
+        return object()
+                .put("income", totals.getIncome())
+                .put("expenses", totals.getExpenses())
+                .put("balance", totals.getBalance())
+                .put("count", totals.getCount());
+    }
+
+    private Object transactions(HttpExchange exchange) {
+        LocalDate[] range = range(exchange);
+        Map<String, String> query = query(exchange);
+        int offset = intParameter(query, "offset", 0, 0, Integer.MAX_VALUE);
+        int limit = intParameter(query, "limit", PAGE_SIZE, 1, PAGE_SIZE);
+        return financeService.getTransactionsByPeriod(session(exchange), range[0], range[1], offset, limit);
+    }
+
+    private static int statusOf(TransferResult result) {
+        switch (result.getStatus()) {
+            case POSTED:
+                return 201;
+            case DUPLICATE:
+                return 200;
+            default:
+                return 422;
+        }
+    }
+
+    private Session session(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) {
+            throw new HttpError(401, "Missing bearer token");
+        }
+        return authService.findSession(authorization.substring("Bearer ".length()).trim())
+                .orElseThrow(() -> new HttpError(401, "Unknown or closed session"));
+    }
+
+    private JsonNode body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            JsonNode body = objectMapper.readTree(in);
+            if (body == null || !body.isObject()) {
+                throw new HttpError(400, "Expected a JSON object");
+            }
+            return body;
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static double amount(JsonNode node) {
+        JsonNode value = node.get("amount");
+        if (value == null || !value.isNumber()) {
+            throw new HttpError(400, "\"amount\" must be a number");
+        }
+        if (!Money.isValid(value.asDouble())) {
+            throw new HttpError(400, "\"amount\" is out of range");
+        }
+        return value.asDouble();
+    }
+
+    // [from, to] of the query, both inclusive
+    private static LocalDate[] range(HttpExchange exchange) {
+        Map<String, String> query = query(exchange);
+        if (!query.containsKey("from") || !query.containsKey("to")) {
+            throw new HttpError(400, "Query parameters \"from\" and \"to\" are required");
+        }
+        try {
+            return new LocalDate[] {LocalDate.parse(query.get("from")), LocalDate.parse(query.get("to"))};
+        } catch (DateTimeParseException e) {
+            throw new HttpError(400, "Dates must be yyyy-MM-dd: " + e.getParsedString());
+        }
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue, int min, int max) {
+        String value = query.get(name);
+        if (value == null) return defaultValue;
+        try {
+            int parsed = Integer.parseInt(value);
+            if (parsed >= min && parsed <= max) return parsed;
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new HttpError(400, "\"" + name + "\" must be an integer from " + min + " to " + max);
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private ObjectNode object() {
+        return objectMapper.createObjectNode();
+    }
+
+    private ObjectNode error(String message) {
+        return object().put("error", message);
+    }
+}
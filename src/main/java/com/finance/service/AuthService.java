@@ -1,20 +1,65 @@
 package com.finance.service;
 
+import com.finance.metrics.Counter;
+import com.finance.metrics.LatencyHistogram;
+import com.finance.metrics.MetricsRegistry;
 import com.finance.model.User;
+import com.finance.model.Wallet;
 import com.finance.repository.UserRepository;
 import com.finance.repository.DataStorage;
+import com.finance.repository.RecoveryReport;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class AuthService {
+    private static final LatencyHistogram LOGIN_TIME = MetricsRegistry.global().histogram("auth.login");
+    private static final Counter LOGIN_FAILURES = MetricsRegistry.global().counter("auth.loginFailures");
+    private static final Counter SESSIONS_EXPIRED = MetricsRegistry.global().counter("auth.sessionsExpired");
+    // Sessions unused for this long are closed; 0 keeps them until logout
+    private static final long SESSION_IDLE_TIMEOUT_MILLIS = Long.getLong("finance.session.idleTimeoutMs", 30 * 60_000L);
+
     private UserRepository userRepository;
     private DataStorage dataStorage;
-    private User currentUser;
+    // Open sessions by token
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    // Session of the interactive CLI user; it belongs to the local console, so it never expires
+    private volatile Session currentSession;
+    private volatile long sessionIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(SESSION_IDLE_TIMEOUT_MILLIS);
+    // System.nanoTime() after which the next login sweeps out idle sessions
+    private volatile long nextSweep = System.nanoTime();
 
     public AuthService(UserRepository userRepository) {
+        this(userRepository, new DataStorage());
+    }
+
+    public AuthService(UserRepository userRepository, DataStorage dataStorage) {
         this.userRepository = userRepository;
-        this.dataStorage = new DataStorage();
+        this.dataStorage = dataStorage;
         loadUsersFromStorage();
+        registerGauges();
+    }
+
+    // Users, sessions and loaded wallets of the most recently created AuthService
+    private void registerGauges() {
+        MetricsRegistry metrics = MetricsRegistry.global();
+        metrics.gauge("users", () -> userRepository.getAllUsers().size());
+        metrics.gauge("sessions.open", sessions::size);
+        metrics.gauge("wallets.loaded", () -> loadedWallets().count());
+        metrics.gauge("wallets.transactions", () -> loadedWallets()
+                .mapToLong(wallet -> wallet.getTransactions().size()).sum());
+        metrics.gauge("wallets.heapBytes", () -> loadedWallets().mapToLong(Wallet::estimateHeapBytes).sum());
+        metrics.gauge("wallets.heapBytesMax", () -> loadedWallets().mapToLong(Wallet::estimateHeapBytes)
+                .max().orElse(0));
+    }
+
+    // Wallets in memory; reading them must not load the others from storage
+    private Stream<Wallet> loadedWallets() {
+        return userRepository.getAllUsers().stream().map(User::peekWallet).filter(Objects::nonNull);
     }
 
     private void loadUsersFromStorage() {
@@ -24,37 +69,150 @@ public class AuthService {
                 userRepository.addUser(user);
             }
         }
+        dataStorage.replayJournal(userRepository);
+        for (User user : userRepository.getAllUsers()) {
+            dataStorage.attach(user);
+        }
     }
 
-    public boolean login(String username, String password) {
-        if (userRepository.authenticate(username, password)) {
-            currentUser = userRepository.findByUsername(username).get();
-            return true;
+    // What startup loaded and how long it took
+    public RecoveryReport getRecoveryReport() {
+        return dataStorage.getRecoveryReport();
+    }
+
+    public Optional<Session> openSession(String username, String password) {
+        long start = System.nanoTime();
+        try {
+            if (!userRepository.authenticate(username, password)) {
+                LOGIN_FAILURES.increment();
+                return Optional.empty();
+            }
+            expireIdleSessions();
+            User user = userRepository.findByUsername(username).get();
+            // Wallets are loaded lazily; load it now rather than on the first operation
+            user.getWallet();
+            Session session = new Session(user);
+            sessions.put(session.getToken(), session);
+            return Optional.of(session);
+        } finally {
+            LOGIN_TIME.recordSince(start);
         }
-        return false;
+    }
+
+    // Finding a session counts as activity; an idle one is closed instead
+    public Optional<Session> findSession(String token) {
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null) return Optional.empty();
+        if (isIdle(session)) {
+            expire(session);
+            return Optional.empty();
+        }
+        session.touch();
+        return Optional.of(session);
+    }
+
+    // Disabling with 0 keeps sessions until logout
+    public void setSessionIdleTimeoutMillis(long millis) {
+        sessionIdleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        nextSweep = System.nanoTime();
+    }
+
+    // Closes the sessions idle for longer than the timeout, at most once per timeout, so unused tokens do not pile up
+    private void expireIdleSessions() {
+        long timeout = sessionIdleTimeoutNanos;
+        long now = System.nanoTime();
+        if (timeout <= 0 || now - nextSweep < 0) return;
+        nextSweep = now + timeout;
+        for (Session session : sessions.values()) {
+            if (isIdle(session)) {
+                expire(session);
+            }
+        }
+    }
+
+    private boolean isIdle(Session session) {
+        long timeout = sessionIdleTimeoutNanos;
+        return timeout > 0 && session != currentSession && session.getIdleNanos() > timeout;
+    }
+
+    private void expire(Session session) {
+        if (sessions.remove(session.getToken(), session)) {
+            SESSIONS_EXPIRED.increment();
+            session.close();
+            dataStorage.saveChanges(userRepository::getAllUsers);
+        }
+    }
+
+    public void closeSession(Session session) {
+        if (session == null || sessions.remove(session.getToken()) == null) return;
+        session.close();
+        dataStorage.saveChanges(userRepository::getAllUsers);
+    }
+
+    public int getOpenSessionCount() {
+        return sessions.size();
+    }
+
+    public boolean login(String username, String password) {
+        Optional<Session> session = openSession(username, password);
+        session.ifPresent(s -> currentSession = s);
+        return session.isPresent();
     }
 
     public void logout() {
-        saveCurrentUserData();
-        currentUser = null;
+        Session session = currentSession;
+        currentSession = null;
+        if (session != null) {
+            closeSession(session);
+        }
+    }
+
+    public Session getCurrentSession() {
+        return currentSession;
     }
 
     public User getCurrentUser() {
-        return currentUser;
+        Session session = currentSession;
+        return session != null ? session.getUser() : null;
+    }
+
+    public UserRepository getUserRepository() {
+        return userRepository;
     }
 
     public boolean isLoggedIn() {
-        return currentUser != null;
+        return currentSession != null;
     }
 
     public void saveCurrentUserData() {
-        if (currentUser != null) {
-            dataStorage.saveUsers(userRepository.getAllUsers());
+        if (currentSession != null) {
+            dataStorage.saveChanges(userRepository::getAllUsers);
         }
     }
 
-    // For testing
-    public void setCurrentUser(User user) {
-        this.currentUser = user;
+    // Writes a full snapshot regardless of storage mode
+    public void saveSnapshot() {
+        dataStorage.saveUsers(userRepository.getAllUsers());
+    }
+
+    // Persists pending changes and releases the storage; called once on exit
+    public void close() {
+        dataStorage.close();
+    }
+
+    public DataStorage getDataStorage() {
+        return dataStorage;
+    }
+
+    // For testing: opens a session for the user without checking credentials
+    public Session setCurrentUser(User user) {
+        if (user == null) {
+            currentSession = null;
+            return null;
+        }
+        Session session = new Session(user);
+        sessions.put(session.getToken(), session);
+        this.currentSession = session;
+        return session;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.finance.service;
+
+import com.finance.model.Money;
+
+/**
+ * A budget whose spending reached 80% of the limit ({@link Level#WARNING}) or went over it ({@link Level#EXCEEDED}).
+ */
+public class BudgetAlert {
+    public enum Level {
+        NONE, WARNING, EXCEEDED;
+
+        public static Level of(long spent, long limit) {
+            if (spent > limit) return EXCEEDED;
+            if (spent * 5 >= limit * 4) return WARNING; // 80% лимита
+            return NONE;
+        }
+    }
+
+    private final String username;
+    private final String category;
+    private final Level level;
+    private final long spent;
+    private final long limit;
+
+    public BudgetAlert(String username, String category, Level level, long spent, long limit) {
+        this.username = username;
+        this.category = category;
+        this.level = level;
+        this.spent = spent;
+        this.limit = limit;
+    }
+
+    public String getUsername() { return username; }
+    public String getCategory() { return category; }
+    public Level getLevel() { return level; }
+    public long getSpentMinor() { return spent; }
+    public long getLimitMinor() { return limit; }
+
+    public String getMessage() {
+        long remaining = limit - spent;
+        if (level == Level.EXCEEDED) {
+            return "⚠️ Превышен бюджет для категории '" + category + "': потрачено "
+                + Money.format(spent) + " из " + Money.format(limit)
+                + " (превышение: " + Money.format(-remaining) + ")";
+        }
+        return "⚠️ Близко к превышению бюджета для '" + category + "': потрачено "
+            + Money.format(spent) + " из " + Money.format(limit)
+            + " (осталось: " + Money.format(remaining) + ")";
+    }
+
+    @Override
+    public String toString() {
+        return getMessage();
+    }
+}
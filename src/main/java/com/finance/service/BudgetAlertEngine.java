@@ -0,0 +1,74 @@
+package com.finance.service;
+
+import com.finance.model.Budget;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Notifies subscribers when a budget crosses 80% or 100% of its limit.
+ * Each change costs O(1): the wallet keeps per-category spend, and the engine remembers the last level
+ * per budget, so an alert fires once per crossing instead of on every later expense.
+ * Raising a limit lowers the remembered level silently, so the next crossing fires again.
+ * Listeners are called on the thread that made the change, under a lock of the budget: alerts of
+ * one budget are delivered in the order its levels were decided (WARNING before EXCEEDED), even
+ * when concurrent expenses cross them, while alerts of different budgets do not wait for each other.
+ */
+public class BudgetAlertEngine {
+    // Last level of one budget, null while the category has no budget; its monitor orders the alerts
+    private static final class BudgetState {
+        BudgetAlert.Level level;
+    }
+
+    private final List<BudgetAlertListener> listeners = new CopyOnWriteArrayList<>();
+    // Per username, then category
+    private final Map<String, Map<String, BudgetState>> budgets = new ConcurrentHashMap<>();
+
+    public void subscribe(BudgetAlertListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(BudgetAlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Called after an expense in the category was added to the user's wallet
+    public void onExpense(User user, String category) {
+        evaluate(user, category);
+    }
+
+    // Called after the budget of the category was set or changed
+    public void onBudgetChanged(User user, String category) {
+        evaluate(user, category);
+    }
+
+    private void evaluate(User user, String category) {
+        Wallet wallet = user.getWallet();
+        BudgetState state = budgets.computeIfAbsent(user.getUsername(), u -> new ConcurrentHashMap<>())
+                .computeIfAbsent(category, c -> new BudgetState());
+        // The spend is read and the alert delivered under the budget's lock: its levels are decided
+        // and reported in order, so concurrent expenses report a crossing only once
+        synchronized (state) {
+            Optional<Budget> budget = wallet.getBudgetForCategory(category);
+            if (budget.isEmpty()) {
+                state.level = null;
+                return;
+            }
+            long spent = wallet.getExpensesMinorForCategory(category);
+            long limit = budget.get().getLimitMinor();
+            BudgetAlert.Level level = BudgetAlert.Level.of(spent, limit);
+            BudgetAlert.Level last = state.level;
+            state.level = level;
+            if (last == null ? level != BudgetAlert.Level.NONE : level.compareTo(last) > 0) {
+                BudgetAlert alert = new BudgetAlert(user.getUsername(), category, level, spent, limit);
+                for (BudgetAlertListener listener : listeners) {
+                    listener.onBudgetAlert(alert);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.finance.service;
+
+/**
+ * Receives budget alerts on the thread whose change caused them. Alerts of one budget arrive one at
+ * a time and in order, so a listener should return quickly: a slow one delays further changes to that budget.
+ */
+public interface BudgetAlertListener {
+    void onBudgetAlert(BudgetAlert alert);
+}
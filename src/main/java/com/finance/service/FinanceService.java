@@ -1,183 +1,441 @@
 package com.finance.service;
 
+import com.finance.importer.ImportResult;
+import com.finance.importer.StatementReader;
+import com.finance.importer.TransactionImporter;
+import com.finance.metrics.LatencyHistogram;
+import com.finance.metrics.MetricsRegistry;
 import com.finance.model.*;
+import com.finance.repository.UserRepository;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
+/**
+ * Finance operations. Every operation takes the {@link Session} it runs for; the overloads
+ * without a session act on the AuthService's current (CLI) session.
+ */
 public class FinanceService {
+    private static final CategoryDictionary CATEGORIES = CategoryDictionary.global();
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final LatencyHistogram ADD_INCOME_TIME = METRICS.histogram("finance.addIncome");
+    private static final LatencyHistogram ADD_EXPENSE_TIME = METRICS.histogram("finance.addExpense");
+    private static final LatencyHistogram SET_BUDGET_TIME = METRICS.histogram("finance.setBudget");
+    private static final LatencyHistogram TRANSFER_TIME = METRICS.histogram("finance.transfer");
+    private static final LatencyHistogram TRANSFER_BATCH_TIME = METRICS.histogram("finance.transferBatch");
+    private static final LatencyHistogram IMPORT_TIME = METRICS.histogram("finance.importStatement");
+    private static final LatencyHistogram STATISTICS_TIME = METRICS.histogram("finance.getStatistics");
+    private static final LatencyHistogram PERIOD_TRANSACTIONS_TIME = METRICS.histogram("finance.getTransactionsByPeriod");
+    private static final LatencyHistogram PERIOD_TOTALS_TIME = METRICS.histogram("finance.getTotalsForPeriod");
+    private static final LatencyHistogram REPORT_TIME = METRICS.histogram("finance.getReport");
+    private static final LatencyHistogram BALANCE_TIME = METRICS.histogram("finance.getBalance");
+    private static final LatencyHistogram TOTAL_INCOME_TIME = METRICS.histogram("finance.getTotalIncome");
+    private static final LatencyHistogram TOTAL_EXPENSES_TIME = METRICS.histogram("finance.getTotalExpenses");
+    private static final LatencyHistogram INCOME_BY_CATEGORY_TIME = METRICS.histogram("finance.getIncomeByCategory");
+    private static final LatencyHistogram EXPENSES_BY_CATEGORY_TIME = METRICS.histogram("finance.getExpensesByCategory");
+    private static final LatencyHistogram CATEGORY_EXPENSES_TIME = METRICS.histogram("finance.getExpensesForCategories");
+    private static final LatencyHistogram BUDGETS_TIME = METRICS.histogram("finance.getBudgets");
+    private static final LatencyHistogram BUDGET_ALERTS_TIME = METRICS.histogram("finance.getBudgetAlerts");
+
+    private static final long LOW_BALANCE_MINOR = 1000 * Money.MINOR_PER_UNIT;
+
     private AuthService authService;
+    private UserRepository userRepository;
+    private final BudgetAlertEngine budgetAlertEngine = new BudgetAlertEngine();
+    private final Ledger ledger;
 
     public FinanceService(AuthService authService) {
         this.authService = authService;
+        this.userRepository = authService.getUserRepository();
+        this.ledger = new Ledger(userRepository, authService.getDataStorage(), budgetAlertEngine);
+    }
+
+    // Subscribe here to be notified when a budget crosses 80% or 100% of its limit
+    public BudgetAlertEngine getBudgetAlertEngine() {
+        return budgetAlertEngine;
     }
 
     public boolean addIncome(String category, double amount, String description) {
-        // Добавляем проверку на null и пустую категорию
-        if (!authService.isLoggedIn() || amount <= 0 || category == null || category.trim().isEmpty()) {
-            return false;
-        }
-        
-        User user = authService.getCurrentUser();
-        Transaction transaction = new Transaction(
-            Transaction.Type.INCOME, category.trim(), amount, description, user.getUsername()
-        );
-        user.getWallet().addTransaction(transaction);
-        return true;
+        return addIncome(currentSession(), category, amount, description);
+    }
+
+    public boolean addIncome(Session session, String category, double amount, String description) {
+        long startNanos = System.nanoTime();
+        try {
+            // Добавляем проверку на null и пустую категорию; сумма должна быть не меньше 0.01
+            if (!isActive(session) || !Money.isValid(amount) || Money.ofDouble(amount) <= 0
+                    || category == null || category.isBlank()) {
+                return false;
+            }
+
+            User user = session.getUser();
+            Transaction transaction = new Transaction(
+                Transaction.Type.INCOME, CATEGORIES.canonical(category.trim()), amount, description, user.getUsername()
+            );
+            user.getWallet().addTransaction(transaction);
+            return true;
+        } finally {
+            ADD_INCOME_TIME.recordSince(startNanos);
+        }
     }
 
     public boolean addExpense(String category, double amount, String description) {
-        // Добавляем проверку на null и пустую категорию
-        if (!authService.isLoggedIn() || amount <= 0 || category == null || category.trim().isEmpty()) {
-            return false;
-        }
-        
-        User user = authService.getCurrentUser();
-        Transaction transaction = new Transaction(
-            Transaction.Type.EXPENSE, category.trim(), amount, description, user.getUsername()
-        );
-        user.getWallet().addTransaction(transaction);
-        
-        // Check budget alert
-        checkBudgetAlert(category);
-        checkOverallBudgetAlert();
-        
-        return true;
+        return addExpense(currentSession(), category, amount, description);
+    }
+
+    public boolean addExpense(Session session, String category, double amount, String description) {
+        long startNanos = System.nanoTime();
+        try {
+            // Добавляем проверку на null и пустую категорию; сумма должна быть не меньше 0.01
+            if (!isActive(session) || !Money.isValid(amount) || Money.ofDouble(amount) <= 0
+                    || category == null || category.isBlank()) {
+                return false;
+            }
+
+            User user = session.getUser();
+            Transaction transaction = new Transaction(
+                Transaction.Type.EXPENSE, CATEGORIES.canonical(category.trim()), amount, description, user.getUsername()
+            );
+            user.getWallet().addTransaction(transaction);
+
+            // Check budget alert; the balance warning is left to the caller, see getBalanceWarning
+            budgetAlertEngine.onExpense(user, transaction.getCategory());
+
+            return true;
+        } finally {
+            ADD_EXPENSE_TIME.recordSince(startNanos);
+        }
     }
 
     public boolean setBudget(String category, double limit) {
-        // Также добавляем проверку для setBudget для консистентности
-        if (!authService.isLoggedIn() || limit <= 0 || category == null || category.trim().isEmpty()) {
-            return false;
-        }
-        
-        User user = authService.getCurrentUser();
-        Budget budget = new Budget(category.trim(), limit, user.getUsername());
-        user.getWallet().addBudget(budget);
-        return true;
+        return setBudget(currentSession(), category, limit);
+    }
+
+    public boolean setBudget(Session session, String category, double limit) {
+        long startNanos = System.nanoTime();
+        try {
+            // Также добавляем проверку для setBudget для консистентности
+            if (!isActive(session) || !Money.isValid(limit) || Money.ofDouble(limit) <= 0
+                    || category == null || category.isBlank()) {
+                return false;
+            }
+
+            User user = session.getUser();
+            Budget budget = new Budget(category.trim(), limit, user.getUsername());
+            user.getWallet().addBudget(budget);
+            budgetAlertEngine.onBudgetChanged(user, budget.getCategory());
+            return true;
+        } finally {
+            SET_BUDGET_TIME.recordSince(startNanos);
+        }
     }
 
     public boolean transfer(String toUsername, double amount, String description) {
-        if (!authService.isLoggedIn() || amount <= 0) return false;
-        
-        User fromUser = authService.getCurrentUser();
-        Optional<User> toUser = userRepository.findByUsername(toUsername);
-        
-        if (toUser.isEmpty()) return false;
-        
-        // Создаем расход у отправителя
-        Transaction expense = new Transaction(Transaction.Type.EXPENSE, "Перевод", amount, 
-                                            "Перевод пользователю " + toUsername, fromUser.getUsername());
-        fromUser.getWallet().addTransaction(expense);
-        
-        // Создаем доход у получателя  
-        Transaction income = new Transaction(Transaction.Type.INCOME, "Перевод", amount,
-                                        "Перевод от пользователя " + fromUser.getUsername(), toUsername);
-        toUser.get().getWallet().addTransaction(income);
-        
-        return true;
+        return transfer(currentSession(), toUsername, amount, description);
+    }
+
+    public boolean transfer(Session session, String toUsername, double amount, String description) {
+        return transfer(session, toUsername, amount, description, null).isApplied();
+    }
+
+    /**
+     * Posts a transfer through the {@link Ledger}. A retry with the same idempotency key is not
+     * posted again and returns the transfer id of the first attempt; the key may be null.
+     */
+    public TransferResult transfer(Session session, String toUsername, double amount, String description,
+                                   String idempotencyKey) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return TransferResult.rejected("No active session");
+            if (!Money.isValid(amount)) return TransferResult.rejected("Amount out of range: " + amount);
+
+            return ledger.transfer(new TransferRequest(session.getUser().getUsername(), toUsername,
+                    Money.ofDouble(amount), idempotencyKey));
+        } finally {
+            TRANSFER_TIME.recordSince(startNanos);
+        }
+    }
+
+    // Transfers from the session's user, posted all together or not at all, see Ledger#transferBatch
+    public List<TransferResult> transferBatch(Session session, List<TransferRequest> requests) {
+        long startNanos = System.nanoTime();
+        try {
+            List<TransferResult> rejected = new ArrayList<>(requests.size());
+            String username = isActive(session) ? session.getUser().getUsername() : null;
+            boolean valid = username != null;
+            for (TransferRequest request : requests) {
+                boolean own = username != null && request != null && username.equals(request.getFromUsername());
+                rejected.add(TransferResult.rejected(username == null ? "No active session"
+                        : own ? "Batch rejected" : "Transfer is not from " + username));
+                valid &= own;
+            }
+            return valid ? ledger.transferBatch(requests) : rejected;
+        } finally {
+            TRANSFER_BATCH_TIME.recordSince(startNanos);
+        }
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    public ImportResult importStatement(StatementReader reader) throws IOException {
+        return importStatement(currentSession(), reader);
+    }
+
+    /**
+     * Imports a bank statement in batches. Budget alerts are checked once per touched category
+     * after the last batch rather than for every row.
+     */
+    public ImportResult importStatement(Session session, StatementReader reader) throws IOException {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) {
+                return new ImportResult(0, 0, 0, new ArrayList<>(), new HashSet<>(), 0);
+            }
+            User user = session.getUser();
+            ImportResult result = new TransactionImporter().importInto(user.getWallet(), user.getUsername(), reader);
+            for (String category : result.getExpenseCategories()) {
+                budgetAlertEngine.onExpense(user, category);
+            }
+            return result;
+        } finally {
+            IMPORT_TIME.recordSince(startNanos);
+        }
     }
 
     public double getBalance() {
-        return authService.isLoggedIn() ? 
-            authService.getCurrentUser().getWallet().getBalance() : 0;
+        return getBalance(currentSession());
+    }
+
+    public double getBalance(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            return isActive(session) ?
+                session.getUser().getWallet().getBalance() : 0;
+        } finally {
+            BALANCE_TIME.recordSince(startNanos);
+        }
     }
 
     public double getTotalIncome() {
-        return authService.isLoggedIn() ? 
-            authService.getCurrentUser().getWallet().getTotalIncome() : 0;
+        return getTotalIncome(currentSession());
+    }
+
+    public double getTotalIncome(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            return isActive(session) ?
+                session.getUser().getWallet().getTotalIncome() : 0;
+        } finally {
+            TOTAL_INCOME_TIME.recordSince(startNanos);
+        }
     }
 
     public double getTotalExpenses() {
-        return authService.isLoggedIn() ? 
-            authService.getCurrentUser().getWallet().getTotalExpenses() : 0;
+        return getTotalExpenses(currentSession());
+    }
+
+    public double getTotalExpenses(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            return isActive(session) ?
+                session.getUser().getWallet().getTotalExpenses() : 0;
+        } finally {
+            TOTAL_EXPENSES_TIME.recordSince(startNanos);
+        }
+    }
+
+    public WalletStatistics getStatistics() {
+        return getStatistics(currentSession());
+    }
+
+    // Balance, totals, per-category sums and budget usage as one consistent snapshot
+    public WalletStatistics getStatistics(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            return isActive(session) ?
+                session.getUser().getWallet().getStatistics() : WalletStatistics.EMPTY;
+        } finally {
+            STATISTICS_TIME.recordSince(startNanos);
+        }
     }
 
     public Map<String, Double> getIncomeByCategory() {
-        if (!authService.isLoggedIn()) return new HashMap<>();
-        
-        return authService.getCurrentUser().getWallet().getTransactions().stream()
-            .filter(t -> t.getType() == Transaction.Type.INCOME)
-            .collect(Collectors.groupingBy(
-                Transaction::getCategory,
-                Collectors.summingDouble(Transaction::getAmount)
-            ));
+        return getIncomeByCategory(currentSession());
+    }
+
+    public Map<String, Double> getIncomeByCategory(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return new HashMap<>();
+
+            return session.getUser().getWallet().getIncomeByCategory();
+        } finally {
+            INCOME_BY_CATEGORY_TIME.recordSince(startNanos);
+        }
     }
 
     public Map<String, Double> getExpensesByCategory() {
-        if (!authService.isLoggedIn()) return new HashMap<>();
-        
-        return authService.getCurrentUser().getWallet().getTransactions().stream()
-            .filter(t -> t.getType() == Transaction.Type.EXPENSE)
-            .collect(Collectors.groupingBy(
-                Transaction::getCategory,
-                Collectors.summingDouble(Transaction::getAmount)
-            ));
+        return getExpensesByCategory(currentSession());
+    }
+
+    public Map<String, Double> getExpensesByCategory(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return new HashMap<>();
+
+            return session.getUser().getWallet().getExpensesByCategory();
+        } finally {
+            EXPENSES_BY_CATEGORY_TIME.recordSince(startNanos);
+        }
     }
 
     public double getExpensesForCategories(List<String> categories) {
-        if (!authService.isLoggedIn()) return 0;
-        
-        return authService.getCurrentUser().getWallet().getTransactions().stream()
-            .filter(t -> t.getType() == Transaction.Type.EXPENSE)
-            .filter(t -> categories.contains(t.getCategory()))
-            .mapToDouble(Transaction::getAmount)
-            .sum();
+        return getExpensesForCategories(currentSession(), categories);
+    }
+
+    public double getExpensesForCategories(Session session, List<String> categories) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return 0;
+
+            Wallet wallet = session.getUser().getWallet();
+            long spent = 0;
+            for (String category : new HashSet<>(categories)) {
+                spent += wallet.getExpensesMinorForCategory(category);
+            }
+            return Money.toDouble(spent);
+        } finally {
+            CATEGORY_EXPENSES_TIME.recordSince(startNanos);
+        }
     }
 
     public List<String> getBudgetAlerts() {
-        List<String> alerts = new ArrayList<>();
-        if (!authService.isLoggedIn()) return alerts;
-        
-        User user = authService.getCurrentUser();
-        Wallet wallet = user.getWallet();
-        
-        for (Budget budget : wallet.getBudgets()) {
-            double spent = wallet.getExpensesForCategory(budget.getCategory());
-            double remaining = budget.getLimit() - spent;
-            
-            if (spent > budget.getLimit()) {
-                alerts.add(String.format(
-                    "⚠️ Превышен бюджет для категории '%s': потрачено %.2f из %.2f (превышение: %.2f)",
-                    budget.getCategory(), spent, budget.getLimit(), -remaining
-                ));
-            } else if (spent >= budget.getLimit() * 0.8) {
-                alerts.add(String.format(
-                    "⚠️ Близко к превышению бюджета для '%s': потрачено %.2f из %.2f (осталось: %.2f)",
-                    budget.getCategory(), spent, budget.getLimit(), remaining
-                ));
+        return getBudgetAlerts(currentSession());
+    }
+
+    public List<String> getBudgetAlerts(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            List<String> alerts = new ArrayList<>();
+            if (!isActive(session)) return alerts;
+
+            User user = session.getUser();
+            Wallet wallet = user.getWallet();
+
+            for (Budget budget : wallet.getBudgets()) {
+                long spent = wallet.getExpensesMinorForCategory(budget.getCategory());
+                long limit = budget.getLimitMinor();
+                BudgetAlert.Level level = BudgetAlert.Level.of(spent, limit);
+
+                if (level != BudgetAlert.Level.NONE) {
+                    alerts.add(new BudgetAlert(user.getUsername(), budget.getCategory(), level, spent, limit).getMessage());
+                }
             }
+
+            return alerts;
+        } finally {
+            BUDGET_ALERTS_TIME.recordSince(startNanos);
         }
-        
-        return alerts;
     }
 
-    private void checkBudgetAlert(String category) {
-        // Budget alerts are checked in getBudgetAlerts()
+    public String getBalanceWarning() {
+        return getBalanceWarning(currentSession());
     }
 
-    private void checkOverallBudgetAlert() {
-        double balance = getBalance();
+    /**
+     * Warning about a negative or low balance, or null. Callers show it after an expense: the console
+     * prints it, the HTTP API returns it in the response.
+     */
+    public String getBalanceWarning(Session session) {
+        if (!isActive(session)) return null;
+
+        long balance = session.getUser().getWallet().getBalanceMinor();
         if (balance < 0) {
-            System.out.println("🚨 Внимание: отрицательный баланс! Расходы превысили доходы.");
-        } else if (balance < 1000) {
-            System.out.println("💡 Предупреждение: низкий баланс (" + balance + ")");
+            return "🚨 Внимание: отрицательный баланс! Расходы превысили доходы.";
+        } else if (balance < LOW_BALANCE_MINOR) {
+            return "💡 Предупреждение: низкий баланс (" + Money.format(balance) + ")";
         }
+        return null;
     }
 
     public List<Transaction> getTransactionsByPeriod(LocalDate start, LocalDate end) {
-        if (!authService.isLoggedIn()) return new ArrayList<>();
-        
-        return authService.getCurrentUser().getWallet().getTransactions().stream()
-            .filter(t -> !t.getDate().toLocalDate().isBefore(start) && 
-                        !t.getDate().toLocalDate().isAfter(end))
-            .collect(Collectors.toList());
+        return getTransactionsByPeriod(currentSession(), start, end);
+    }
+
+    public List<Transaction> getTransactionsByPeriod(Session session, LocalDate start, LocalDate end) {
+        return getTransactionsByPeriod(session, start, end, 0, Integer.MAX_VALUE);
+    }
+
+    // One page of the period's transactions in date order: at most limit of them, after skipping offset
+    public List<Transaction> getTransactionsByPeriod(Session session, LocalDate start, LocalDate end,
+                                                     int offset, int limit) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return new ArrayList<>();
+
+            return session.getUser().getWallet().getTransactionsBetween(start, end, offset, limit);
+        } finally {
+            PERIOD_TRANSACTIONS_TIME.recordSince(startNanos);
+        }
+    }
+
+    public PeriodTotals getTotalsForPeriod(LocalDate start, LocalDate end) {
+        return getTotalsForPeriod(currentSession(), start, end);
+    }
+
+    public PeriodTotals getTotalsForPeriod(Session session, LocalDate start, LocalDate end) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return new PeriodTotals(0, 0, 0);
+
+            return session.getUser().getWallet().getTotalsForPeriod(start, end);
+        } finally {
+            PERIOD_TOTALS_TIME.recordSince(startNanos);
+        }
+    }
+
+    public AggregateReport getReport(LocalDate start, LocalDate end, Collection<String> categories) {
+        return getReport(currentSession(), start, end, categories);
+    }
+
+    // Per-category and per-month totals for [start, end] and the categories (null for no bound / all categories)
+    public AggregateReport getReport(Session session, LocalDate start, LocalDate end, Collection<String> categories) {
+        long startNanos = System.nanoTime();
+        try {
+            if (!isActive(session)) return AggregateReport.EMPTY;
+
+            return session.getUser().getWallet().aggregate(start, end, categories);
+        } finally {
+            REPORT_TIME.recordSince(startNanos);
+        }
     }
 
     public List<Budget> getBudgets() {
-        return authService.isLoggedIn() ? 
-            authService.getCurrentUser().getWallet().getBudgets() : 
-            new ArrayList<>();
+        return getBudgets(currentSession());
+    }
+
+    public List<Budget> getBudgets(Session session) {
+        long startNanos = System.nanoTime();
+        try {
+            return isActive(session) ?
+                session.getUser().getWallet().getBudgets() :
+                new ArrayList<>();
+        } finally {
+            BUDGETS_TIME.recordSince(startNanos);
+        }
+    }
+
+    private Session currentSession() {
+        return authService.getCurrentSession();
+    }
+
+    // An operation counts as activity, so it keeps the session from expiring
+    private static boolean isActive(Session session) {
+        if (session == null || !session.isOpen()) return false;
+        session.touch();
+        return true;
     }
-}
\ No newline at end of file
+}
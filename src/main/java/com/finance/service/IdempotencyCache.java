@@ -0,0 +1,50 @@
+package com.finance.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Transfers posted under an idempotency key, keyed by sender and key. Holds at most the given number
+ * of keys and forgets the least recently used first; a key forgotten or lost on restart is posted again.
+ */
+class IdempotencyCache {
+    static final class Entry {
+        final TransferRequest request;
+        final String transferId;
+
+        Entry(TransferRequest request, String transferId) {
+            this.request = request;
+            this.transferId = transferId;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    IdempotencyCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    static String key(TransferRequest request) {
+        return request.getFromUsername() + '\u0000' + request.getIdempotencyKey();
+    }
+
+    synchronized Entry get(String key) {
+        return entries.get(key);
+    }
+
+    synchronized void putAll(Map<String, Entry> posted) {
+        entries.putAll(posted);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,219 @@
+package com.finance.service;
+
+import com.finance.metrics.CacheMetric;
+import com.finance.metrics.Counter;
+import com.finance.metrics.MetricsRegistry;
+import com.finance.model.CategoryDictionary;
+import com.finance.model.Money;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Posts transfers as double-entry records: an expense leg for the sender and an income leg for the
+ * recipient, both carrying one transfer id. A batch is validated as a whole, then applied under the
+ * write locks of every wallet it touches, taken in username order, and journaled as one group, so
+ * it is either posted or rejected entirely. Requests with an idempotency key already posted by the
+ * same sender are answered from a bounded in-memory cache ({@code -Dfinance.ledger.idempotencyKeys})
+ * instead of being posted again.
+ */
+public class Ledger {
+    static final String TRANSFER_CATEGORY = CategoryDictionary.global().canonical("Перевод");
+    private static final int IDEMPOTENCY_KEYS = Integer.getInteger("finance.ledger.idempotencyKeys", 100_000);
+    private static final CacheMetric IDEMPOTENCY_METRIC = MetricsRegistry.global().cache("ledger.idempotencyKeys");
+    private static final Counter POSTED = MetricsRegistry.global().counter("ledger.transfersPosted");
+    private static final Counter REJECTED_BATCHES = MetricsRegistry.global().counter("ledger.batchesRejected");
+
+    private final UserRepository userRepository;
+    private final DataStorage dataStorage;
+    private final BudgetAlertEngine budgetAlertEngine;
+    private final IdempotencyCache idempotencyCache;
+    // Leg descriptions by counterparty, built once per user instead of once per transfer
+    private final Map<String, String> transferToDescriptions = new ConcurrentHashMap<>();
+    private final Map<String, String> transferFromDescriptions = new ConcurrentHashMap<>();
+
+    public Ledger(UserRepository userRepository, DataStorage dataStorage, BudgetAlertEngine budgetAlertEngine) {
+        this(userRepository, dataStorage, budgetAlertEngine, IDEMPOTENCY_KEYS);
+    }
+
+    Ledger(UserRepository userRepository, DataStorage dataStorage, BudgetAlertEngine budgetAlertEngine,
+           int idempotencyKeys) {
+        this.userRepository = userRepository;
+        this.dataStorage = dataStorage;
+        this.budgetAlertEngine = budgetAlertEngine;
+        this.idempotencyCache = new IdempotencyCache(idempotencyKeys);
+    }
+
+    public TransferResult transfer(TransferRequest request) {
+        return transferBatch(Collections.singletonList(request)).get(0);
+    }
+
+    /**
+     * Posts the transfers in one atomic step and returns their results in request order. If any
+     * transfer is invalid, nothing is posted: it is rejected with its reason, the others with
+     * "batch rejected". Repeated idempotency keys, within the batch or from earlier calls, are
+     * reported as duplicates of the first transfer and do not fail the batch.
+     */
+    public List<TransferResult> transferBatch(List<TransferRequest> requests) {
+        TransferResult[] results = new TransferResult[requests.size()];
+        // Users of the batch in username order, which is the locking order
+        TreeMap<String, User> users = new TreeMap<>();
+        boolean valid = true;
+        for (int i = 0; i < requests.size(); i++) {
+            String reason = resolve(requests.get(i), users);
+            if (reason != null) {
+                results[i] = TransferResult.rejected(reason);
+                valid = false;
+            }
+        }
+        if (!valid) return rejectBatch(results);
+        if (requests.isEmpty()) return new ArrayList<>();
+
+        List<Wallet> locked = lockInOrder(users.values());
+        Set<String> senders = new LinkedHashSet<>();
+        int postedCount = 0;
+        try {
+            // Keys are scoped to the sender, whose wallet is locked, so a retry racing the original waits for it
+            Map<String, IdempotencyCache.Entry> posted = new HashMap<>();
+            Map<String, List<Transaction>> legs = new LinkedHashMap<>();
+            for (int i = 0; i < requests.size(); i++) {
+                TransferRequest request = requests.get(i);
+                String key = request.getIdempotencyKey() == null ? null : IdempotencyCache.key(request);
+                if (key != null) {
+                    IdempotencyCache.Entry previous = posted.get(key);
+                    if (previous == null) previous = idempotencyCache.get(key);
+                    if (previous != null) {
+                        IDEMPOTENCY_METRIC.hit();
+                        if (!previous.request.sameTransfer(request)) {
+                            results[i] = TransferResult.rejected("Idempotency key " + request.getIdempotencyKey()
+                                    + " was used for a different transfer");
+                            valid = false;
+                        } else {
+                            results[i] = TransferResult.duplicate(previous.transferId);
+                        }
+                        continue;
+                    }
+                    IDEMPOTENCY_METRIC.miss();
+                }
+                String transferId = Transaction.newId();
+                String from = request.getFromUsername();
+                String to = request.getToUsername();
+                legs.computeIfAbsent(from, u -> new ArrayList<>()).add(new Transaction(Transaction.Type.EXPENSE,
+                        TRANSFER_CATEGORY, request.getAmountMinor(), transferTo(to), from, transferId));
+                legs.computeIfAbsent(to, u -> new ArrayList<>()).add(new Transaction(Transaction.Type.INCOME,
+                        TRANSFER_CATEGORY, request.getAmountMinor(), transferFrom(from), to, transferId));
+                if (key != null) {
+                    posted.put(key, new IdempotencyCache.Entry(request, transferId));
+                }
+                senders.add(from);
+                results[i] = TransferResult.posted(transferId);
+                postedCount++;
+            }
+            if (!valid) return rejectBatch(results);
+
+            // Every wallet's totals are checked before any is changed, so an overflow cannot post part of the batch
+            for (Map.Entry<String, List<Transaction>> wallet : legs.entrySet()) {
+                try {
+                    users.get(wallet.getKey()).getWallet().checkBatchTotals(wallet.getValue());
+                } catch (ArithmeticException e) {
+                    rejectOverflow(requests, results, wallet.getKey());
+                    return rejectBatch(results);
+                }
+            }
+
+            // All legs are journaled as one group, so a crash replays the whole batch or none of it
+            dataStorage.runAtomically(() -> {
+                for (Map.Entry<String, List<Transaction>> wallet : legs.entrySet()) {
+                    users.get(wallet.getKey()).getWallet().addTransactions(wallet.getValue());
+                }
+            });
+            idempotencyCache.putAll(posted);
+            POSTED.add(postedCount);
+        } finally {
+            for (Wallet wallet : locked) {
+                wallet.getLock().writeLock().unlock();
+            }
+        }
+        for (String sender : senders) {
+            budgetAlertEngine.onExpense(users.get(sender), TRANSFER_CATEGORY);
+        }
+        return Arrays.asList(results);
+    }
+
+    int getIdempotencyKeyCount() {
+        return idempotencyCache.size();
+    }
+
+    // Adds the request's users to the map; returns why the request cannot be posted, or null
+    private String resolve(TransferRequest request, Map<String, User> users) {
+        if (request == null) return "Missing transfer";
+        if (request.getAmountMinor() <= 0) return "Amount must be positive: " + request.getAmountMinor();
+        if (request.getAmountMinor() > Money.MAX_AMOUNT_MINOR) return "Amount out of range: " + request.getAmountMinor();
+        if (request.getFromUsername() != null && request.getFromUsername().equals(request.getToUsername())) {
+            return "Sender and recipient are the same user: " + request.getFromUsername();
+        }
+        String reason = resolveUser(request.getFromUsername(), "sender", users);
+        if (reason != null) return reason;
+        return resolveUser(request.getToUsername(), "recipient", users);
+    }
+
+    private String resolveUser(String username, String role, Map<String, User> users) {
+        if (username == null) return "Missing " + role;
+        if (users.containsKey(username)) return null;
+        Optional<User> user = userRepository.findByUsername(username);
+        if (user.isEmpty()) return "Unknown " + role + ": " + username;
+        users.put(username, user.get());
+        return null;
+    }
+
+    private static List<TransferResult> rejectBatch(TransferResult[] results) {
+        REJECTED_BATCHES.increment();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null || results[i].getStatus() != TransferResult.Status.REJECTED) {
+                results[i] = TransferResult.rejected("Batch rejected");
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    // Rejects the posted transfers that touch the wallet whose totals would overflow
+    private static void rejectOverflow(List<TransferRequest> requests, TransferResult[] results, String username) {
+        for (int i = 0; i < results.length; i++) {
+            TransferRequest request = requests.get(i);
+            if (results[i].getStatus() == TransferResult.Status.POSTED
+                    && (username.equals(request.getFromUsername()) || username.equals(request.getToUsername()))) {
+                results[i] = TransferResult.rejected("Totals of " + username + " would overflow");
+            }
+        }
+    }
+
+    // Write locks are always taken in username order, so batches touching the same wallets cannot deadlock
+    private static List<Wallet> lockInOrder(Collection<User> users) {
+        List<Wallet> locked = new ArrayList<>(users.size());
+        try {
+            for (User user : users) {
+                Wallet wallet = user.getWallet();
+                wallet.getLock().writeLock().lock();
+                locked.add(wallet);
+            }
+        } catch (RuntimeException e) {
+            for (Wallet wallet : locked) {
+                wallet.getLock().writeLock().unlock();
+            }
+            throw e;
+        }
+        return locked;
+    }
+
+    private String transferTo(String username) {
+        return transferToDescriptions.computeIfAbsent(username, u -> "Перевод пользователю " + u);
+    }
+
+    private String transferFrom(String username) {
+        return transferFromDescriptions.computeIfAbsent(username, u -> "Перевод от пользователя " + u);
+    }
+}
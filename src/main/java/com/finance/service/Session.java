@@ -0,0 +1,43 @@
+package com.finance.service;
+
+import com.finance.model.User;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A logged-in user. FinanceService operations run against a session,
+ * so one AuthService can serve many users at once.
+ */
+public class Session {
+    private final String token;
+    private final User user;
+    private final LocalDateTime createdAt;
+    private volatile boolean open;
+    // System.nanoTime() of the last lookup or operation
+    private volatile long lastUsed;
+
+    Session(User user) {
+        this.token = UUID.randomUUID().toString();
+        this.user = user;
+        this.createdAt = LocalDateTime.now();
+        this.open = true;
+        this.lastUsed = System.nanoTime();
+    }
+
+    public String getToken() { return token; }
+    public User getUser() { return user; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public boolean isOpen() { return open; }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    long getIdleNanos() {
+        return System.nanoTime() - lastUsed;
+    }
+
+    void close() {
+        this.open = false;
+    }
+}
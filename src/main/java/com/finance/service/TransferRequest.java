@@ -0,0 +1,39 @@
+package com.finance.service;
+
+import java.util.Objects;
+
+/**
+ * A transfer to post through the {@link Ledger}. Requests with the same idempotency key from the same
+ * sender are posted once; the key is optional.
+ */
+public class TransferRequest {
+    private final String fromUsername;
+    private final String toUsername;
+    // In minor units, see Money
+    private final long amount;
+    private final String idempotencyKey;
+
+    public TransferRequest(String fromUsername, String toUsername, long amountMinor, String idempotencyKey) {
+        this.fromUsername = fromUsername;
+        this.toUsername = toUsername;
+        this.amount = amountMinor;
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getFromUsername() { return fromUsername; }
+    public String getToUsername() { return toUsername; }
+    public long getAmountMinor() { return amount; }
+    public String getIdempotencyKey() { return idempotencyKey; }
+
+    // Whether a retry with the same key asks for the same transfer
+    boolean sameTransfer(TransferRequest other) {
+        return amount == other.amount && Objects.equals(fromUsername, other.fromUsername)
+                && Objects.equals(toUsername, other.toUsername);
+    }
+
+    @Override
+    public String toString() {
+        return "TransferRequest{from=" + fromUsername + ", to=" + toUsername + ", amount=" + amount
+                + (idempotencyKey == null ? "" : ", key=" + idempotencyKey) + "}";
+    }
+}
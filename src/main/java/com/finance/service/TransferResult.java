@@ -0,0 +1,46 @@
+package com.finance.service;
+
+/**
+ * Outcome of one {@link TransferRequest}. A {@link Status#DUPLICATE} carries the transfer id of the
+ * transfer first posted under the same idempotency key; a {@link Status#REJECTED} one carries the reason.
+ */
+public class TransferResult {
+    public enum Status { POSTED, DUPLICATE, REJECTED }
+
+    private final Status status;
+    private final String transferId;
+    private final String reason;
+
+    private TransferResult(Status status, String transferId, String reason) {
+        this.status = status;
+        this.transferId = transferId;
+        this.reason = reason;
+    }
+
+    static TransferResult posted(String transferId) {
+        return new TransferResult(Status.POSTED, transferId, null);
+    }
+
+    static TransferResult duplicate(String transferId) {
+        return new TransferResult(Status.DUPLICATE, transferId, null);
+    }
+
+    static TransferResult rejected(String reason) {
+        return new TransferResult(Status.REJECTED, null, reason);
+    }
+
+    public Status getStatus() { return status; }
+    public String getTransferId() { return transferId; }
+    public String getReason() { return reason; }
+
+    // Posted now or earlier under the same idempotency key
+    public boolean isApplied() {
+        return status != Status.REJECTED;
+    }
+
+    @Override
+    public String toString() {
+        return "TransferResult{" + status + (transferId == null ? "" : ", transferId=" + transferId)
+                + (reason == null ? "" : ", reason=" + reason) + "}";
+    }
+}
@@ -0,0 +1,57 @@
+package com.finance.workload;
+
+import java.util.Arrays;
+
+/**
+ * Collects latency samples in nanoseconds and reports exact percentiles. Not thread-safe:
+ * each replay thread records into its own recorder and the recorders are merged afterwards.
+ */
+public class LatencyRecorder {
+    private long[] samples = new long[1024];
+    private int count;
+    private boolean sorted = true;
+
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    public void merge(LatencyRecorder other) {
+        for (int i = 0; i < other.count; i++) {
+            record(other.samples[i]);
+        }
+    }
+
+    public int getCount() { return count; }
+
+    // Nearest-rank percentile, e.g. percentile(99.9)
+    public long percentile(double percent) {
+        if (count == 0) return 0;
+        sort();
+        int rank = (int) Math.ceil(percent / 100.0 * count);
+        return samples[Math.min(count, Math.max(1, rank)) - 1];
+    }
+
+    public long getMax() {
+        return percentile(100);
+    }
+
+    public double getMean() {
+        if (count == 0) return 0;
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += samples[i];
+        }
+        return (double) sum / count;
+    }
+
+    private void sort() {
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+    }
+}
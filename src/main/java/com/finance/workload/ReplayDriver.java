@@ -0,0 +1,185 @@
+package com.finance.workload;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import com.finance.service.AuthService;
+import com.finance.service.FinanceService;
+import com.finance.service.Session;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes a recorded operation stream through FinanceService and reports latency percentiles per operation.
+ * Operations of one user always run on the same thread, in recorded order.
+ * Run with: mvn compile exec:java -Dexec.mainClass=com.finance.workload.ReplayDriver
+ *           -Dexec.args="dir=workload threads=4 journal=true"
+ */
+public class ReplayDriver {
+    private final WorkloadConfig config;
+    private final AuthService authService;
+    private final FinanceService financeService;
+    private final Map<String, Session> sessions = new HashMap<>();
+
+    public ReplayDriver(WorkloadConfig config, AuthService authService) {
+        this.config = config;
+        this.authService = authService;
+        this.financeService = new FinanceService(authService);
+    }
+
+    public static void main(String[] args) throws Exception {
+        WorkloadConfig config = WorkloadConfig.fromArgs(args);
+        long start = System.nanoTime();
+        DataStorage dataStorage = new DataStorage(config.getDirectory(), config.isJournal());
+        AuthService authService = new AuthService(UserRepository.getInstance(), dataStorage);
+        System.out.printf("Loaded users from %s in %d ms%n", config.getDirectory(), (System.nanoTime() - start) / 1_000_000);
+
+        List<WorkloadOperation> operations = readOperations(config.getDirectory().resolve(WorkloadGenerator.OPERATIONS_FILE));
+        Report report = new ReplayDriver(config, authService).replay(operations);
+        report.print(System.out);
+        dataStorage.close();
+    }
+
+    public static List<WorkloadOperation> readOperations(Path file) throws IOException {
+        List<WorkloadOperation> operations = new ArrayList<>();
+        try (MappingIterator<WorkloadOperation> iterator = new ObjectMapper()
+                .readerFor(WorkloadOperation.class).readValues(file.toFile())) {
+            while (iterator.hasNext()) {
+                operations.add(iterator.next());
+            }
+        }
+        return operations;
+    }
+
+    public Report replay(List<WorkloadOperation> operations) throws InterruptedException {
+        int threads = Math.max(1, config.getThreads());
+        List<List<WorkloadOperation>> partitions = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        // Sessions are opened up front so that login cost and wallet loading are not timed
+        for (WorkloadOperation operation : operations) {
+            openSession(operation.getUser());
+            partitions.get(Math.floorMod(operation.getUser().hashCode(), threads)).add(operation);
+        }
+
+        List<Map<WorkloadOperation.Op, LatencyRecorder>> perThread = new ArrayList<>();
+        AtomicInteger failed = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (List<WorkloadOperation> partition : partitions) {
+            Map<WorkloadOperation.Op, LatencyRecorder> latencies = new EnumMap<>(WorkloadOperation.Op.class);
+            perThread.add(latencies);
+            workers.add(new Thread(() -> {
+                for (WorkloadOperation operation : partition) {
+                    long begin = System.nanoTime();
+                    boolean ok = execute(operation);
+                    long elapsed = System.nanoTime() - begin;
+                    latencies.computeIfAbsent(operation.getOp(), op -> new LatencyRecorder()).record(elapsed);
+                    if (!ok) failed.incrementAndGet();
+                }
+            }, "replay-" + workers.size()));
+        }
+
+        // FinanceService prints balance warnings to stdout; keep them out of the report
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long start = System.nanoTime();
+        try {
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } finally {
+            System.setOut(out);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<WorkloadOperation.Op, LatencyRecorder> merged = new EnumMap<>(WorkloadOperation.Op.class);
+        for (Map<WorkloadOperation.Op, LatencyRecorder> latencies : perThread) {
+            latencies.forEach((op, recorder) -> merged.computeIfAbsent(op, o -> new LatencyRecorder()).merge(recorder));
+        }
+        return new Report(merged, elapsed, failed.get(), threads);
+    }
+
+    private void openSession(String username) {
+        if (sessions.containsKey(username)) return;
+        Session session = authService.openSession(username, config.getPassword())
+                .orElseThrow(() -> new IllegalStateException("Cannot log in as " + username
+                        + ": generate the workload with the same users and password first"));
+        sessions.put(username, session);
+    }
+
+    private boolean execute(WorkloadOperation operation) {
+        Session session = sessions.get(operation.getUser());
+        switch (operation.getOp()) {
+            case ADD_INCOME:
+                return financeService.addIncome(session, operation.getCategory(), operation.getAmount(), "");
+            case ADD_EXPENSE:
+                return financeService.addExpense(session, operation.getCategory(), operation.getAmount(), "");
+            case SET_BUDGET:
+                return financeService.setBudget(session, operation.getCategory(), operation.getAmount());
+            case TRANSFER:
+                return financeService.transfer(session, operation.getTarget(), operation.getAmount(), "");
+            case GET_BALANCE:
+                financeService.getBalance(session);
+                return true;
+            case GET_BUDGET_ALERTS:
+                financeService.getBudgetAlerts(session);
+                return true;
+            case GET_EXPENSES_BY_CATEGORY:
+                financeService.getExpensesByCategory(session);
+                return true;
+            case GET_TRANSACTIONS_BY_PERIOD: {
+                LocalDate end = config.getEndDate();
+                financeService.getTransactionsByPeriod(session, end.minusDays(operation.getDays() - 1L), end);
+                return true;
+            }
+            default:
+                return false;
+        }
+    }
+
+    public static class Report {
+        private final Map<WorkloadOperation.Op, LatencyRecorder> latencies;
+        private final long elapsedNanos;
+        private final int failed;
+        private final int threads;
+
+        Report(Map<WorkloadOperation.Op, LatencyRecorder> latencies, long elapsedNanos, int failed, int threads) {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            this.failed = failed;
+            this.threads = threads;
+        }
+
+        public Map<WorkloadOperation.Op, LatencyRecorder> getLatencies() { return latencies; }
+        public long getElapsedNanos() { return elapsedNanos; }
+        public int getFailed() { return failed; }
+
+        public int getCount() {
+            return latencies.values().stream().mapToInt(LatencyRecorder::getCount).sum();
+        }
+
+        public void print(PrintStream out) {
+            out.printf("Replayed %d operations on %d threads in %d ms (%.0f ops/sec), failed: %d%n",
+                    getCount(), threads, elapsedNanos / 1_000_000, getCount() * 1e9 / elapsedNanos, failed);
+            out.printf("%-28s %10s %10s %10s %10s %10s %10s%n", "operation (us)", "count", "p50", "p90", "p99", "p99.9", "max");
+            latencies.forEach((op, recorder) -> out.printf("%-28s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                    op, recorder.getCount(),
+                    recorder.percentile(50) / 1e3, recorder.percentile(90) / 1e3, recorder.percentile(99) / 1e3,
+                    recorder.percentile(99.9) / 1e3, recorder.getMax() / 1e3));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.finance.workload;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of the workload generator and replay driver, given on the command line as
+ * {@code key=value} arguments, e.g. {@code users=10000 transactions=500 seed=7}.
+ * Weighted lists are written as {@code name:weight,...}.
+ */
+public class WorkloadConfig {
+    private Path directory = Paths.get("workload");
+    private long seed = 42;
+    private int users = 1000;
+    private String userPrefix = "load";
+    private String password = "password";
+    // Average number of transactions per user; the actual count varies between half and one and a half times this
+    private int transactions = 1000;
+    private double incomeShare = 0.1;
+    private double transferShare = 0.05;
+    // Number of other users each user sends transfers to
+    private int transferDegree = 3;
+    private int budgetsPerUser = 3;
+    private LocalDate endDate = LocalDate.of(2024, 12, 31);
+    private int days = 365;
+    private Map<String, Double> categories = parseWeights(
+            "Еда:30,Транспорт:15,Покупки:15,Коммунальные услуги:10,Развлечения:10,Аренда:5,Здоровье:10,Подарки:5");
+    private int operations = 100_000;
+    private Map<WorkloadOperation.Op, Double> mix = parseMix(
+            "ADD_EXPENSE:45,ADD_INCOME:10,TRANSFER:5,SET_BUDGET:2,GET_BALANCE:20,GET_BUDGET_ALERTS:10,GET_EXPENSES_BY_CATEGORY:5,GET_TRANSACTIONS_BY_PERIOD:3");
+    // 1 picks users uniformly; larger values concentrate operations on the first users
+    private double userSkew = 1.0;
+    private int threads = 1;
+    private boolean journal = true;
+
+    public static WorkloadConfig fromArgs(String[] args) {
+        WorkloadConfig config = new WorkloadConfig();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            config.set(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+        }
+        return config;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "dir": directory = Paths.get(value); break;
+            case "seed": seed = Long.parseLong(value); break;
+            case "users": users = Integer.parseInt(value); break;
+            case "userPrefix": userPrefix = value; break;
+            case "password": password = value; break;
+            case "transactions": transactions = Integer.parseInt(value); break;
+            case "incomeShare": incomeShare = Double.parseDouble(value); break;
+            case "transferShare": transferShare = Double.parseDouble(value); break;
+            case "transferDegree": transferDegree = Integer.parseInt(value); break;
+            case "budgets": budgetsPerUser = Integer.parseInt(value); break;
+            case "endDate": endDate = LocalDate.parse(value); break;
+            case "days": days = Integer.parseInt(value); break;
+            case "categories": categories = parseWeights(value); break;
+            case "operations": operations = Integer.parseInt(value); break;
+            case "mix": mix = parseMix(value); break;
+            case "userSkew": userSkew = Double.parseDouble(value); break;
+            case "threads": threads = Integer.parseInt(value); break;
+            case "journal": journal = Boolean.parseBoolean(value); break;
+            default: throw new IllegalArgumentException("Unknown workload setting: " + key);
+        }
+    }
+
+    static Map<String, Double> parseWeights(String value) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Expected name:weight, got " + entry);
+            }
+            weights.put(entry.substring(0, colon).trim(), Double.parseDouble(entry.substring(colon + 1).trim()));
+        }
+        return weights;
+    }
+
+    private static Map<WorkloadOperation.Op, Double> parseMix(String value) {
+        Map<WorkloadOperation.Op, Double> mix = new EnumMap<>(WorkloadOperation.Op.class);
+        parseWeights(value).forEach((op, weight) -> mix.put(WorkloadOperation.Op.valueOf(op), weight));
+        return mix;
+    }
+
+    // Getters and setters
+    public Path getDirectory() { return directory; }
+    public void setDirectory(Path directory) { this.directory = directory; }
+
+    public long getSeed() { return seed; }
+    public void setSeed(long seed) { this.seed = seed; }
+
+    public int getUsers() { return users; }
+    public void setUsers(int users) { this.users = users; }
+
+    public String getUserPrefix() { return userPrefix; }
+    public void setUserPrefix(String userPrefix) { this.userPrefix = userPrefix; }
+
+    public String getPassword() { return password; }
+    public void setPassword(String password) { this.password = password; }
+
+    public int getTransactions() { return transactions; }
+    public void setTransactions(int transactions) { this.transactions = transactions; }
+
+    public double getIncomeShare() { return incomeShare; }
+    public void setIncomeShare(double incomeShare) { this.incomeShare = incomeShare; }
+
+    public double getTransferShare() { return transferShare; }
+    public void setTransferShare(double transferShare) { this.transferShare = transferShare; }
+
+    public int getTransferDegree() { return transferDegree; }
+    public void setTransferDegree(int transferDegree) { this.transferDegree = transferDegree; }
+
+    public int getBudgetsPerUser() { return budgetsPerUser; }
+    public void setBudgetsPerUser(int budgetsPerUser) { this.budgetsPerUser = budgetsPerUser; }
+
+    public LocalDate getEndDate() { return endDate; }
+    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+
+    public int getDays() { return days; }
+    public void setDays(int days) { this.days = days; }
+
+    public Map<String, Double> getCategories() { return categories; }
+    public void setCategories(Map<String, Double> categories) { this.categories = categories; }
+
+    public int getOperations() { return operations; }
+    public void setOperations(int operations) { this.operations = operations; }
+
+    public Map<WorkloadOperation.Op, Double> getMix() { return mix; }
+    public void setMix(Map<WorkloadOperation.Op, Double> mix) { this.mix = mix; }
+
+    public double getUserSkew() { return userSkew; }
+    public void setUserSkew(double userSkew) { this.userSkew = userSkew; }
+
+    public int getThreads() { return threads; }
+    public void setThreads(int threads) { this.threads = threads; }
+
+    public boolean isJournal() { return journal; }
+    public void setJournal(boolean journal) { this.journal = journal; }
+}
@@ -0,0 +1,250 @@
+package com.finance.workload;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.finance.model.Budget;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Generates reproducible synthetic users and a matching operation stream.
+ * The same config and seed always produce the same users, transaction ids and operations.
+ * Run with: mvn compile exec:java -Dexec.mainClass=com.finance.workload.WorkloadGenerator
+ *           -Dexec.args="dir=workload users=1000 transactions=1000 operations=100000"
+ */
+public class WorkloadGenerator {
+    public static final String OPERATIONS_FILE = "operations.jsonl";
+    static final String INCOME_CATEGORY = "Зарплата";
+    static final String TRANSFER_CATEGORY = "Перевод";
+
+    private final WorkloadConfig config;
+    private final String[] categories;
+    private final double[] categoryWeights;
+    // Mean expense amount of each category
+    private final double[] categoryMeans;
+    private final WorkloadOperation.Op[] ops;
+    private final double[] opWeights;
+    // friends[i] are the users that user i sends transfers to
+    private final int[][] friends;
+
+    public WorkloadGenerator(WorkloadConfig config) {
+        this.config = config;
+        Random random = new Random(config.getSeed());
+
+        Map<String, Double> weights = config.getCategories();
+        categories = weights.keySet().toArray(new String[0]);
+        categoryWeights = cumulative(weights.values());
+        categoryMeans = new double[categories.length];
+        for (int i = 0; i < categories.length; i++) {
+            categoryMeans[i] = 200 + random.nextInt(4800);
+        }
+
+        ops = config.getMix().keySet().toArray(new WorkloadOperation.Op[0]);
+        opWeights = cumulative(config.getMix().values());
+
+        friends = new int[config.getUsers()][];
+        int degree = Math.min(config.getTransferDegree(), config.getUsers() - 1);
+        for (int i = 0; i < friends.length; i++) {
+            Set<Integer> chosen = new LinkedHashSet<>();
+            while (chosen.size() < degree) {
+                int friend = random.nextInt(config.getUsers());
+                if (friend != i) chosen.add(friend);
+            }
+            friends[i] = chosen.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        WorkloadConfig config = WorkloadConfig.fromArgs(args);
+        WorkloadGenerator generator = new WorkloadGenerator(config);
+
+        long start = System.nanoTime();
+        List<User> users = generator.generateUsers();
+        long generated = System.nanoTime();
+        // Bulk path: one snapshot write instead of a journal record per transaction
+        DataStorage dataStorage = new DataStorage(config.getDirectory(), false);
+        dataStorage.saveUsers(users);
+        long saved = System.nanoTime();
+        Path operations = config.getDirectory().resolve(OPERATIONS_FILE);
+        generator.writeOperations(operations);
+        long written = System.nanoTime();
+
+        long transactions = users.stream().mapToLong(u -> u.getWallet().getTransactions().size()).sum();
+        System.out.printf("Users: %d, transactions: %d (generated in %d ms, saved in %d ms)%n",
+                users.size(), transactions, (generated - start) / 1_000_000, (saved - generated) / 1_000_000);
+        System.out.printf("Operations: %d written to %s in %d ms%n",
+                config.getOperations(), operations, (written - saved) / 1_000_000);
+    }
+
+    public String username(int index) {
+        return String.format("%s%06d", config.getUserPrefix(), index);
+    }
+
+    public List<User> generateUsers() {
+        Random random = new Random(config.getSeed() + 1);
+        List<User> users = new ArrayList<>(config.getUsers());
+        for (int i = 0; i < config.getUsers(); i++) {
+            users.add(new User(username(i), config.getPassword()));
+        }
+
+        double expenseShare = Math.max(0, 1 - config.getIncomeShare() - config.getTransferShare());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            Wallet wallet = user.getWallet();
+            int count = config.getTransactions() / 2 + random.nextInt(config.getTransactions() + 1);
+            for (int t = 0; t < count; t++) {
+                double kind = random.nextDouble();
+                if (kind < config.getIncomeShare()) {
+                    wallet.addTransaction(transaction(random, Transaction.Type.INCOME, INCOME_CATEGORY,
+                            salary(random), "Зарплата", user.getUsername()));
+                } else if (kind < config.getIncomeShare() + config.getTransferShare() && friends[i].length > 0) {
+                    User to = users.get(friends[i][random.nextInt(friends[i].length)]);
+                    double amount = amount(random, 2000);
+                    Transaction expense = transaction(random, Transaction.Type.EXPENSE, TRANSFER_CATEGORY, amount,
+                            "Перевод пользователю " + to.getUsername(), user.getUsername());
+                    Transaction income = transaction(random, Transaction.Type.INCOME, TRANSFER_CATEGORY, amount,
+                            "Перевод от пользователя " + user.getUsername(), to.getUsername());
+                    income.setDate(expense.getDate());
+                    wallet.addTransaction(expense);
+                    to.getWallet().addTransaction(income);
+                } else {
+                    int category = pick(random, categoryWeights);
+                    wallet.addTransaction(transaction(random, Transaction.Type.EXPENSE, categories[category],
+                            amount(random, categoryMeans[category]), "", user.getUsername()));
+                }
+            }
+
+            // Budgets around the expected spend, so some are exceeded and some are close to the limit
+            double totalWeight = categoryWeights[categoryWeights.length - 1];
+            for (int b = 0; b < Math.min(config.getBudgetsPerUser(), categories.length); b++) {
+                double weight = categoryWeights[b] - (b == 0 ? 0 : categoryWeights[b - 1]);
+                double expected = count * expenseShare * weight / totalWeight * categoryMeans[b];
+                double limit = Math.max(1, round(expected * (0.7 + 0.6 * random.nextDouble())));
+                wallet.addBudget(new Budget(categories[b], limit, user.getUsername()));
+            }
+        }
+        return users;
+    }
+
+    public List<WorkloadOperation> generateOperations() {
+        List<WorkloadOperation> operations = new ArrayList<>(config.getOperations());
+        Random random = new Random(config.getSeed() + 2);
+        for (int i = 0; i < config.getOperations(); i++) {
+            operations.add(nextOperation(random));
+        }
+        return operations;
+    }
+
+    // Streams the operations to a JSON-lines file without holding them in memory
+    public void writeOperations(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        ObjectMapper objectMapper = new ObjectMapper();
+        Random random = new Random(config.getSeed() + 2);
+        try (SequenceWriter writer = objectMapper.writerFor(WorkloadOperation.class)
+                .withRootValueSeparator("\n")
+                .writeValues(file.toFile())) {
+            for (int i = 0; i < config.getOperations(); i++) {
+                writer.write(nextOperation(random));
+            }
+        }
+    }
+
+    private WorkloadOperation nextOperation(Random random) {
+        int userIndex = Math.min(config.getUsers() - 1,
+                (int) (config.getUsers() * Math.pow(random.nextDouble(), config.getUserSkew())));
+        WorkloadOperation.Op op = ops[pick(random, opWeights)];
+        WorkloadOperation operation = new WorkloadOperation(op, username(userIndex));
+        switch (op) {
+            case ADD_INCOME:
+                operation.setCategory(INCOME_CATEGORY);
+                operation.setAmount(salary(random));
+                break;
+            case ADD_EXPENSE: {
+                int category = pick(random, categoryWeights);
+                operation.setCategory(categories[category]);
+                operation.setAmount(amount(random, categoryMeans[category]));
+                break;
+            }
+            case SET_BUDGET: {
+                int category = pick(random, categoryWeights);
+                operation.setCategory(categories[category]);
+                operation.setAmount(round(categoryMeans[category] * (10 + random.nextInt(90))));
+                break;
+            }
+            case TRANSFER: {
+                int[] targets = friends[userIndex];
+                operation.setTarget(username(targets.length > 0 ? targets[random.nextInt(targets.length)] : userIndex));
+                operation.setAmount(amount(random, 2000));
+                break;
+            }
+            case GET_TRANSACTIONS_BY_PERIOD:
+                operation.setDays(1 + random.nextInt(config.getDays()));
+                break;
+            default:
+                break;
+        }
+        return operation;
+    }
+
+    private Transaction transaction(Random random, Transaction.Type type, String category, double amount,
+                                    String description, String username) {
+        // Built through setters: the convenience constructor uses randomUUID() and the current time
+        Transaction transaction = new Transaction();
+        transaction.setId(new UUID(random.nextLong(), random.nextLong()).toString());
+        transaction.setType(type);
+        transaction.setCategory(category);
+        transaction.setAmount(amount);
+        transaction.setDescription(description);
+        transaction.setUsername(username);
+        LocalDateTime start = config.getEndDate().minusDays(config.getDays() - 1L).atStartOfDay();
+        transaction.setDate(start.plusMinutes(random.nextInt(config.getDays() * 24 * 60)));
+        return transaction;
+    }
+
+    private static double salary(Random random) {
+        return round(30_000 + random.nextInt(120_000));
+    }
+
+    // Log-normal around the mean: mostly small amounts with a long tail of large ones
+    private static double amount(Random random, double mean) {
+        double sigma = 0.6;
+        return Math.max(0.01, round(mean * Math.exp(sigma * random.nextGaussian() - sigma * sigma / 2)));
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+
+    private static double[] cumulative(Iterable<Double> weights) {
+        List<Double> sums = new ArrayList<>();
+        double sum = 0;
+        for (double weight : weights) {
+            sum += weight;
+            sums.add(sum);
+        }
+        return sums.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    private static int pick(Random random, double[] cumulativeWeights) {
+        double value = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) return i;
+        }
+        return cumulativeWeights.length - 1;
+    }
+}
@@ -0,0 +1,49 @@
+package com.finance.workload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One recorded FinanceService call of a workload, stored as a JSON line.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkloadOperation {
+    public enum Op {
+        ADD_INCOME, ADD_EXPENSE, SET_BUDGET, TRANSFER,
+        GET_BALANCE, GET_BUDGET_ALERTS, GET_EXPENSES_BY_CATEGORY, GET_TRANSACTIONS_BY_PERIOD
+    }
+
+    private Op op;
+    private String user;
+    private String category;
+    private Double amount;
+    // Recipient of a transfer
+    private String target;
+    // Length of the queried period, ending at the workload's end date
+    private Integer days;
+
+    public WorkloadOperation() {}
+
+    public WorkloadOperation(Op op, String user) {
+        this.op = op;
+        this.user = user;
+    }
+
+    // Getters and setters
+    public Op getOp() { return op; }
+    public void setOp(Op op) { this.op = op; }
+
+    public String getUser() { return user; }
+    public void setUser(String user) { this.user = user; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public Double getAmount() { return amount; }
+    public void setAmount(Double amount) { this.amount = amount; }
+
+    public String getTarget() { return target; }
+    public void setTarget(String target) { this.target = target; }
+
+    public Integer getDays() { return days; }
+    public void setDays(Integer days) { this.days = days; }
+}
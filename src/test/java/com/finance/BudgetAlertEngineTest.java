@@ -0,0 +1,95 @@
+package com.finance.service;
+
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BudgetAlertEngineTest {
+    private FinanceService financeService;
+    private Session session;
+    private List<BudgetAlert> alerts;
+
+    @BeforeEach
+    void setUp() {
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository);
+        financeService = new FinanceService(authService);
+
+        User user = new User("alerts", "pw");
+        user.setWallet(new Wallet());
+        session = authService.setCurrentUser(user);
+        financeService.addIncome(session, "Salary", 100_000, "");
+
+        alerts = Collections.synchronizedList(new ArrayList<>());
+        financeService.getBudgetAlertEngine().subscribe(alerts::add);
+    }
+
+    @Test
+    void testAlertsFireOncePerCrossing() {
+        financeService.setBudget(session, "Food", 1000);
+        financeService.addExpense(session, "Food", 500, "");
+        assertTrue(alerts.isEmpty(), "50% of the limit is not an alert");
+
+        financeService.addExpense(session, "Food", 300, "");
+        assertEquals(1, alerts.size());
+        assertEquals(BudgetAlert.Level.WARNING, alerts.get(0).getLevel());
+        assertEquals(80_000, alerts.get(0).getSpentMinor());
+
+        financeService.addExpense(session, "Food", 100, "");
+        assertEquals(1, alerts.size(), "Staying above 80% must not repeat the alert");
+
+        financeService.addExpense(session, "Food", 200, "");
+        assertEquals(2, alerts.size());
+        assertEquals(BudgetAlert.Level.EXCEEDED, alerts.get(1).getLevel());
+        assertTrue(alerts.get(1).getMessage().contains("Превышен"));
+
+        financeService.addExpense(session, "Food", 200, "");
+        financeService.addExpense(session, "Transport", 5000, "");
+        assertEquals(2, alerts.size(), "Expenses without a new crossing or budget are silent");
+    }
+
+    @Test
+    void testRaisedLimitCanCrossAgain() {
+        financeService.setBudget(session, "Food", 100);
+        financeService.addExpense(session, "Food", 150, "");
+        assertEquals(BudgetAlert.Level.EXCEEDED, alerts.get(0).getLevel());
+
+        financeService.setBudget(session, "Food", 1000);
+        assertEquals(1, alerts.size(), "Raising the limit is not an alert");
+
+        financeService.addExpense(session, "Food", 900, "");
+        assertEquals(2, alerts.size());
+        assertEquals(BudgetAlert.Level.EXCEEDED, alerts.get(1).getLevel());
+
+        // Lowering the limit below what is already spent is a crossing too
+        financeService.setBudget(session, "Food", 5000);
+        financeService.setBudget(session, "Food", 500);
+        assertEquals(3, alerts.size());
+    }
+
+    @Test
+    void testConcurrentExpensesReportCrossingOnce() throws Exception {
+        financeService.setBudget(session, "Food", 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 2000; i++) {
+            executor.submit(() -> financeService.addExpense(session, "Food", 1, ""));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        // Each crossing once, in order, even though different threads raised them
+        assertEquals(2, alerts.size());
+        assertEquals(BudgetAlert.Level.WARNING, alerts.get(0).getLevel());
+        assertEquals(BudgetAlert.Level.EXCEEDED, alerts.get(1).getLevel());
+    }
+}
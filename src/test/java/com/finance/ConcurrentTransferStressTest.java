@@ -0,0 +1,87 @@
+package com.finance.service;
+
+import com.finance.model.ColumnarTransactionStore;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentTransferStressTest {
+    // Scale with -Dstress.transfers=...
+    private static final int TRANSFERS = Integer.getInteger("stress.transfers", 1_000_000);
+    private static final int THREADS = 8;
+    private static final int USERS = 32;
+    private static final long INITIAL_BALANCE = 1_000_000;
+
+    @Test
+    void testConcurrentTransfersConserveTotals() throws Exception {
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository);
+        FinanceService financeService = new FinanceService(authService);
+
+        List<User> users = new ArrayList<>();
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("stress" + i, "pw");
+            user.setWallet(new Wallet(new ColumnarTransactionStore()));
+            user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Seed", INITIAL_BALANCE, "", user.getUsername()));
+            userRepository.addUser(user);
+            users.add(user);
+            sessions.add(authService.openSession(user.getUsername(), "pw").get());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        AtomicLong failed = new AtomicLong();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS / THREADS; i++) {
+                    int sender = random.nextInt(USERS);
+                    Session from = sessions.get(sender);
+                    // Any user but the sender, whose transfers to themselves are rejected
+                    String to = users.get((sender + 1 + random.nextInt(USERS - 1)) % USERS).getUsername();
+                    if (!financeService.transfer(from, to, 1 + random.nextInt(10000) / 100.0, "stress")) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        // Concurrent readers must never see a torn wallet
+        Future<?> reader = executor.submit(() -> {
+            while (!workers.stream().allMatch(Future::isDone)) {
+                for (User user : users) {
+                    Wallet wallet = user.getWallet();
+                    wallet.getLock().readLock().lock();
+                    try {
+                        assertEquals(wallet.getTotalIncomeMinor() - wallet.getTotalExpensesMinor(), wallet.getBalanceMinor());
+                    } finally {
+                        wallet.getLock().readLock().unlock();
+                    }
+                }
+            }
+        });
+        for (Future<?> worker : workers) {
+            worker.get(5, TimeUnit.MINUTES);
+        }
+        reader.get(1, TimeUnit.MINUTES);
+        executor.shutdown();
+
+        assertEquals(0, failed.get());
+        long total = 0;
+        long rows = 0;
+        for (User user : users) {
+            total += user.getWallet().getBalanceMinor();
+            rows += user.getWallet().getTransactions().size();
+        }
+        assertEquals(USERS * INITIAL_BALANCE * 100, total, "Transfers must conserve the total balance");
+        assertEquals(USERS + 2L * (TRANSFERS / THREADS) * THREADS, rows, "No transaction may be lost");
+    }
+}
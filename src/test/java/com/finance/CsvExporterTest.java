@@ -0,0 +1,87 @@
+package com.finance.export;
+
+import com.finance.model.Transaction;
+import com.finance.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvExporterTest {
+    @TempDir
+    Path tempDir;
+
+    private Wallet wallet() {
+        Wallet wallet = new Wallet();
+        wallet.addTransaction(transaction(Transaction.Type.INCOME, "Salary", 5000, "March", LocalDateTime.of(2024, 3, 5, 9, 7, 3)));
+        wallet.addTransaction(transaction(Transaction.Type.EXPENSE, "Food", 12.5, "Bread, milk and \"cheese\"", LocalDateTime.of(2024, 3, 6, 18, 30)));
+        wallet.addTransaction(transaction(Transaction.Type.EXPENSE, "Rent", 800, "Line one\nline two", LocalDateTime.of(2024, 4, 1, 0, 0)));
+        return wallet;
+    }
+
+    private Transaction transaction(Transaction.Type type, String category, double amount, String description, LocalDateTime date) {
+        Transaction transaction = new Transaction(type, category, amount, description, "test");
+        transaction.setDate(date);
+        return transaction;
+    }
+
+    private String export(CsvExportOptions options) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CsvExportResult result = new CsvExporter().export(wallet(), Channels.newChannel(out), options);
+        assertEquals(out.size(), result.getBytes());
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void testRfc4180Quoting() throws Exception {
+        String csv = export(new CsvExportOptions());
+        assertEquals(CsvExporter.HEADER + "\r\n"
+                + "INCOME,Salary,5000.00,March,2024-03-05 09:07:03\r\n"
+                + "EXPENSE,Food,12.50,\"Bread, milk and \"\"cheese\"\"\",2024-03-06 18:30:00\r\n"
+                + "EXPENSE,Rent,800.00,\"Line one\nline two\",2024-04-01 00:00:00\r\n", csv);
+    }
+
+    @Test
+    void testPeriodAndCategoryFilters() throws Exception {
+        CsvExportOptions options = new CsvExportOptions();
+        options.setStart(LocalDate.of(2024, 3, 6));
+        assertEquals(3, export(options).split("\r\n").length, "Header and two rows from March 6 on");
+
+        options.setEnd(LocalDate.of(2024, 3, 31));
+        options.setCategories(Set.of("Food", "Salary"));
+        String csv = export(options);
+        assertEquals(2, csv.split("\r\n").length);
+        assertTrue(csv.contains("EXPENSE,Food,12.50"));
+    }
+
+    @Test
+    void testGzipFileAndLargeExport() throws Exception {
+        Wallet wallet = new Wallet();
+        LocalDateTime origin = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < 50_000; i++) {
+            wallet.addTransaction(transaction(Transaction.Type.EXPENSE, "Категория " + (i % 7), 1 + i % 1000, "Описание " + i, origin.plusMinutes(i)));
+        }
+        Path file = tempDir.resolve("transactions.csv.gz");
+        CsvExportOptions options = new CsvExportOptions();
+        options.setGzip(true);
+        options.setBufferSize(4096);
+        CsvExportResult result = new CsvExporter().export(wallet, file, options);
+
+        assertEquals(50_000, result.getRows());
+        assertTrue(Files.size(file) < result.getBytes(), "Output should be compressed");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            String[] lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\r\n");
+            assertEquals(50_001, lines.length);
+            assertEquals("EXPENSE,Категория 5,1000.00,Описание 49999,2020-02-04 17:19:00", lines[50_000]);
+        }
+    }
+}
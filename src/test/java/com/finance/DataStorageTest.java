@@ -0,0 +1,453 @@
+package com.finance.repository;
+
+import com.finance.model.Budget;
+import com.finance.model.RollupCube;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataStorageTest {
+    @TempDir
+    Path dataDir;
+
+    private UserRepository loadRepository(DataStorage storage) {
+        UserRepository repository = UserRepository.getInstance();
+        repository.clear();
+        List<User> users = storage.loadUsers();
+        if (users != null) {
+            users.forEach(repository::addUser);
+        }
+        storage.replayJournal(repository);
+        repository.getAllUsers().forEach(storage::attach);
+        return repository;
+    }
+
+    @Test
+    void testJournalReplayWithoutSnapshot() {
+        DataStorage storage = new DataStorage(dataDir, true);
+        UserRepository repository = loadRepository(storage);
+        User user = repository.findByUsername("user1").get();
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        user.getWallet().addBudget(new Budget("Food", 300, "user1"));
+        storage.close();
+
+        assertFalse(Files.exists(dataDir.resolve(SnapshotGenerations.MANIFEST)), "Changes must not write a snapshot");
+
+        UserRepository reloaded = loadRepository(new DataStorage(dataDir, true));
+        User restored = reloaded.findByUsername("user1").get();
+        assertEquals(1000, restored.getWallet().getBalance());
+        assertTrue(restored.getWallet().getBudgetForCategory("Food").isPresent());
+    }
+
+    @Test
+    void testCompactionThenReplay() {
+        DataStorage storage = new DataStorage(dataDir, true);
+        UserRepository repository = loadRepository(storage);
+        User user = repository.findByUsername("user1").get();
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        storage.saveUsers(repository.getAllUsers());
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.EXPENSE, "Food", 250, "", "user1"));
+        storage.close();
+
+        UserRepository reloaded = loadRepository(new DataStorage(dataDir, true));
+        User restored = reloaded.findByUsername("user1").get();
+        assertEquals(2, restored.getWallet().getTransactions().size());
+        assertEquals(750, restored.getWallet().getBalance());
+    }
+
+    @Test
+    void testFailedGroupIsNotJournaled() {
+        DataStorage storage = new DataStorage(dataDir, true);
+        UserRepository repository = loadRepository(storage);
+        User user = repository.findByUsername("user1").get();
+        assertThrows(IllegalStateException.class, () -> storage.runAtomically(() -> {
+            user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 500, "", "user1"));
+            throw new IllegalStateException("second leg failed");
+        }));
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.EXPENSE, "Food", 100, "", "user1"));
+        storage.close();
+
+        User restored = loadRepository(new DataStorage(dataDir, true)).findByUsername("user1").get();
+        assertEquals(1, restored.getWallet().getTransactions().size());
+        assertEquals(-100, restored.getWallet().getBalance());
+    }
+
+    @Test
+    void testLoneJournalRecordIsSyncedAfterInterval() throws Exception {
+        try (Journal journal = new Journal(dataDir.resolve("journal"), 1000, 200, 1 << 20)) {
+            journal.append(JournalRecord.transaction("user1",
+                    new Transaction(Transaction.Type.INCOME, "Salary", 100, "", "user1")));
+            assertEquals(1, journal.getUnsyncedRecords());
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (journal.getUnsyncedRecords() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, journal.getUnsyncedRecords(), "The record must be synced without another append");
+        }
+    }
+
+    @Test
+    void testReplayIsIdempotent() {
+        DataStorage storage = new DataStorage(dataDir, true);
+        UserRepository repository = loadRepository(storage);
+        User user = repository.findByUsername("user1").get();
+        storage.runAtomically(() -> {
+            user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 500, "", "user1"));
+            user.getWallet().addTransaction(new Transaction(Transaction.Type.EXPENSE, "Rent", 200, "", "user1"));
+        });
+        storage.close();
+
+        // Snapshot written without removing the journal, as after a crash mid-compaction
+        DataStorage jsonStorage = new DataStorage(dataDir, false);
+        jsonStorage.saveUsers(repository.getAllUsers());
+
+        UserRepository reloaded = loadRepository(new DataStorage(dataDir, true));
+        User restored = reloaded.findByUsername("user1").get();
+        assertEquals(2, restored.getWallet().getTransactions().size());
+        assertEquals(300, restored.getWallet().getBalance());
+    }
+
+    @Test
+    void testWalletsLoadedOnDemand() {
+        DataStorage storage = new DataStorage(dataDir, true);
+        UserRepository repository = loadRepository(storage);
+        repository.findByUsername("user1").get().getWallet()
+                .addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        repository.findByUsername("user2").get().getWallet()
+                .addTransaction(new Transaction(Transaction.Type.INCOME, "Gift", 50, "", "user2"));
+        storage.saveUsers(repository.getAllUsers());
+        storage.close();
+
+        List<User> users = new DataStorage(dataDir, true).loadUsers();
+        assertEquals(2, users.size());
+        User user1 = users.stream().filter(u -> u.getUsername().equals("user1")).findFirst().get();
+        assertEquals("password1", user1.getPassword());
+        assertFalse(user1.isWalletLoaded(), "Wallet must not be read at startup");
+        assertEquals(1000, user1.getWallet().getBalance());
+        assertTrue(user1.isWalletLoaded());
+    }
+
+    @Test
+    void testLoadsLegacyLayout() throws Exception {
+        Files.writeString(dataDir.resolve("users.json"),
+                "[ [ \"com.finance.model.User\", { \"username\" : \"old\", \"password\" : \"pw\", "
+                + "\"wallet\" : { \"transactions\" : [ \"java.util.ArrayList\", [ { \"id\" : \"1\", "
+                + "\"type\" : \"EXPENSE\", \"category\" : \"Food\", \"amount\" : 12.5, \"description\" : \"\", "
+                + "\"date\" : [ 2024, 1, 2, 3, 4, 5 ], \"username\" : \"old\" } ] ], "
+                + "\"budgets\" : [ \"java.util.ArrayList\", [ ] ], \"balance\" : -12.5, "
+                + "\"totalIncome\" : 0.0, \"totalExpenses\" : 12.5 } } ] ]");
+
+        List<User> users = new DataStorage(dataDir, false).loadUsers();
+        assertEquals(1, users.size());
+        assertEquals(12.5, users.get(0).getWallet().getExpensesForCategory("Food"));
+    }
+
+    private static List<User> sampleUsers() {
+        User user = new User("binary", "pw");
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Зарплата", 1500.25, "Аванс", "binary"));
+        Transaction imported = new Transaction();
+        imported.setId("bank-42");
+        imported.setType(Transaction.Type.EXPENSE);
+        imported.setCategory("Food");
+        imported.setAmount(99.99);
+        imported.setDate(LocalDateTime.of(1999, 12, 31, 23, 59, 59, 123_456_789));
+        imported.setUsername("binary");
+        user.getWallet().addTransaction(imported);
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Перевод", 1000L, "", "friend",
+                "0190a2b4-4c5e-7a1b-9c2d-3e4f5a6b7c8d"));
+        user.getWallet().addBudget(new Budget("Food", 300, "binary"));
+        return List.of(user, new User("empty", "secret"));
+    }
+
+    private static void assertSameUser(User expected, User actual) {
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getPassword(), actual.getPassword());
+        List<Transaction> expectedTransactions = expected.getWallet().getTransactions();
+        List<Transaction> actualTransactions = actual.getWallet().getTransactions();
+        assertEquals(expectedTransactions.size(), actualTransactions.size());
+        for (int i = 0; i < expectedTransactions.size(); i++) {
+            Transaction e = expectedTransactions.get(i);
+            Transaction a = actualTransactions.get(i);
+            assertEquals(e.getId(), a.getId());
+            assertEquals(e.getTransferId(), a.getTransferId());
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.getCategory(), a.getCategory());
+            assertEquals(e.getAmountMinor(), a.getAmountMinor());
+            assertEquals(e.getDescription(), a.getDescription());
+            assertEquals(e.getDate(), a.getDate());
+            assertEquals(e.getUsername(), a.getUsername());
+        }
+        assertEquals(expected.getWallet().getBudgets().size(), actual.getWallet().getBudgets().size());
+        for (Budget budget : expected.getWallet().getBudgets()) {
+            Budget loaded = actual.getWallet().getBudgetForCategory(budget.getCategory()).get();
+            assertEquals(budget.getLimitMinor(), loaded.getLimitMinor());
+            assertEquals(budget.getUsername(), loaded.getUsername());
+        }
+        assertEquals(expected.getWallet().getBalanceMinor(), actual.getWallet().getBalanceMinor());
+    }
+
+    @Test
+    void testBinarySnapshotRoundTrip() {
+        List<User> users = sampleUsers();
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.BINARY);
+        storage.saveUsers(users);
+        assertEquals("users-000001.bin", storage.getSnapshotPath().getFileName().toString());
+
+        List<User> loaded = new DataStorage(dataDir, false, SnapshotFormat.BINARY).loadUsers();
+        assertEquals(2, loaded.size());
+        assertFalse(loaded.get(0).isWalletLoaded(), "Wallet must not be read at startup");
+        for (int i = 0; i < users.size(); i++) {
+            assertSameUser(users.get(i), loaded.get(i));
+        }
+    }
+
+    @Test
+    void testSwitchingFormatConvertsOnSave() {
+        List<User> users = sampleUsers();
+        new DataStorage(dataDir, false, SnapshotFormat.JSON).saveUsers(users);
+
+        DataStorage binary = new DataStorage(dataDir, false, SnapshotFormat.BINARY);
+        List<User> loaded = binary.loadUsers();
+        assertSameUser(users.get(0), loaded.get(0));
+        binary.saveUsers(loaded);
+        assertEquals(SnapshotFormat.BINARY, SnapshotFormat.forFile(binary.getSnapshotPath()));
+
+        assertSameUser(users.get(0), new DataStorage(dataDir, false, SnapshotFormat.BINARY).loadUsers().get(0));
+    }
+
+    @Test
+    void testConverterRoundTrip() throws Exception {
+        List<User> users = sampleUsers();
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.JSON);
+        storage.saveUsers(users);
+        Path json = storage.getSnapshotPath();
+        Path binary = Files.createDirectory(dataDir.resolve("converted")).resolve("users.bin");
+        Path restoredDir = Files.createDirectory(dataDir.resolve("restored"));
+
+        assertEquals(2, SnapshotConverter.convert(json, binary));
+        assertTrue(Files.size(binary) * 4 < Files.size(json), "Binary snapshot should be far smaller");
+        assertEquals(2, SnapshotConverter.convert(binary, restoredDir.resolve("users.json")));
+
+        List<User> loaded = new DataStorage(restoredDir, false, SnapshotFormat.JSON).loadUsers();
+        for (int i = 0; i < users.size(); i++) {
+            assertSameUser(users.get(i), loaded.get(i));
+        }
+    }
+
+    @Test
+    void testRejectsUnknownBinaryVersion() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.BINARY);
+        storage.saveUsers(sampleUsers());
+        Path snapshot = storage.getSnapshotPath();
+        try (RandomAccessFile file = new RandomAccessFile(snapshot.toFile(), "rw")) {
+            file.seek(4);
+            file.write(99);
+        }
+        IOException error = assertThrows(IOException.class, () -> SnapshotFormat.BINARY.newCodec()
+                .index(snapshot.toFile(), (username, password) -> { }));
+        assertTrue(error.getMessage().contains("version 99"));
+    }
+
+    @Test
+    void testFailedBackgroundWriteIsRetried() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.JSON);
+        UserRepository repository = loadRepository(storage);
+        storage.saveUsers(repository.getAllUsers());
+        // A file where the per-user directory should be makes the write fail
+        Path userFiles = dataDir.resolve("users");
+        Files.deleteIfExists(userFiles);
+        Files.createFile(userFiles);
+
+        repository.findByUsername("user1").get().getWallet()
+                .addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        Thread.sleep(300);
+        assertEquals(1, storage.getDirtyCount());
+        Files.delete(userFiles);
+
+        Path userFile = userFiles.resolve("000001").resolve("user1.json");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(userFile) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.exists(userFile), "Retried without another change");
+        assertEquals(0, storage.getDirtyCount());
+        storage.close();
+    }
+
+    @Test
+    void testOnlyChangedUsersAreWritten() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.JSON);
+        UserRepository repository = loadRepository(storage);
+        storage.saveUsers(repository.getAllUsers());
+        Path snapshotPath = storage.getSnapshotPath();
+        byte[] snapshot = Files.readAllBytes(snapshotPath);
+
+        repository.findByUsername("user1").get().getWallet()
+                .addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        assertEquals(1, storage.getDirtyCount());
+        storage.flush();
+        assertEquals(0, storage.getDirtyCount());
+        // Stamped with the generation they were written on top of
+        Path userFiles = dataDir.resolve("users").resolve("000001");
+        assertTrue(Files.exists(userFiles.resolve("user1.json")));
+        assertFalse(Files.exists(userFiles.resolve("user2.json")));
+        assertArrayEquals(snapshot, Files.readAllBytes(snapshotPath), "Snapshot must not be rewritten");
+
+        UserRepository reloaded = loadRepository(new DataStorage(dataDir, false, SnapshotFormat.JSON));
+        assertEquals(1000, reloaded.findByUsername("user1").get().getWallet().getBalance());
+        assertEquals("password2", reloaded.findByUsername("user2").get().getPassword());
+
+        // A full snapshot covers the per-user file
+        storage.saveUsers(repository.getAllUsers());
+        assertFalse(Files.exists(userFiles), "Superseded by generation 2");
+        assertEquals(1000, loadRepository(new DataStorage(dataDir, false, SnapshotFormat.JSON))
+                .findByUsername("user1").get().getWallet().getBalance());
+    }
+
+    @Test
+    void testUserFileLeftByInterruptedSaveIsIgnored() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.JSON);
+        UserRepository repository = loadRepository(storage);
+        storage.saveUsers(repository.getAllUsers());
+        Wallet wallet = repository.findByUsername("user1").get().getWallet();
+        wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        storage.flush();
+        Path userFile = dataDir.resolve("users").resolve("000001").resolve("user1.json");
+        byte[] stale = Files.readAllBytes(userFile);
+
+        wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Bonus", 500, "", "user1"));
+        storage.saveUsers(repository.getAllUsers());
+        // As if the save stopped after committing generation 2, before removing the older per-user files
+        Files.createDirectories(userFile.getParent());
+        Files.write(userFile, stale);
+
+        User restored = loadRepository(new DataStorage(dataDir, false, SnapshotFormat.JSON))
+                .findByUsername("user1").get();
+        assertEquals(1500, restored.getWallet().getBalance(), "The newer snapshot must win");
+    }
+
+    @Test
+    void testChangesAreFlushedInTheBackground() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.BINARY);
+        UserRepository repository = loadRepository(storage);
+        User user = repository.findByUsername("user2").get();
+        for (int i = 0; i < 100; i++) {
+            user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Gift", 1, "", "user2"));
+        }
+        storage.saveChanges(repository::getAllUsers);
+
+        Path userFile = dataDir.resolve("users").resolve("000000").resolve("user2.bin");
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!Files.exists(userFile) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(Files.exists(userFile), "Flusher must write the changed user");
+
+        user.getWallet().addBudget(new Budget("Gift", 50, "user2"));
+        storage.close();
+
+        User restored = loadRepository(new DataStorage(dataDir, false, SnapshotFormat.BINARY))
+                .findByUsername("user2").get();
+        assertEquals(100, restored.getWallet().getBalance());
+        assertTrue(restored.getWallet().getBudgetForCategory("Gift").isPresent(), "close() must write pending changes");
+    }
+
+    @Test
+    void testTornSnapshotFallsBackToPreviousGeneration() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.BINARY);
+        UserRepository repository = loadRepository(storage);
+        repository.findByUsername("user1").get().getWallet()
+                .addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 1000, "", "user1"));
+        storage.saveUsers(repository.getAllUsers());
+        Path previous = storage.getSnapshotPath();
+        repository.findByUsername("user1").get().getWallet()
+                .addTransaction(new Transaction(Transaction.Type.INCOME, "Bonus", 500, "", "user1"));
+        storage.saveUsers(repository.getAllUsers());
+        storage.close();
+
+        // Cut short as by a crash that the manifest outlived, e.g. on a disk that reorders writes
+        Path newest = storage.getSnapshotPath();
+        try (RandomAccessFile file = new RandomAccessFile(newest.toFile(), "rw")) {
+            file.setLength(file.length() / 2);
+        }
+
+        DataStorage recovered = new DataStorage(dataDir, false, SnapshotFormat.BINARY);
+        UserRepository reloaded = loadRepository(recovered);
+        assertEquals(1000, reloaded.findByUsername("user1").get().getWallet().getBalance());
+        assertEquals(previous, recovered.getSnapshotPath());
+        RecoveryReport report = recovered.getRecoveryReport();
+        assertEquals(previous.getFileName().toString(), report.getSnapshot());
+        assertEquals(List.of(newest.getFileName().toString()), report.getSkipped());
+        assertEquals(2, report.getUsers());
+    }
+
+    @Test
+    void testRefusesToStartWithoutValidGeneration() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.JSON);
+        storage.saveUsers(sampleUsers());
+        Files.writeString(storage.getSnapshotPath(), "[");
+
+        assertThrows(java.io.UncheckedIOException.class,
+                () -> new DataStorage(dataDir, false, SnapshotFormat.JSON).loadUsers());
+    }
+
+    @Test
+    void testOldGenerationsArePruned() throws Exception {
+        DataStorage storage = new DataStorage(dataDir, false, SnapshotFormat.JSON);
+        List<User> users = sampleUsers();
+        for (int i = 0; i < 5; i++) {
+            storage.saveUsers(users);
+        }
+        List<SnapshotGenerations.Generation> kept = new SnapshotGenerations(dataDir, 3, false).read();
+        assertEquals(3, kept.size());
+        assertEquals("users-000005.json", kept.get(0).fileName);
+        assertFalse(Files.exists(dataDir.resolve("users-000002.json")));
+        assertTrue(Files.exists(dataDir.resolve("users-000003.json")));
+    }
+
+    private static List<String> cells(RollupCube rollup) {
+        List<String> cells = new ArrayList<>();
+        rollup.forEachCell((month, category, type, sum, count) ->
+                cells.add(month + " " + category + " " + type + " " + sum + " " + count));
+        return cells;
+    }
+
+    @Test
+    void testRollupIsPersistedWithSnapshot() {
+        for (SnapshotFormat snapshotFormat : SnapshotFormat.values()) {
+            Path dir = dataDir.resolve(snapshotFormat.name());
+            List<User> users = sampleUsers();
+            List<String> expected = cells(users.get(0).getWallet().getRollup());
+            assertEquals(3, expected.size());
+            new DataStorage(dir, false, snapshotFormat).saveUsers(users);
+
+            List<User> loaded = new DataStorage(dir, false, snapshotFormat).loadUsers();
+            assertEquals(expected, cells(loaded.get(0).getRollup()), snapshotFormat.name());
+            assertEquals(3, loaded.get(0).getRollup().getTransactionCount());
+            assertFalse(loaded.get(0).isWalletLoaded(), "Rollup must be read without the transactions");
+            assertEquals(List.of(), cells(loaded.get(1).getRollup()));
+
+            // Restored on load, then maintained as transactions are added
+            Wallet wallet = loaded.get(0).getWallet();
+            assertEquals(expected, cells(wallet.getRollup()));
+            Transaction late = new Transaction(Transaction.Type.EXPENSE, "Food", 1, "", "binary");
+            late.setDate(LocalDateTime.of(1999, 12, 1, 0, 0));
+            wallet.addTransaction(late);
+            assertEquals(9999 + 100, wallet.getRollup().getSum(YearMonth.of(1999, 12), "Food", Transaction.Type.EXPENSE));
+            assertEquals(2, wallet.getRollup().getCount(YearMonth.of(1999, 12), "Food", Transaction.Type.EXPENSE));
+            assertEquals(4, wallet.getRollup().getTransactionCount());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.finance.server;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import com.finance.service.AuthService;
+import com.finance.service.FinanceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FinanceServerTest {
+    @TempDir
+    Path dataDir;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private UserRepository userRepository;
+    private FinanceServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository, new DataStorage(dataDir, false));
+        for (String username : new String[] {"alice", "bob"}) {
+            User user = new User(username, "pw");
+            user.setWallet(new Wallet());
+            userRepository.addUser(user);
+        }
+        server = new FinanceServer(authService, new FinanceService(authService), new InetSocketAddress("localhost", 0));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> send(String method, String path, String token, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private JsonNode json(HttpResponse<String> response) throws Exception {
+        return objectMapper.readTree(response.body());
+    }
+
+    private String login(String username) throws Exception {
+        HttpResponse<String> response = send("POST", "/api/sessions", null,
+                "{\"username\": \"" + username + "\", \"password\": \"pw\"}");
+        assertEquals(200, response.statusCode());
+        return json(response).get("token").asText();
+    }
+
+    @Test
+    void testIncomeExpenseAndStatistics() throws Exception {
+        String token = login("alice");
+        HttpResponse<String> income = send("POST", "/api/income", token,
+                "{\"category\": \"Зарплата\", \"amount\": 1500.25, \"description\": \"Аванс\"}");
+        assertEquals(200, income.statusCode());
+        assertEquals(1500.25, json(income).get("balance").asDouble());
+        send("POST", "/api/expense", token, "{\"category\": \"Food\", \"amount\": 200}");
+
+        JsonNode statistics = json(send("GET", "/api/statistics", token, null));
+        assertEquals(130025, statistics.get("balanceMinor").asLong());
+        assertEquals(20000, statistics.get("expensesByCategory").get("Food").asLong());
+
+        String today = LocalDate.now().toString();
+        JsonNode period = json(send("GET", "/api/period?from=" + today + "&to=" + today, token, null));
+        assertEquals(2, period.get("count").asInt());
+        assertEquals(1300.25, period.get("balance").asDouble());
+        JsonNode transactions = json(send("GET", "/api/transactions?from=" + today + "&to=" + today, token, null));
+        assertEquals(2, transactions.size());
+        assertEquals("Аванс", transactions.get(0).get("description").asText());
+    }
+
+    @Test
+    void testTransactionsArePaged() throws Exception {
+        String token = login("alice");
+        for (int i = 1; i <= 5; i++) {
+            send("POST", "/api/income", token, "{\"category\": \"Зарплата\", \"amount\": " + i + "}");
+        }
+        String today = LocalDate.now().toString();
+        String path = "/api/transactions?from=" + today + "&to=" + today;
+
+        JsonNode page = json(send("GET", path + "&offset=1&limit=3", token, null));
+        assertEquals(3, page.size());
+        assertEquals(2, page.get(0).get("amount").asDouble());
+        assertEquals(1, json(send("GET", path + "&offset=4&limit=3", token, null)).size());
+        assertEquals(5, json(send("GET", path, token, null)).size());
+        assertEquals(400, send("GET", path + "&limit=0", token, null).statusCode());
+    }
+
+    @Test
+    void testLowBalanceWarningIsReturned() throws Exception {
+        String token = login("alice");
+        send("POST", "/api/income", token, "{\"category\": \"Зарплата\", \"amount\": 5000}");
+        JsonNode ok = json(send("POST", "/api/expense", token, "{\"category\": \"Food\", \"amount\": 100}"));
+        assertNull(ok.get("warning"));
+
+        JsonNode low = json(send("POST", "/api/expense", token, "{\"category\": \"Rent\", \"amount\": 4500}"));
+        assertEquals(400, low.get("balance").asDouble());
+        assertTrue(low.get("warning").asText().contains("низкий баланс"), low.toString());
+    }
+
+    @Test
+    void testTransferWithIdempotencyKey() throws Exception {
+        String token = login("alice");
+        String body = "{\"to\": \"bob\", \"amount\": 10, \"idempotencyKey\": \"order-1\"}";
+        HttpResponse<String> first = send("POST", "/api/transfers", token, body);
+        HttpResponse<String> retry = send("POST", "/api/transfers", token, body);
+
+        assertEquals(201, first.statusCode());
+        assertEquals(200, retry.statusCode());
+        assertEquals("DUPLICATE", json(retry).get("status").asText());
+        assertEquals(json(first).get("transferId"), json(retry).get("transferId"));
+        assertEquals(1000, userRepository.findByUsername("bob").get().getWallet().getBalanceMinor());
+
+        HttpResponse<String> rejected = send("POST", "/api/transfers", token, "{\"to\": \"nobody\", \"amount\": 10}");
+        assertEquals(422, rejected.statusCode());
+        assertEquals("Unknown recipient: nobody", json(rejected).get("reason").asText());
+
+        HttpResponse<String> batch = send("POST", "/api/transfers/batch", token,
+                "{\"transfers\": [{\"to\": \"bob\", \"amount\": 1}, {\"to\": \"bob\", \"amount\": 2}]}");
+        assertEquals(200, batch.statusCode());
+        assertEquals(2, json(batch).size());
+        assertEquals(1300, userRepository.findByUsername("bob").get().getWallet().getBalanceMinor());
+    }
+
+    @Test
+    void testErrors() throws Exception {
+        assertEquals(401, send("GET", "/api/statistics", null, null).statusCode());
+        assertEquals(401, send("GET", "/api/statistics", "no-such-token", null).statusCode());
+        assertEquals(401, send("POST", "/api/sessions", null,
+                "{\"username\": \"alice\", \"password\": \"wrong\"}").statusCode());
+
+        String token = login("alice");
+        assertEquals(404, send("GET", "/api/unknown", token, null).statusCode());
+        assertEquals(400, send("POST", "/api/income", token, "{\"category\": \"Food\"}").statusCode());
+        assertEquals(400, send("POST", "/api/income", token, "{not json").statusCode());
+        assertEquals(400, send("POST", "/api/income", token, "{\"category\": \"Food\", \"amount\": 1e300}").statusCode());
+        assertEquals(400, send("GET", "/api/period?from=yesterday&to=today", token, null).statusCode());
+        HttpResponse<String> invalid = send("POST", "/api/expense", token, "{\"category\": \"\", \"amount\": 5}");
+        assertEquals(400, invalid.statusCode());
+        assertTrue(json(invalid).has("error"));
+
+        assertEquals(200, send("DELETE", "/api/sessions", token, null).statusCode());
+        assertEquals(401, send("GET", "/api/statistics", token, null).statusCode());
+    }
+}
@@ -2,9 +2,11 @@ package com.finance.service;
 
 import com.finance.model.User;
 import com.finance.model.Wallet;
+import com.finance.model.WalletStatistics;
 import com.finance.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import java.util.Map;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FinanceServiceTest {
@@ -82,4 +84,98 @@ public class FinanceServiceTest {
         boolean result = financeService.addExpense(null, 100, "Null category");
         assertFalse(result, "Should not add expense with null category");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSessionsAreIndependent() {
+        User alice = new User("alice", "pw");
+        alice.setWallet(new Wallet());
+        User bob = new User("bob", "pw");
+        bob.setWallet(new Wallet());
+        userRepository.addUser(alice);
+        userRepository.addUser(bob);
+
+        Session aliceSession = authService.openSession("alice", "pw").orElseThrow();
+        Session bobSession = authService.openSession("bob", "pw").orElseThrow();
+        assertNotEquals(aliceSession.getToken(), bobSession.getToken());
+        assertSame(aliceSession, authService.findSession(aliceSession.getToken()).orElseThrow());
+
+        financeService.addIncome(aliceSession, "Salary", 5000, "");
+        financeService.addIncome(bobSession, "Salary", 3000, "");
+        financeService.transfer(aliceSession, "bob", 1000, "Rent share");
+
+        assertEquals(4000, financeService.getBalance(aliceSession));
+        assertEquals(4000, financeService.getBalance(bobSession));
+        assertEquals(0, financeService.getBalance(), "The CLI session must not see other sessions' data");
+    }
+
+    @Test
+    void testClosedSessionIsRejected() {
+        User alice = new User("alice", "pw");
+        alice.setWallet(new Wallet());
+        userRepository.addUser(alice);
+
+        Session session = authService.openSession("alice", "pw").orElseThrow();
+        assertFalse(authService.openSession("alice", "wrong").isPresent());
+        authService.closeSession(session);
+
+        assertFalse(session.isOpen());
+        assertFalse(authService.findSession(session.getToken()).isPresent());
+        assertFalse(financeService.addIncome(session, "Salary", 100, ""), "Closed session must not change the wallet");
+        assertEquals(0, alice.getWallet().getBalance());
+    }
+
+    @Test
+    void testIdleSessionsExpire() throws InterruptedException {
+        User alice = new User("alice", "pw");
+        alice.setWallet(new Wallet());
+        userRepository.addUser(alice);
+        authService.setSessionIdleTimeoutMillis(200);
+
+        Session active = authService.openSession("alice", "pw").orElseThrow();
+        Session idle = authService.openSession("alice", "pw").orElseThrow();
+        Session forgotten = authService.openSession("alice", "pw").orElseThrow();
+        for (int i = 0; i < 6; i++) {
+            Thread.sleep(50);
+            assertTrue(financeService.addIncome(active, "Salary", 1, ""));
+        }
+        assertTrue(authService.findSession(active.getToken()).isPresent(), "Operations keep a session alive");
+        assertFalse(authService.findSession(idle.getToken()).isPresent());
+        assertFalse(idle.isOpen());
+        assertFalse(financeService.addIncome(idle, "Salary", 1, ""));
+
+        // Tokens nobody looks up again are swept out by a later login
+        authService.openSession("alice", "pw").orElseThrow();
+        assertFalse(forgotten.isOpen());
+        // The active session, the new one and the CLI session, which never expires
+        assertEquals(3, authService.getOpenSessionCount());
+        assertTrue(authService.getCurrentSession().isOpen());
+        assertTrue(financeService.addIncome(active, "Salary", 1, ""));
+    }
+
+    @Test
+    void testStatisticsSnapshot() {
+        financeService.addIncome("Salary", 5000, "Monthly salary");
+        financeService.addExpense("Food", 300, "Groceries");
+        financeService.addExpense("Food", 250.5, "Restaurant");
+        financeService.addExpense("Rent", 2000, "Flat");
+        financeService.setBudget("Food", 500);
+
+        WalletStatistics statistics = financeService.getStatistics();
+        assertEquals(financeService.getBalance(), statistics.getBalance());
+        assertEquals(500000, statistics.getTotalIncomeMinor());
+        assertEquals(255050, statistics.getTotalExpensesMinor());
+        assertEquals(4, statistics.getTransactionCount());
+        assertEquals(55050L, statistics.getExpensesByCategory().get("Food"));
+        assertEquals(Map.of("Salary", 500000L), statistics.getIncomeByCategory());
+
+        WalletStatistics.BudgetStatus food = statistics.getBudgets().get(0);
+        assertEquals("Food", food.getCategory());
+        assertEquals(-5050, food.getRemainingMinor());
+        assertTrue(food.isExceeded());
+
+        // A snapshot does not follow later changes and cannot be modified
+        financeService.addExpense("Food", 100, "Snack");
+        assertEquals(55050L, statistics.getExpensesByCategory().get("Food"));
+        assertThrows(UnsupportedOperationException.class, () -> statistics.getBudgets().clear());
+    }
+}
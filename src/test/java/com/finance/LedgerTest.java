@@ -0,0 +1,207 @@
+package com.finance.service;
+
+import com.finance.model.Money;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LedgerTest {
+    @TempDir
+    Path dataDir;
+
+    private UserRepository userRepository;
+    private DataStorage dataStorage;
+    private Ledger ledger;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        for (String username : new String[] {"alice", "bob", "carol"}) {
+            User user = new User(username, "pw");
+            user.setWallet(new Wallet());
+            userRepository.addUser(user);
+        }
+        dataStorage = new DataStorage(dataDir, false);
+        ledger = new Ledger(userRepository, dataStorage, new BudgetAlertEngine(), 3);
+    }
+
+    private Wallet wallet(String username) {
+        return userRepository.findByUsername(username).get().getWallet();
+    }
+
+    @Test
+    void testLegsShareTransferId() {
+        TransferResult result = ledger.transfer(new TransferRequest("alice", "bob", 2550, null));
+
+        assertEquals(TransferResult.Status.POSTED, result.getStatus());
+        Transaction expense = wallet("alice").getTransactions().get(0);
+        Transaction income = wallet("bob").getTransactions().get(0);
+        assertEquals(result.getTransferId(), expense.getTransferId());
+        assertEquals(result.getTransferId(), income.getTransferId());
+        assertNotEquals(expense.getId(), income.getId());
+        assertEquals(Transaction.Type.EXPENSE, expense.getType());
+        assertEquals(Transaction.Type.INCOME, income.getType());
+        assertEquals(-25.5, wallet("alice").getBalance());
+        assertEquals(25.5, wallet("bob").getBalance());
+    }
+
+    @Test
+    void testIdempotencyKeyPostsOnce() {
+        TransferResult first = ledger.transfer(new TransferRequest("alice", "bob", 100, "key-1"));
+        TransferResult retry = ledger.transfer(new TransferRequest("alice", "bob", 100, "key-1"));
+        // Keys are per sender
+        TransferResult other = ledger.transfer(new TransferRequest("bob", "alice", 100, "key-1"));
+        TransferResult misuse = ledger.transfer(new TransferRequest("alice", "bob", 200, "key-1"));
+
+        assertEquals(TransferResult.Status.POSTED, first.getStatus());
+        assertEquals(TransferResult.Status.DUPLICATE, retry.getStatus());
+        assertEquals(first.getTransferId(), retry.getTransferId());
+        assertEquals(TransferResult.Status.POSTED, other.getStatus());
+        assertEquals(TransferResult.Status.REJECTED, misuse.getStatus());
+        assertEquals(2, wallet("alice").getTransactions().size());
+        assertEquals(0, wallet("alice").getBalanceMinor());
+    }
+
+    @Test
+    void testIdempotencyCacheIsBounded() {
+        for (int i = 0; i < 5; i++) {
+            ledger.transfer(new TransferRequest("alice", "bob", 1, "key-" + i));
+        }
+        assertEquals(3, ledger.getIdempotencyKeyCount());
+        // The oldest key was forgotten, so it is posted again
+        assertEquals(TransferResult.Status.POSTED,
+                ledger.transfer(new TransferRequest("alice", "bob", 1, "key-0")).getStatus());
+        assertEquals(TransferResult.Status.DUPLICATE,
+                ledger.transfer(new TransferRequest("alice", "bob", 1, "key-4")).getStatus());
+    }
+
+    @Test
+    void testBatchIsPostedAtomically() {
+        List<TransferRequest> batch = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String[] users = {"alice", "bob", "carol"};
+            batch.add(new TransferRequest(users[i % 3], users[(i + 1) % 3], 1 + i % 7, i % 10 == 0 ? "k" + i : null));
+        }
+        batch.add(new TransferRequest("alice", "bob", 1, "k0"));
+
+        List<TransferResult> results = ledger.transferBatch(batch);
+        assertEquals(3001, results.size());
+        assertEquals(3000, results.stream().filter(r -> r.getStatus() == TransferResult.Status.POSTED).count());
+        assertEquals(TransferResult.Status.DUPLICATE, results.get(3000).getStatus());
+        assertEquals(results.get(0).getTransferId(), results.get(3000).getTransferId());
+        assertEquals(2000, wallet("alice").getTransactions().size());
+        assertEquals(0, wallet("alice").getBalanceMinor() + wallet("bob").getBalanceMinor()
+                + wallet("carol").getBalanceMinor());
+    }
+
+    @Test
+    void testInvalidTransferRejectsWholeBatch() {
+        List<TransferResult> results = ledger.transferBatch(List.of(
+                new TransferRequest("alice", "bob", 100, "key-1"),
+                new TransferRequest("alice", "nobody", 100, null),
+                new TransferRequest("bob", "carol", 0, null)));
+
+        assertEquals("Batch rejected", results.get(0).getReason());
+        assertEquals("Unknown recipient: nobody", results.get(1).getReason());
+        assertTrue(results.get(2).getReason().startsWith("Amount must be positive"));
+        assertTrue(wallet("alice").getTransactions().isEmpty());
+        assertTrue(wallet("bob").getTransactions().isEmpty());
+        // The key of the rejected batch is still free
+        assertEquals(TransferResult.Status.POSTED,
+                ledger.transfer(new TransferRequest("alice", "bob", 100, "key-1")).getStatus());
+    }
+
+    @Test
+    void testSelfTransferIsRejected() {
+        List<TransferResult> results = ledger.transferBatch(List.of(
+                new TransferRequest("alice", "bob", 100, null),
+                new TransferRequest("carol", "carol", 100, null)));
+
+        assertEquals("Sender and recipient are the same user: carol", results.get(1).getReason());
+        assertEquals("Batch rejected", results.get(0).getReason());
+        assertTrue(wallet("carol").getTransactions().isEmpty());
+    }
+
+    @Test
+    void testOverflowingBatchPostsNothing() {
+        List<Transaction> salary = new ArrayList<>();
+        for (long total = 0; Long.MAX_VALUE - total >= Money.MAX_AMOUNT_MINOR; total += Money.MAX_AMOUNT_MINOR) {
+            salary.add(new Transaction(Transaction.Type.INCOME, "Salary", Money.MAX_AMOUNT_MINOR, "", "carol", null));
+        }
+        wallet("carol").addTransactions(salary);
+        // alice's legs fit, carol's income leg would overflow her total and is checked before alice is changed
+        List<TransferResult> results = ledger.transferBatch(List.of(
+                new TransferRequest("alice", "bob", 100, null),
+                new TransferRequest("alice", "carol", Money.MAX_AMOUNT_MINOR, null),
+                new TransferRequest("bob", "carol", 1, null)));
+
+        assertEquals("Batch rejected", results.get(0).getReason());
+        assertEquals("Totals of carol would overflow", results.get(1).getReason());
+        assertEquals("Totals of carol would overflow", results.get(2).getReason());
+        assertTrue(wallet("alice").getTransactions().isEmpty());
+        assertTrue(wallet("bob").getTransactions().isEmpty());
+        assertEquals(salary.size(), wallet("carol").getTransactions().size());
+    }
+
+    @Test
+    void testOppositeBatchesDoNotDeadlock() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                String from = t % 2 == 0 ? "alice" : "carol";
+                String to = t % 2 == 0 ? "carol" : "alice";
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        ledger.transferBatch(List.of(new TransferRequest(from, "bob", 1, null),
+                                new TransferRequest(from, to, 1, null)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(800, wallet("bob").getBalanceMinor());
+        assertEquals(-400, wallet("alice").getBalanceMinor());
+        assertEquals(-400, wallet("carol").getBalanceMinor());
+    }
+
+    @Test
+    void testBatchIsReplayedFromJournal() {
+        DataStorage journaled = new DataStorage(dataDir, true);
+        userRepository.getAllUsers().forEach(journaled::attach);
+        Ledger journaledLedger = new Ledger(userRepository, journaled, new BudgetAlertEngine());
+        TransferResult result = journaledLedger.transferBatch(List.of(
+                new TransferRequest("alice", "bob", 500, null),
+                new TransferRequest("bob", "carol", 200, null))).get(0);
+        journaled.close();
+
+        UserRepository reloaded = UserRepository.getInstance();
+        reloaded.clear();
+        for (String username : new String[] {"alice", "bob", "carol"}) {
+            User user = new User(username, "pw");
+            user.setWallet(new Wallet());
+            reloaded.addUser(user);
+        }
+        new DataStorage(dataDir, true).replayJournal(reloaded);
+        assertEquals(300, reloaded.findByUsername("bob").get().getWallet().getBalanceMinor());
+        assertEquals(result.getTransferId(),
+                reloaded.findByUsername("alice").get().getWallet().getTransactions().get(0).getTransferId());
+    }
+}
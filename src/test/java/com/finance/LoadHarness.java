@@ -0,0 +1,65 @@
+package com.finance.service;
+
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.UserRepository;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Setup and timing shared by the load benchmarks: users seeded with a large balance, and clients
+ * that each run on their own thread, start together and stop at a common deadline.
+ */
+public final class LoadHarness {
+    public static final String[] CATEGORIES = {"Food", "Rent", "Salary", "Transport", "Fun", "Health", "Gifts"};
+    // Keeps balances far above the low-balance warning returned after expenses
+    private static final double SEED_BALANCE = 1_000_000_000;
+
+    /**
+     * Sends requests until {@link System#nanoTime()} passes the deadline; called on the client's own thread.
+     */
+    public interface Client {
+        void run(long deadline);
+    }
+
+    private LoadHarness() {}
+
+    // Adds a user with password "pw" and a seeded wallet
+    public static User seedUser(UserRepository userRepository, String username) {
+        User user = new User(username, "pw");
+        user.setWallet(new Wallet());
+        user.getWallet().addTransaction(new Transaction(Transaction.Type.INCOME, "Seed", SEED_BALANCE, "", username));
+        userRepository.addUser(user);
+        return user;
+    }
+
+    // Runs the clients for the given time and returns the nanoseconds from their start to the last one finishing
+    public static long run(List<? extends Client> clients, long millis) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        // Written before the latch opens, so every client sees it
+        long[] deadline = new long[1];
+        List<Thread> threads = new ArrayList<>();
+        for (Client client : clients) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                client.run(deadline[0]);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        long begin = System.nanoTime();
+        deadline[0] = begin + millis * 1_000_000;
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return System.nanoTime() - begin;
+    }
+}
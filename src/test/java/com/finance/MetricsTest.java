@@ -0,0 +1,135 @@
+package com.finance.metrics;
+
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import com.finance.service.AuthService;
+import com.finance.service.FinanceService;
+import com.finance.service.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void testHistogramBucketsAreContiguous() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(index == previous || index == previous + 1, "Gap at " + value);
+            assertTrue(LatencyHistogram.highestValue(index) >= value);
+            previous = index;
+        }
+        assertTrue(LatencyHistogram.index(LatencyHistogram.MAX_VALUE) > previous);
+    }
+
+    @Test
+    void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(7);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish latencies from microseconds to tens of milliseconds
+            values[i] = (long) Math.exp(8 + random.nextGaussian() * 1.5);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percent : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percent / 100 * values.length) - 1];
+            long estimate = snapshot.percentile(percent);
+            assertTrue(estimate >= exact && estimate <= exact * 1.016 + 1,
+                    percent + ": " + estimate + " vs " + exact);
+        }
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().percentile(99));
+    }
+
+    @Test
+    void testConcurrentRecording() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    registry.counter("ops").increment();
+                    registry.histogram("latency").record(i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, registry.getCounters().get("ops"));
+        assertEquals(400_000, registry.getLatencySnapshots().get("latency").getCount());
+        assertEquals(99_999, registry.getLatencySnapshots().get("latency").getMax());
+    }
+
+    @Test
+    void testServiceOperationsAreRecorded() {
+        MetricsRegistry metrics = MetricsRegistry.global();
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository, new DataStorage(dataDir, false));
+        FinanceService financeService = new FinanceService(authService);
+        User alice = new User("alice", "pw");
+        alice.setWallet(new Wallet());
+        userRepository.addUser(alice);
+        userRepository.addUser(new User("bob", "pw"));
+
+        long incomes = metrics.histogram("finance.addIncome").getCount();
+        long balances = metrics.histogram("finance.getBalance").getCount();
+        long failures = metrics.counter("auth.loginFailures").get();
+        long duplicates = metrics.cache("ledger.idempotencyKeys").getHits();
+        assertFalse(authService.openSession("alice", "wrong").isPresent());
+        Session session = authService.openSession("alice", "pw").orElseThrow();
+        financeService.addIncome(session, "Salary", 100, "");
+        financeService.transfer(session, "bob", 10, "", "key");
+        financeService.transfer(session, "bob", 10, "", "key");
+        financeService.getBalance(session);
+        authService.saveSnapshot();
+
+        assertEquals(incomes + 1, metrics.histogram("finance.addIncome").getCount());
+        assertEquals(balances + 1, metrics.histogram("finance.getBalance").getCount());
+        assertEquals(failures + 1, metrics.counter("auth.loginFailures").get());
+        assertEquals(duplicates + 1, metrics.cache("ledger.idempotencyKeys").getHits());
+        assertTrue(metrics.histogram("storage.saveUsers").getCount() > 0);
+        Map<String, Long> counters = metrics.getCounters();
+        assertEquals(userRepository.getAllUsers().size(), counters.get("users"));
+        assertEquals(1, counters.get("sessions.open"));
+        assertEquals(3, counters.get("wallets.transactions"));
+        assertTrue(counters.get("wallets.heapBytes") > 0);
+    }
+
+    @Test
+    void testRegistryIsExposedOverJmx() throws Exception {
+        MetricsRegistry.global().counter("test.jmx").add(5);
+        MetricsRegistry.global().registerMBean();
+        MetricsRegistry.global().registerMBean();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MetricsRegistry.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        Object counters = server.getAttribute(name, "Counters");
+        assertTrue(counters.toString().contains("test.jmx"));
+        assertNotNull(server.getAttribute(name, "Latencies"));
+        assertNotNull(server.getAttribute(name, "CacheHitRates"));
+    }
+}
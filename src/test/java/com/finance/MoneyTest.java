@@ -0,0 +1,85 @@
+package com.finance.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    void testFormatMatchesTwoDecimals() {
+        long[] values = {0, 5, 10, 99, 100, 1234, -1, -105, 123456789012L, Long.MAX_VALUE};
+        for (long value : values) {
+            String expected = new java.math.BigDecimal(value).movePointLeft(2).toPlainString();
+            assertEquals(expected, Money.format(value));
+        }
+        assertEquals("-92233720368547758.08", Money.format(Long.MIN_VALUE));
+    }
+
+    @Test
+    void testConversions() {
+        assertEquals(10, Money.ofDouble(0.1));
+        assertEquals(30, Money.ofDouble(0.1 + 0.2));
+        // Half a minor unit rounds away from zero either way
+        assertEquals(13, Money.ofDouble(0.125));
+        assertEquals(-13, Money.ofDouble(-0.125));
+        assertEquals(-12, Money.ofDouble(-0.124));
+        assertEquals(1235, Money.parse("12.345"));
+        assertEquals(-50, Money.parse(" -0.5 "));
+        assertEquals(12.34, Money.toDouble(1234));
+    }
+
+    @Test
+    void testRejectsAmountsOutOfRange() {
+        assertFalse(Money.isValid(Double.POSITIVE_INFINITY));
+        assertFalse(Money.isValid(Double.NaN));
+        assertFalse(Money.isValid(1e300));
+        assertTrue(Money.isValid(-1e13));
+        assertThrows(IllegalArgumentException.class, () -> Money.ofDouble(1e300));
+        assertThrows(NumberFormatException.class, () -> Money.parse("1e999999999"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("99999999999999"));
+        assertEquals(0, Money.parse("1e-999999999"));
+        assertEquals(Money.MAX_AMOUNT_MINOR, Money.parse("10000000000000"));
+    }
+
+    @Test
+    void testOverflowingTransactionLeavesWalletUnchanged() {
+        Wallet wallet = new Wallet();
+        Transaction large = new Transaction(Transaction.Type.INCOME, "Salary", 1, "", "test");
+        large.setAmountMinor(Long.MAX_VALUE - 5);
+        wallet.addTransaction(large);
+
+        Transaction overflowing = new Transaction(Transaction.Type.INCOME, "Salary", 1, "", "test");
+        assertThrows(ArithmeticException.class, () -> wallet.addTransaction(overflowing));
+        assertThrows(ArithmeticException.class, () -> wallet.addTransactions(java.util.List.of(
+                new Transaction(Transaction.Type.EXPENSE, "Food", 1, "", "test"), overflowing)));
+        assertEquals(1, wallet.getTransactions().size());
+        assertEquals(Long.MAX_VALUE - 5, wallet.getIncomeMinorForCategory("Salary"));
+        assertEquals(0, wallet.getTotalExpensesMinor());
+    }
+
+    @Test
+    void testSumsDoNotDrift() {
+        Wallet wallet = new Wallet();
+        for (int i = 0; i < 100_000; i++) {
+            wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Tips", 0.1, "", "test"));
+        }
+        assertEquals(1_000_000, wallet.getTotalIncomeMinor());
+        assertEquals(10000.0, wallet.getTotalIncome());
+    }
+
+    @Test
+    void testReadsDoubleAmountsFromJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        Transaction transaction = objectMapper.readValue(
+                "{\"id\":\"1\",\"type\":\"EXPENSE\",\"category\":\"Food\",\"amount\":19.99}", Transaction.class);
+        assertEquals(1999, transaction.getAmountMinor());
+        assertTrue(objectMapper.writeValueAsString(transaction).contains("\"amount\":19.99"));
+
+        Budget budget = objectMapper.readValue("{\"category\":\"Food\",\"limit\":300.5}", Budget.class);
+        assertEquals(30050, budget.getLimitMinor());
+    }
+}
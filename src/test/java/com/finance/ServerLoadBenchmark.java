@@ -0,0 +1,129 @@
+package com.finance.server;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import com.finance.service.AuthService;
+import com.finance.service.FinanceService;
+import com.finance.service.LoadHarness;
+import com.finance.workload.LatencyRecorder;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Requests per second and latency percentiles of FinanceServer on localhost as the number of
+ * concurrent clients grows. Each client logs in as its own user and sends a mix of 40% income,
+ * 30% expense, 10% transfer and 20% statistics requests, one at a time.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.finance.server.ServerLoadBenchmark [-Dexec.args="5000 1,8,64,256"]
+ */
+public class ServerLoadBenchmark {
+    public static void main(String[] args) throws Exception {
+        long millisPerRun = args.length > 0 ? Long.parseLong(args[0]) : 5000;
+        String counts = args.length > 1 ? args[1] : "1,8,64,256";
+
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository,
+                new DataStorage(Files.createTempDirectory("server-bench"), false));
+        // As at server start-up in Main: without TCP_NODELAY every response waits for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        FinanceServer server = new FinanceServer(authService, new FinanceService(authService),
+                new InetSocketAddress("localhost", 0));
+        server.start();
+        System.out.println("Request threads: " + (server.usesVirtualThreads() ? "virtual" : "platform pool"));
+
+        HttpClient client = HttpClient.newHttpClient();
+        System.out.printf("%8s %12s %10s %10s %10s %10s %8s%n",
+                "clients", "requests/s", "p50 us", "p99 us", "p99.9 us", "max us", "errors");
+        try {
+            for (String count : counts.split(",")) {
+                run(client, server.getPort(), userRepository, Integer.parseInt(count.trim()), millisPerRun);
+            }
+        } finally {
+            server.stop(0);
+            authService.close();
+        }
+    }
+
+    private static void run(HttpClient client, int port, UserRepository userRepository,
+                            int clients, long millis) throws Exception {
+        String base = "http://localhost:" + port + "/api/";
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String username = "load" + clients + "-" + i;
+            LoadHarness.seedUser(userRepository, username);
+            HttpResponse<String> login = client.send(post(base + "sessions", null,
+                    "{\"username\": \"" + username + "\", \"password\": \"pw\"}"), HttpResponse.BodyHandlers.ofString());
+            tokens.add(objectMapper.readTree(login.body()).get("token").asText());
+        }
+
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        AtomicLong errors = new AtomicLong();
+        List<LoadHarness.Client> harnessClients = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String token = tokens.get(i);
+            String friend = "load" + clients + "-" + (i + 1) % clients;
+            LatencyRecorder recorder = new LatencyRecorder();
+            recorders.add(recorder);
+            harnessClients.add(deadline -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    while (System.nanoTime() < deadline) {
+                        int op = random.nextInt(10);
+                        String category = LoadHarness.CATEGORIES[random.nextInt(LoadHarness.CATEGORIES.length)];
+                        String amount = String.valueOf(1 + random.nextInt(10000) / 100.0);
+                        HttpRequest request;
+                        if (op < 4) {
+                            request = post(base + "income", token,
+                                    "{\"category\": \"" + category + "\", \"amount\": " + amount + "}");
+                        } else if (op < 7) {
+                            request = post(base + "expense", token,
+                                    "{\"category\": \"" + category + "\", \"amount\": " + amount + "}");
+                        } else if (op < 8) {
+                            request = post(base + "transfers", token,
+                                    "{\"to\": \"" + friend + "\", \"amount\": " + amount + "}");
+                        } else {
+                            request = HttpRequest.newBuilder(URI.create(base + "statistics"))
+                                    .header("Authorization", "Bearer " + token).GET().build();
+                        }
+                        long begin = System.nanoTime();
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        recorder.record(System.nanoTime() - begin);
+                        if (response.statusCode() >= 300) errors.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    errors.incrementAndGet();
+                }
+            });
+        }
+
+        long elapsed = LoadHarness.run(harnessClients, millis);
+        LatencyRecorder merged = new LatencyRecorder();
+        recorders.forEach(merged::merge);
+        System.out.printf("%8d %,12.0f %10.0f %10.0f %10.0f %10.0f %8d%n", clients, merged.getCount() * 1e9 / elapsed,
+                merged.percentile(50) / 1e3, merged.percentile(99) / 1e3, merged.percentile(99.9) / 1e3,
+                merged.getMax() / 1e3, errors.get());
+    }
+
+    private static HttpRequest post(String uri, String token, String body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        return request.build();
+    }
+}
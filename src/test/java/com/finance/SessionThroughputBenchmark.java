@@ -0,0 +1,70 @@
+package com.finance.service;
+
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Operations per second of one FinanceService as the number of concurrent sessions grows.
+ * Each session runs on its own thread a mix of 40% addIncome, 40% addExpense and 20% getBalance.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.finance.service.SessionThroughputBenchmark [-Dexec.args="2000 1,2,4,8,16,64,256,1024"]
+ */
+public class SessionThroughputBenchmark {
+    public static void main(String[] args) throws Exception {
+        long millisPerRun = args.length > 0 ? Long.parseLong(args[0]) : 2000;
+        String counts = args.length > 1 ? args[1] : "1,2,4,8,16,64,256,1024";
+
+        Path dataDir = Files.createTempDirectory("session-bench");
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository, new DataStorage(dataDir, false));
+        FinanceService financeService = new FinanceService(authService);
+
+        System.out.printf("%10s %14s %16s%n", "sessions", "ops/sec", "ops/sec/session");
+        for (String count : counts.split(",")) {
+            int sessions = Integer.parseInt(count.trim());
+            double opsPerSecond = run(authService, financeService, sessions, millisPerRun);
+            System.out.printf("%10d %,14.0f %,16.0f%n", sessions, opsPerSecond, opsPerSecond / sessions);
+        }
+    }
+
+    private static double run(AuthService authService, FinanceService financeService,
+                              int sessionCount, long millis) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        List<LoadHarness.Client> clients = new ArrayList<>();
+        for (int i = 0; i < sessionCount; i++) {
+            String username = "bench" + sessionCount + "-" + i;
+            LoadHarness.seedUser(authService.getUserRepository(), username);
+            Session session = authService.openSession(username, "pw").get();
+            clients.add(deadline -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long done = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int op = 0; op < 64; op++) {
+                        int kind = random.nextInt(10);
+                        String category = LoadHarness.CATEGORIES[random.nextInt(LoadHarness.CATEGORIES.length)];
+                        if (kind < 4) {
+                            financeService.addIncome(session, category, 1 + random.nextInt(10000) / 100.0, "");
+                        } else if (kind < 8) {
+                            financeService.addExpense(session, category, 1 + random.nextInt(10000) / 100.0, "");
+                        } else {
+                            financeService.getBalance(session);
+                        }
+                    }
+                    done += 64;
+                }
+                operations.add(done);
+            });
+        }
+
+        long elapsed = LoadHarness.run(clients, millis);
+        authService.getUserRepository().clear();
+        return operations.sum() * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,180 @@
+package com.finance.importer;
+
+import com.finance.export.CsvExportOptions;
+import com.finance.export.CsvExporter;
+import com.finance.model.Budget;
+import com.finance.model.Money;
+import com.finance.model.Transaction;
+import com.finance.model.User;
+import com.finance.model.Wallet;
+import com.finance.repository.UserRepository;
+import com.finance.service.AuthService;
+import com.finance.service.BudgetAlert;
+import com.finance.service.FinanceService;
+import com.finance.service.Session;
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionImporterTest {
+    private static final String OFX = "OFXHEADER:100\nDATA:OFXSGML\nVERSION:102\n\n"
+            + "<OFX><BANKMSGSRSV1><STMTTRNRS><STMTRS><BANKTRANLIST>\n"
+            + "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20240305120000.000[-5:EST]\n<TRNAMT>-42.50\n"
+            + "<FITID>2024030501\n<NAME>Coffee &amp; Co\n<MEMO>Card 1234\n</STMTTRN>\n"
+            + "<STMTTRN><TRNTYPE>CREDIT</TRNTYPE><DTPOSTED>20240306</DTPOSTED><TRNAMT>1500.00</TRNAMT>"
+            + "<FITID>2024030602</FITID><NAME>Salary</NAME></STMTTRN>\n"
+            + "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>\n";
+
+    private List<ImportRow> readAll(StatementReader reader) throws Exception {
+        List<ImportRow> rows = new ArrayList<>();
+        ImportRow row;
+        while ((row = reader.next()) != null) {
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    @Test
+    void testReadsOwnCsvExport() throws Exception {
+        Wallet source = new Wallet();
+        Transaction expense = new Transaction(Transaction.Type.EXPENSE, "Food", 12.5, "Bread, milk and \"cheese\"\non two lines", "test");
+        expense.setDate(LocalDateTime.of(2024, 3, 6, 18, 30, 15));
+        source.addTransaction(expense);
+        source.addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 5000, "", "test"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new CsvExporter().export(source, Channels.newChannel(out), new CsvExportOptions());
+
+        Wallet target = new Wallet();
+        ImportResult result = new TransactionImporter().importInto(target, "test",
+                new CsvStatementReader(new StringReader(out.toString(StandardCharsets.UTF_8))));
+
+        assertEquals(2, result.getImported());
+        assertEquals(0, result.getRejected(), String.valueOf(result.getErrors()));
+        Transaction imported = target.getTransactions().get(0);
+        assertEquals(expense.getDescription(), imported.getDescription());
+        assertEquals(expense.getDate(), imported.getDate());
+        assertEquals(source.getBalanceMinor(), target.getBalanceMinor());
+        assertEquals(1250, target.getExpensesMinorForCategory("Food"));
+    }
+
+    @Test
+    void testBankCsvWithSignedAmountsAndErrors() throws Exception {
+        String csv = "﻿Дата;Описание;Сумма;Категория\r\n"
+                + "05.03.2024;Магазин;-1 234,50;Еда\r\n"
+                + "06.03.2024 14:05;Зарплата;\"50 000,00\";\r\n"
+                + "\r\n"
+                + "07.03.2024;Без суммы;;Еда\r\n"
+                + "2024-03-08;Кафе;abc;Еда\r\n";
+        Wallet wallet = new Wallet();
+        ImportResult result = new TransactionImporter().importInto(wallet, "test",
+                new CsvStatementReader(new StringReader(csv)));
+
+        assertEquals(2, result.getImported());
+        assertEquals(2, result.getRejected());
+        assertTrue(result.getErrors().get(0).startsWith("Строка 5"), result.getErrors().get(0));
+        assertEquals(123450, wallet.getExpensesMinorForCategory("Еда"));
+        assertEquals(5000000, wallet.getIncomeMinorForCategory(TransactionImporter.DEFAULT_CATEGORY));
+        assertEquals(LocalDateTime.of(2024, 3, 6, 14, 5), wallet.getTransactions().get(1).getDate());
+    }
+
+    @Test
+    void testAmountSeparators() {
+        assertEquals(123450, TransactionImporter.parseAmount("1 234,50"));
+        assertEquals(123450, TransactionImporter.parseAmount("1,234.50"));
+        assertEquals(-1250, TransactionImporter.parseAmount("-12,5"));
+        assertEquals(123400, TransactionImporter.parseAmount("1234"));
+        // With both separators the last one is the decimal separator
+        assertEquals(123450, TransactionImporter.parseAmount("1.234,50"));
+        assertEquals(-250000, TransactionImporter.parseAmount("-2.500,00"));
+        assertEquals(123450, TransactionImporter.parseAmount("1,234.50"));
+        assertEquals(123456750, TransactionImporter.parseAmount("1.234.567,50"));
+        // An English thousands separator or a Russian decimal comma: rejected rather than guessed
+        assertThrows(IllegalArgumentException.class, () -> TransactionImporter.parseAmount("1,234"));
+        assertThrows(IllegalArgumentException.class, () -> TransactionImporter.parseAmount("1,234,567"));
+        assertThrows(IllegalArgumentException.class, () -> TransactionImporter.parseAmount("12,"));
+        assertThrows(IllegalArgumentException.class, () -> TransactionImporter.parseAmount("1.234,5.0"));
+    }
+
+    @Test
+    void testOfxStatementAndReimport() throws Exception {
+        List<ImportRow> rows = readAll(new OfxStatementReader(new StringReader(OFX)));
+        assertEquals(2, rows.size());
+        assertEquals("Coffee & Co (Card 1234)", rows.get(0).getDescription());
+        assertEquals("2024-03-05 12:00:00", rows.get(0).getDate());
+        assertEquals("2024-03-06", rows.get(1).getDate());
+
+        Wallet wallet = new Wallet();
+        TransactionImporter importer = new TransactionImporter(1, "Банк");
+        ImportResult first = importer.importInto(wallet, "test", new OfxStatementReader(new StringReader(OFX)));
+        assertEquals(2, first.getImported());
+        assertEquals(145750, wallet.getBalanceMinor());
+        assertEquals(4250, wallet.getExpensesMinorForCategory("Банк"));
+
+        ImportResult again = importer.importInto(wallet, "test", new OfxStatementReader(new StringReader(OFX)));
+        assertEquals(0, again.getImported());
+        assertEquals(2, again.getDuplicates(), "Rows with known bank ids must not be imported twice");
+        assertEquals(2, wallet.getTransactions().size());
+    }
+
+    @Test
+    void testSameBankIdFromAnotherAccountIsImported() throws Exception {
+        String other = OFX.replace("<BANKTRANLIST>", "<BANKACCTFROM><BANKID>044525225<ACCTID>40817810099910004312</BANKACCTFROM><BANKTRANLIST>");
+        Wallet wallet = new Wallet();
+        TransactionImporter importer = new TransactionImporter();
+        importer.importInto(wallet, "test", new OfxStatementReader(new StringReader(OFX), "march.ofx"));
+        ImportResult result = importer.importInto(wallet, "test", new OfxStatementReader(new StringReader(other), "march.ofx"));
+
+        assertEquals(2, result.getImported());
+        assertEquals(0, result.getDuplicates());
+        assertEquals("40817810099910004312/2024030501", wallet.getTransactions().get(2).getId());
+        assertEquals(0, importer.importInto(wallet, "test", new OfxStatementReader(new StringReader(other))).getImported());
+    }
+
+    @Test
+    void testOverflowingStatementImportsNothing() throws Exception {
+        Wallet wallet = new Wallet();
+        wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 10_000_000_000_000.0, "", "test"));
+        StringBuilder csv = new StringBuilder("amount\n");
+        // Each row is within the limit for one amount, all of them together overflow the income total
+        for (int i = 0; i < 10_000; i++) {
+            csv.append("10000000000000\n");
+        }
+
+        assertThrows(ArithmeticException.class, () -> new TransactionImporter(1_000, "Банк").importInto(wallet, "test",
+                new CsvStatementReader(new StringReader(csv.toString()))));
+        assertEquals(1, wallet.getTransactions().size());
+        assertEquals(Money.MAX_AMOUNT_MINOR, wallet.getTotalIncomeMinor());
+    }
+
+    @Test
+    void testBatchedImportDefersAlerts() throws Exception {
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository);
+        FinanceService financeService = new FinanceService(authService);
+        User user = new User("importer", "pw");
+        user.setWallet(new Wallet());
+        user.getWallet().addBudget(new Budget("Еда", 1000, "importer"));
+        Session session = authService.setCurrentUser(user);
+
+        List<BudgetAlert> alerts = new ArrayList<>();
+        financeService.getBudgetAlertEngine().subscribe(alerts::add);
+        StringBuilder csv = new StringBuilder("Тип,Категория,Сумма,Описание,Дата\n");
+        for (int i = 0; i < 25_000; i++) {
+            csv.append(i == 0 ? "INCOME,Зарплата,100000" : "EXPENSE,Еда,0.10").append(",,2024-01-01 10:00:00\n");
+        }
+        ImportResult result = financeService.importStatement(session, new CsvStatementReader(new StringReader(csv.toString())));
+
+        assertEquals(25_000, result.getImported());
+        assertEquals(249_990, user.getWallet().getExpensesMinorForCategory("Еда"));
+        assertEquals(1, alerts.size(), "Alerts are evaluated once, after the last batch");
+        assertEquals(BudgetAlert.Level.EXCEEDED, alerts.get(0).getLevel());
+        assertTrue(result.getRowsPerSecond() > 0);
+    }
+}
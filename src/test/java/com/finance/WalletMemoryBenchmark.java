@@ -0,0 +1,57 @@
+package com.finance.model;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Compares retained heap per transaction of the list, columnar and paged wallet stores.
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.finance.model.WalletMemoryBenchmark [-Dexec.args=1000000]
+ */
+public class WalletMemoryBenchmark {
+    private static final String[] CATEGORIES = {"Food", "Rent", "Salary", "Transport", "Fun", "Health", "Gifts"};
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("Transactions per wallet: %d%n", rows);
+        measure("list (ArrayList<Transaction>)", () -> new Wallet(new ListTransactionStore()), rows);
+        measure("columnar", () -> new Wallet(new ColumnarTransactionStore()), rows);
+        measure("paged (mapped segments)", () -> new Wallet(new PagedTransactionStore()), rows);
+    }
+
+    private static void measure(String name, Supplier<Wallet> walletFactory, int rows) {
+        long before = usedHeap();
+        Wallet wallet = fill(walletFactory.get(), rows);
+        long after = usedHeap();
+        long bytes = after - before;
+        System.out.printf("%-32s %,14d bytes  %8.1f bytes/transaction  (balance %.2f)%n",
+                name, bytes, (double) bytes / rows, wallet.getBalance());
+    }
+
+    private static Wallet fill(Wallet wallet, int rows) {
+        Random random = new Random(42);
+        LocalDateTime origin = LocalDateTime.of(2020, 1, 1, 0, 0);
+        for (int i = 0; i < rows; i++) {
+            Transaction.Type type = random.nextInt(4) == 0 ? Transaction.Type.INCOME : Transaction.Type.EXPENSE;
+            Transaction transaction = new Transaction(type, CATEGORIES[random.nextInt(CATEGORIES.length)],
+                    random.nextInt(1_000_000) / 100.0, "", "bench");
+            transaction.setDate(origin.plusMinutes(random.nextInt(5 * 365 * 24 * 60)));
+            wallet.addTransaction(transaction);
+        }
+        return wallet;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,560 @@
+package com.finance.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WalletTest {
+    private static final String[] CATEGORIES = {"Food", "Rent", "Salary", "Transport", "Fun"};
+
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(2022, 1, 1, 12, 0);
+
+    @TempDir
+    Path segmentDir;
+
+    private Wallet randomWallet(int size, long seed) {
+        return randomWallet(new Wallet(new ListTransactionStore()), size, seed);
+    }
+
+    private Wallet randomWallet(Wallet wallet, int size, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < size; i++) {
+            Transaction.Type type = random.nextBoolean() ? Transaction.Type.INCOME : Transaction.Type.EXPENSE;
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            double amount = Math.round(random.nextDouble() * 100000) / 100.0;
+            Transaction transaction = new Transaction(type, category, amount, "tx " + i, "test");
+            transaction.setDate(ORIGIN.plusDays(random.nextInt(3 * 365)));
+            wallet.addTransaction(transaction);
+        }
+        return wallet;
+    }
+
+    private Map<String, Long> recomputeByCategory(Wallet wallet, Transaction.Type type) {
+        return wallet.getTransactions().stream()
+                .filter(t -> t.getType() == type)
+                .collect(Collectors.groupingBy(Transaction::getCategory,
+                        Collectors.summingLong(Transaction::getAmountMinor)));
+    }
+
+    // Totals are kept in minor units, so they must match a recompute exactly
+    private void assertTotalsMatchRecompute(Wallet wallet) {
+        long income = wallet.getTransactions().stream()
+                .filter(t -> t.getType() == Transaction.Type.INCOME)
+                .mapToLong(Transaction::getAmountMinor).sum();
+        long expenses = wallet.getTransactions().stream()
+                .filter(t -> t.getType() == Transaction.Type.EXPENSE)
+                .mapToLong(Transaction::getAmountMinor).sum();
+
+        assertEquals(income, wallet.getTotalIncomeMinor());
+        assertEquals(expenses, wallet.getTotalExpensesMinor());
+        assertEquals(income - expenses, wallet.getBalanceMinor());
+        assertEquals(Money.toDouble(income - expenses), wallet.getBalance());
+
+        Map<String, Long> incomeByCategory = recomputeByCategory(wallet, Transaction.Type.INCOME);
+        Map<String, Long> expensesByCategory = recomputeByCategory(wallet, Transaction.Type.EXPENSE);
+        assertEquals(incomeByCategory.keySet(), wallet.getIncomeByCategory().keySet());
+        assertEquals(expensesByCategory.keySet(), wallet.getExpensesByCategory().keySet());
+        for (String category : CATEGORIES) {
+            assertEquals(incomeByCategory.getOrDefault(category, 0L), wallet.getIncomeMinorForCategory(category));
+            assertEquals(expensesByCategory.getOrDefault(category, 0L), wallet.getExpensesMinorForCategory(category));
+        }
+    }
+
+    @Test
+    void testRunningTotalsMatchRecompute() {
+        assertTotalsMatchRecompute(randomWallet(10000, 42));
+        assertTotalsMatchRecompute(randomWallet(new Wallet(new ColumnarTransactionStore()), 10000, 42));
+    }
+
+    @Test
+    void testEmptyWallet() {
+        Wallet wallet = new Wallet();
+        assertEquals(0, wallet.getBalance());
+        assertEquals(0, wallet.getExpensesForCategory("Food"));
+        assertTrue(wallet.getExpensesByCategory().isEmpty());
+    }
+
+    @Test
+    void testTotalsAfterJsonRoundTrip() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.enableDefaultTyping();
+
+        Wallet original = randomWallet(1000, 7);
+        String json = objectMapper.writeValueAsString(original);
+        Wallet loaded = objectMapper.readValue(json, Wallet.class);
+
+        assertEquals(original.getTransactions().size(), loaded.getTransactions().size());
+        assertEquals(original.getBalanceMinor(), loaded.getBalanceMinor());
+        assertTotalsMatchRecompute(loaded);
+    }
+
+    @Test
+    void testTransactionsListIsReadOnly() {
+        Wallet wallet = randomWallet(10, 1);
+        assertThrows(UnsupportedOperationException.class,
+                () -> wallet.getTransactions().add(new Transaction()));
+    }
+
+    @Test
+    void testPeriodQueriesMatchLinearScan() {
+        assertPeriodQueriesMatchLinearScan(randomWallet(5000, 3));
+        assertPeriodQueriesMatchLinearScan(randomWallet(new Wallet(new ColumnarTransactionStore()), 5000, 3));
+    }
+
+    private void assertPeriodQueriesMatchLinearScan(Wallet wallet) {
+        LocalDate[][] periods = {
+            {LocalDate.of(2022, 1, 1), LocalDate.of(2022, 1, 31)},
+            {LocalDate.of(2022, 3, 15), LocalDate.of(2023, 8, 2)},
+            {LocalDate.of(2023, 2, 1), LocalDate.of(2023, 4, 30)},
+            {LocalDate.of(2022, 5, 10), LocalDate.of(2022, 5, 20)},
+            {LocalDate.of(2021, 1, 1), LocalDate.of(2030, 1, 1)},
+            {LocalDate.of(2023, 1, 1), LocalDate.of(2022, 1, 1)}
+        };
+        for (LocalDate[] period : periods) {
+            LocalDate start = period[0];
+            LocalDate end = period[1];
+            List<Transaction> expected = wallet.getTransactions().stream()
+                    .filter(t -> !t.getDate().toLocalDate().isBefore(start) && !t.getDate().toLocalDate().isAfter(end))
+                    .collect(Collectors.toList());
+            List<Transaction> actual = wallet.getTransactionsBetween(start, end);
+            assertEquals(expected.size(), actual.size());
+            assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+
+            long income = expected.stream().filter(t -> t.getType() == Transaction.Type.INCOME)
+                    .mapToLong(Transaction::getAmountMinor).sum();
+            long expenses = expected.stream().filter(t -> t.getType() == Transaction.Type.EXPENSE)
+                    .mapToLong(Transaction::getAmountMinor).sum();
+            PeriodTotals totals = wallet.getTotalsForPeriod(start, end);
+            assertEquals(expected.size(), totals.getCount());
+            assertEquals(income, totals.getIncomeMinor());
+            assertEquals(expenses, totals.getExpensesMinor());
+        }
+    }
+
+    @Test
+    void testColumnarStoreKeepsTransactionFields() {
+        Transaction original = new Transaction(Transaction.Type.EXPENSE, "Food", 12.34, "Lunch", "test");
+        original.setDate(LocalDateTime.of(2024, 5, 6, 7, 8, 9));
+        Transaction other = new Transaction(Transaction.Type.INCOME, "Salary", 1000, null, "test");
+        other.setId("legacy-id");
+        other.setTransferId("transfer-1");
+
+        ColumnarTransactionStore store = new ColumnarTransactionStore();
+        store.add(original);
+        store.add(other);
+
+        Transaction view = store.get(0);
+        assertEquals(original, view);
+        assertEquals(original.getId(), view.getId());
+        assertEquals(Transaction.Type.EXPENSE, view.getType());
+        assertEquals("Food", view.getCategory());
+        assertEquals(12.34, view.getAmount());
+        assertEquals("Lunch", view.getDescription());
+        assertEquals(original.getDate(), view.getDate());
+        assertEquals("test", view.getUsername());
+        assertNull(view.getTransferId());
+        assertEquals("legacy-id", store.get(1).getId());
+        assertEquals("transfer-1", store.get(1).getTransferId());
+        assertThrows(UnsupportedOperationException.class, () -> view.setAmount(1));
+    }
+
+    @Test
+    void testColumnarWalletJsonRoundTrip() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.enableDefaultTyping();
+
+        Wallet original = randomWallet(new Wallet(new ColumnarTransactionStore()), 500, 11);
+        String json = objectMapper.writeValueAsString(original);
+        assertTrue(json.contains("\"java.util.ArrayList\""));
+
+        Wallet loaded = objectMapper.readValue(json, Wallet.class);
+        assertEquals(original.getTransactions(), loaded.getTransactions());
+        assertEquals(original.getBalanceMinor(), loaded.getBalanceMinor());
+    }
+
+    @Test
+    void testBudgetsAreKeyedByCategory() {
+        Wallet wallet = new Wallet();
+        wallet.addBudget(new Budget("Food", 100, "test"));
+        wallet.addBudget(new Budget("Rent", 500, "test"));
+        wallet.addBudget(new Budget("Food", 300, "test"));
+
+        List<Budget> budgets = wallet.getBudgets();
+        assertEquals(2, budgets.size(), "Setting a budget again replaces it");
+        assertEquals("Rent", budgets.get(0).getCategory());
+        assertEquals(300, wallet.getBudgetForCategory("Food").get().getLimit());
+        assertFalse(wallet.getBudgetForCategory("Never used category").isPresent());
+        assertFalse(wallet.getBudgetForCategory(null).isPresent());
+
+        int size = CategoryDictionary.global().size();
+        assertEquals(0, wallet.getExpensesForCategory("Another unknown category"));
+        assertEquals(size, CategoryDictionary.global().size(), "Queries must not grow the dictionary");
+    }
+
+    @Test
+    void testCategoryDictionaryIds() {
+        CategoryDictionary dictionary = new CategoryDictionary();
+        int food = dictionary.intern("Food");
+        int rent = dictionary.intern("Rent");
+        assertNotEquals(food, rent);
+        assertEquals(food, dictionary.intern(new String("Food")));
+        assertEquals(rent, dictionary.find("Rent"));
+        assertEquals(-1, dictionary.find("Fun"));
+        assertEquals("Rent", dictionary.name(rent));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 2, dictionary.intern("category " + i));
+        }
+        assertEquals("category 99", dictionary.name(101));
+    }
+
+    @Test
+    void testCategoryTableKeepsHighIdsSparse() {
+        int high = CategoryTable.DENSE_IDS + 1_000_000;
+        CategoryTable table = new CategoryTable(2);
+        table.add(3, 0, 5);
+        table.add(high, 1, 7);
+        table.add(high, 1, 1);
+        assertEquals(5, table.get(3, 0));
+        assertEquals(8, table.get(high, 1));
+        assertEquals(0, table.get(high - 1, 1));
+        assertEquals(2, table.size());
+
+        List<Integer> ids = new ArrayList<>();
+        table.forEach((id, values, offset) -> ids.add(id));
+        assertEquals(List.of(3, high), ids);
+        CategoryTable copy = table.copy();
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(8, copy.get(high, 1));
+    }
+
+    @Test
+    void testCategoriesBeyondDenseIds() {
+        CategoryDictionary dictionary = CategoryDictionary.global();
+        for (int i = 0; dictionary.size() <= CategoryTable.DENSE_IDS; i++) {
+            dictionary.intern("dense filler " + i);
+        }
+        String late = "Category interned late";
+        assertTrue(dictionary.intern(late) >= CategoryTable.DENSE_IDS);
+
+        Wallet wallet = new Wallet();
+        wallet.addTransaction(new Transaction(Transaction.Type.EXPENSE, late, 40, "", "test"));
+        wallet.addTransaction(new Transaction(Transaction.Type.EXPENSE, "Food", 10, "", "test"));
+        wallet.addTransaction(new Transaction(Transaction.Type.EXPENSE, late, 2, "", "test"));
+        assertEquals(42, wallet.getExpensesForCategory(late));
+        assertEquals(Map.of(late, 42.0, "Food", 10.0), wallet.getExpensesByCategory());
+
+        AggregateReport scan = wallet.aggregate(TransactionAggregator.DEFAULT, null, null, List.of(late));
+        AggregateReport rollup = wallet.getRollup().report(null, null, List.of(late));
+        assertEquals(4200, scan.getTotals().getExpensesMinor());
+        assertEquals(scan.getByCategory().keySet(), rollup.getByCategory().keySet());
+        assertEquals(4200, rollup.getByCategory().get(late).getExpensesMinor());
+        assertEquals(2, rollup.getByCategory().get(late).getCount());
+    }
+
+    @Test
+    void testPagedStoreSealsOldRows() throws Exception {
+        PagedTransactionStore store = new PagedTransactionStore(segmentDir, 100);
+        Wallet wallet = randomWallet(new Wallet(store), 1000, 5);
+        Wallet reference = randomWallet(1000, 5);
+
+        // Sealed at 200 rows in memory, down to 100 each time
+        assertEquals(9, store.getSegments().size());
+        assertEquals(100, store.getRecentCount());
+        assertEquals(reference.getTransactions().size(), wallet.getTransactions().size());
+        assertTotalsMatchRecompute(wallet);
+        assertPeriodQueriesMatchLinearScan(wallet);
+        try (var files = Files.list(segmentDir)) {
+            assertEquals(0, files.count(), "Segment files are unlinked once mapped");
+        }
+
+        // Same seed, so the rows match the reference except for their random ids
+        for (int i = 0; i < 1000; i++) {
+            Transaction row = wallet.getTransactions().get(i);
+            Transaction original = reference.getTransactions().get(i);
+            assertEquals(original.getType(), row.getType());
+            assertEquals(original.getCategory(), row.getCategory());
+            assertEquals(original.getAmountMinor(), row.getAmountMinor());
+            assertEquals(original.getDescription(), row.getDescription());
+            assertEquals(original.getDate(), row.getDate());
+            assertEquals(original.getUsername(), row.getUsername());
+        }
+        Transaction sealed = wallet.getTransactions().get(0);
+        assertEquals(36, sealed.getId().length());
+        assertNull(sealed.getTransferId());
+        assertThrows(UnsupportedOperationException.class, () -> sealed.setAmount(1));
+    }
+
+    @Test
+    void testPagedStoreKeepsTransferIds() {
+        PagedTransactionStore store = new PagedTransactionStore(segmentDir, 2);
+        Wallet wallet = new Wallet(store);
+        for (int i = 0; i < 6; i++) {
+            Transaction leg = new Transaction(Transaction.Type.EXPENSE, "Перевод", 100L + i, "Перевод", "test",
+                    i % 2 == 0 ? "transfer-" + i : null);
+            if (i == 1) leg.setId("legacy-id");
+            wallet.addTransaction(leg);
+        }
+
+        assertFalse(store.getSegments().isEmpty());
+        for (int i = 0; i < 6; i++) {
+            Transaction row = wallet.getTransactions().get(i);
+            assertEquals(i % 2 == 0 ? "transfer-" + i : null, row.getTransferId());
+            assertEquals(100L + i, row.getAmountMinor());
+            assertEquals("Перевод", row.getDescription());
+        }
+        assertEquals("legacy-id", wallet.getTransactions().get(1).getId());
+        assertThrows(UnsupportedOperationException.class, () -> wallet.getTransactions().get(0).setTransferId("x"));
+    }
+
+    @Test
+    void testFailedSealLeavesWalletUnchanged() throws Exception {
+        // A file where the segment directory should be, so sealing fails
+        Path blocked = Files.createFile(segmentDir.resolve("blocked"));
+        Wallet wallet = new Wallet(new PagedTransactionStore(blocked, 2));
+        for (int i = 0; i < 3; i++) {
+            wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 100, "", "test"));
+        }
+
+        assertThrows(UncheckedIOException.class,
+                () -> wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 100, "", "test")));
+        assertEquals(3, wallet.getTransactions().size());
+        assertEquals(30000, wallet.getTotalIncomeMinor());
+
+        Files.delete(blocked);
+        wallet.addTransaction(new Transaction(Transaction.Type.INCOME, "Salary", 100, "", "test"));
+        assertEquals(4, wallet.getTransactions().size());
+        assertEquals(40000, wallet.getBalanceMinor());
+    }
+
+    @Test
+    void testPagedStoreSummariesMatchRows() {
+        PagedTransactionStore store = new PagedTransactionStore(segmentDir, 64);
+        Wallet wallet = randomWallet(new Wallet(store), 700, 9);
+        for (SegmentSummary summary : store.getSegments()) {
+            List<Transaction> rows = wallet.getTransactions()
+                    .subList(summary.getFirstRow(), summary.getFirstRow() + summary.getRowCount());
+            assertEquals(rows.stream().filter(t -> t.getType() == Transaction.Type.INCOME)
+                    .mapToLong(Transaction::getAmountMinor).sum(), summary.getTotalIncome());
+            assertEquals(rows.stream().filter(t -> t.getType() == Transaction.Type.EXPENSE)
+                    .collect(Collectors.groupingBy(Transaction::getCategory,
+                            Collectors.summingLong(Transaction::getAmountMinor))), summary.getExpensesByCategory());
+            assertEquals(rows.stream().map(Transaction::getDate).min(LocalDateTime::compareTo).get(), summary.getMinDate());
+            assertEquals(rows.stream().map(Transaction::getDate).max(LocalDateTime::compareTo).get(), summary.getMaxDate());
+        }
+    }
+
+    @Test
+    void testPagedStoreCategoryScanSkipsSegments() {
+        PagedTransactionStore store = new PagedTransactionStore(segmentDir, 50);
+        Wallet wallet = randomWallet(new Wallet(store), 300, 13);
+        // A category that only occurs in the rows still held in memory
+        Transaction late = new Transaction(Transaction.Type.EXPENSE, "Taxes", 10, "", "test");
+        wallet.addTransaction(late);
+
+        Set<String> categories = Set.of("Food", "Taxes");
+        List<Transaction> expected = wallet.getTransactions().stream()
+                .filter(t -> categories.contains(t.getCategory())).collect(Collectors.toList());
+        assertEquals(expected, wallet.streamTransactions(categories).collect(Collectors.toList()));
+        assertEquals(List.of(late), wallet.streamTransactions(Set.of("Taxes")).collect(Collectors.toList()));
+        assertTrue(store.getSegments().stream().noneMatch(s -> s.mayContainAny(Set.of("Taxes"))));
+    }
+
+    @Test
+    void testParallelAggregateEqualsSerial() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TransactionAggregator serial = new TransactionAggregator(Integer.MAX_VALUE, 1000, pool);
+            TransactionAggregator parallel = new TransactionAggregator(0, 1000, pool);
+            List<Wallet> wallets = List.of(randomWallet(20_000, 17),
+                    randomWallet(new Wallet(new ColumnarTransactionStore()), 20_000, 17),
+                    randomWallet(new Wallet(new PagedTransactionStore(segmentDir, 3000)), 20_000, 17));
+            LocalDate start = ORIGIN.toLocalDate().plusDays(100);
+            LocalDate end = start.plusMonths(7).minusDays(3);
+            for (Wallet wallet : wallets) {
+                // Uncategorized and undated
+                Transaction undated = new Transaction(Transaction.Type.EXPENSE, null, 5, "", "test");
+                undated.setDate(null);
+                wallet.addTransaction(undated);
+                for (Set<String> categories : Arrays.asList(null, Set.of("Food", "Fun", "Unknown"))) {
+                    for (LocalDate[] range : new LocalDate[][] {{null, null}, {start, end}, {start, null}}) {
+                        AggregateReport expected = wallet.aggregate(serial, range[0], range[1], categories);
+                        AggregateReport actual = wallet.aggregate(parallel, range[0], range[1], categories);
+                        assertEquals(1, expected.getChunks());
+                        // Only rows left after the segment summaries and the date index are chunked
+                        assertTrue(actual.getChunks() >= 1 && actual.getChunks() <= 21);
+                        assertEquals(expected, actual);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testAggregateReadsOnlyRowsNotSummarized() {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        TransactionAggregator aggregator = new TransactionAggregator(0, 10, pool);
+        PagedTransactionStore store = new PagedTransactionStore(segmentDir, 100);
+        Wallet paged = new Wallet(store);
+        Wallet reference = new Wallet();
+        for (int i = 0; i < 1000; i++) {
+            for (Wallet wallet : List.of(paged, reference)) {
+                Transaction transaction = new Transaction(i % 3 == 0 ? Transaction.Type.INCOME : Transaction.Type.EXPENSE,
+                        CATEGORIES[i % CATEGORIES.length], i + 1, "", "test");
+                transaction.setDate(ORIGIN.plusHours(6L * i));
+                wallet.addTransaction(transaction);
+            }
+        }
+        assertEquals(9, store.getSegments().size());
+
+        // Rows 150 to 849, four a day: segments 2 to 7 lie wholly within, segments 1 and 8 only half
+        LocalDate start = ORIGIN.plusHours(6L * 150).toLocalDate();
+        LocalDate end = ORIGIN.plusHours(6L * 849).toLocalDate();
+        try {
+            for (Set<String> categories : Arrays.asList(null, Set.of("Food", "Rent"))) {
+                AggregateReport expected = reference.aggregate(aggregator, start, end, categories);
+                AggregateReport actual = paged.aggregate(aggregator, start, end, categories);
+                assertEquals(expected, actual);
+                // The date index narrows the scan to the 700 rows in range
+                assertEquals(70, expected.getChunks());
+                assertTrue(actual.getChunks() < expected.getChunks(), actual.getChunks() + " chunks");
+
+                assertEquals(reference.aggregate(aggregator, null, null, categories),
+                        paged.aggregate(aggregator, null, null, categories));
+            }
+            // Unbounded, only the 100 recent rows are read
+            assertEquals(10, paged.aggregate(aggregator, null, null, null).getChunks());
+            assertEquals(100, reference.aggregate(aggregator, null, null, null).getChunks());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testAggregateMatchesLinearScan() {
+        Wallet wallet = randomWallet(5000, 19);
+        LocalDate start = ORIGIN.toLocalDate().plusDays(40);
+        LocalDate end = start.plusDays(200);
+        Set<String> categories = Set.of("Food", "Salary");
+        AggregateReport report = wallet.aggregate(start, end, categories);
+
+        List<Transaction> matching = wallet.getTransactions().stream()
+                .filter(t -> categories.contains(t.getCategory()))
+                .filter(t -> !t.getDate().toLocalDate().isBefore(start) && !t.getDate().toLocalDate().isAfter(end))
+                .collect(Collectors.toList());
+        assertEquals(matching.size(), report.getTotals().getCount());
+        assertEquals(matching.stream().filter(t -> t.getType() == Transaction.Type.INCOME)
+                .mapToLong(Transaction::getAmountMinor).sum(), report.getTotals().getIncomeMinor());
+        assertEquals(categories, report.getByCategory().keySet());
+        assertEquals(matching.stream().filter(t -> t.getCategory().equals("Food") && t.getType() == Transaction.Type.EXPENSE)
+                .mapToLong(Transaction::getAmountMinor).sum(), report.getByCategory().get("Food").getExpensesMinor());
+        Map<YearMonth, Long> countsByMonth = matching.stream()
+                .collect(Collectors.groupingBy(t -> YearMonth.from(t.getDate()), Collectors.counting()));
+        assertEquals(countsByMonth.keySet(), report.getByMonth().keySet());
+        report.getByMonth().forEach((month, totals) -> assertEquals(countsByMonth.get(month).intValue(), totals.getCount()));
+
+        assertEquals(wallet.getTotalIncomeMinor(), wallet.aggregate(null, null, null).getTotals().getIncomeMinor());
+        assertEquals(wallet.getTotalsForPeriod(start, end), wallet.aggregate(start, end, null).getTotals());
+    }
+
+    @Test
+    void testRollupAnswersWholeMonthsLikeScan() {
+        TransactionAggregator scan = new TransactionAggregator(Integer.MAX_VALUE, 1000, ForkJoinPool.commonPool());
+        Wallet wallet = randomWallet(5000, 23);
+        Transaction undated = new Transaction(Transaction.Type.INCOME, null, 7, "", "test");
+        undated.setDate(null);
+        wallet.addTransaction(undated);
+        LocalDate start = LocalDate.of(2022, 3, 1);
+        LocalDate end = LocalDate.of(2023, 8, 31);
+        for (Set<String> categories : Arrays.asList(null, Set.of("Rent", "Salary"))) {
+            for (LocalDate[] range : new LocalDate[][] {{null, null}, {start, end}, {null, end}, {start, null}, {end.plusDays(1), start.minusDays(1)}}) {
+                AggregateReport fromRollup = wallet.aggregate(range[0], range[1], categories);
+                assertEquals(0, fromRollup.getChunks(), "Whole months are answered from the rollup");
+                assertEquals(wallet.aggregate(scan, range[0], range[1], categories), fromRollup);
+            }
+        }
+        assertEquals(1, wallet.aggregate(start.plusDays(1), end, null).getChunks());
+
+        YearMonth month = YearMonth.of(2022, 5);
+        List<Transaction> rent = wallet.getTransactions().stream()
+                .filter(t -> "Rent".equals(t.getCategory()) && t.getType() == Transaction.Type.EXPENSE
+                        && t.getDate() != null && YearMonth.from(t.getDate()).equals(month))
+                .collect(Collectors.toList());
+        RollupCube rollup = wallet.getRollup();
+        assertEquals(rent.size(), rollup.getCount(month, "Rent", Transaction.Type.EXPENSE));
+        assertEquals(rent.stream().mapToLong(Transaction::getAmountMinor).sum(),
+                rollup.getSum(month, "Rent", Transaction.Type.EXPENSE));
+        assertEquals(700, rollup.getSum(null, null, Transaction.Type.INCOME));
+        assertEquals(0, rollup.getCount(month, "Unknown category", Transaction.Type.EXPENSE));
+        assertEquals(5001, rollup.getTransactionCount());
+    }
+
+    @Test
+    void testTimeOrderedIdsAreCanonicalUuids() {
+        IdGenerator generator = IdGenerators.timeOrdered();
+        Set<String> ids = new HashSet<>();
+        long before = System.currentTimeMillis();
+        for (int i = 0; i < 10_000; i++) {
+            String id = generator.nextId();
+            UUID uuid = UUID.fromString(id);
+            assertEquals(uuid.toString(), id, "Must stay in the form the binary snapshot stores in 16 bytes");
+            assertEquals(7, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertTrue((uuid.getMostSignificantBits() >>> 16) >= before);
+            ids.add(id);
+        }
+        assertEquals(10_000, ids.size());
+    }
+
+    @Test
+    void testSequenceIdsIncreaseAcrossThreads() throws Exception {
+        IdGenerator generator = IdGenerators.sequence(5);
+        List<List<Long>> perThread = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            List<Long> ids = new ArrayList<>();
+            perThread.add(ids);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    ids.add(Long.parseLong(generator.nextId(), 16));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<Long> all = new HashSet<>();
+        for (List<Long> ids : perThread) {
+            for (int i = 1; i < ids.size(); i++) {
+                assertTrue(ids.get(i) > ids.get(i - 1));
+            }
+            all.addAll(ids);
+            assertEquals(5, (ids.get(0) >>> 12) & 1023, "Node bits");
+        }
+        assertEquals(80_000, all.size());
+        assertThrows(IllegalArgumentException.class, () -> IdGenerators.sequence(1024));
+    }
+}
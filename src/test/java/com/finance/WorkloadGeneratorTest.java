@@ -0,0 +1,66 @@
+package com.finance.workload;
+
+import com.finance.model.User;
+import com.finance.repository.DataStorage;
+import com.finance.repository.UserRepository;
+import com.finance.service.AuthService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import java.nio.file.Path;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkloadGeneratorTest {
+    @TempDir
+    Path tempDir;
+
+    private WorkloadConfig config() {
+        return WorkloadConfig.fromArgs(new String[] {
+            "dir=" + tempDir, "users=20", "transactions=50", "operations=2000", "seed=7", "threads=3"
+        });
+    }
+
+    @Test
+    void testSameSeedGivesSameWorkload() {
+        List<User> first = new WorkloadGenerator(config()).generateUsers();
+        List<User> second = new WorkloadGenerator(config()).generateUsers();
+
+        assertEquals(20, first.size());
+        long total = 0;
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(first.get(i).getUsername(), second.get(i).getUsername());
+            assertEquals(first.get(i).getWallet().getBalanceMinor(), second.get(i).getWallet().getBalanceMinor());
+            assertEquals(first.get(i).getWallet().getTransactions(), second.get(i).getWallet().getTransactions());
+            assertFalse(first.get(i).getWallet().getBudgets().isEmpty(), "Every user should get budgets");
+            total += first.get(i).getWallet().getTransactions().size();
+        }
+        assertTrue(total >= 20 * 25, "Each user should get at least half the average transactions");
+
+        List<WorkloadOperation> operations = new WorkloadGenerator(config()).generateOperations();
+        assertEquals(2000, operations.size());
+        assertEquals(operations.get(1999).getUser(), new WorkloadGenerator(config()).generateOperations().get(1999).getUser());
+    }
+
+    @Test
+    void testReplayThroughFinanceService() throws Exception {
+        WorkloadConfig config = config();
+        WorkloadGenerator generator = new WorkloadGenerator(config);
+        new DataStorage(tempDir, false).saveUsers(generator.generateUsers());
+        generator.writeOperations(tempDir.resolve(WorkloadGenerator.OPERATIONS_FILE));
+
+        List<WorkloadOperation> operations = ReplayDriver.readOperations(tempDir.resolve(WorkloadGenerator.OPERATIONS_FILE));
+        assertEquals(2000, operations.size());
+
+        UserRepository userRepository = UserRepository.getInstance();
+        userRepository.clear();
+        AuthService authService = new AuthService(userRepository, new DataStorage(tempDir, false));
+        ReplayDriver.Report report = new ReplayDriver(config, authService).replay(operations);
+
+        assertEquals(2000, report.getCount());
+        assertEquals(0, report.getFailed(), "Generated operations should all be valid");
+        LatencyRecorder expenses = report.getLatencies().get(WorkloadOperation.Op.ADD_EXPENSE);
+        assertTrue(expenses.getCount() > 0);
+        assertTrue(expenses.percentile(50) <= expenses.percentile(99));
+        assertTrue(expenses.percentile(99) <= expenses.getMax());
+    }
+}